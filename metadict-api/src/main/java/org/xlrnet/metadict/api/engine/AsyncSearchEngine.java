@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.api.engine;
+
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Non-blocking variant of {@link SearchEngine}. Engines that communicate with their backend asynchronously (e.g. with
+ * a non-blocking HTTP client) should implement this interface, so that the core doesn't have to block a thread for
+ * every running query.
+ * <p>
+ * The blocking method {@link #executeSearchQuery(String, Language, Language, boolean)} is implemented by waiting for
+ * the result of {@link #executeSearchQueryAsync(String, Language, Language, boolean)}. Existing blocking engines can be
+ * used as {@link AsyncSearchEngine} with {@link BlockingSearchEngineAdapter}.
+ */
+public interface AsyncSearchEngine extends SearchEngine {
+
+    /**
+     * The main method for querying an {@link AsyncSearchEngine}. This method must not block while the backend is
+     * queried. The semantics of the parameters are the same as in {@link #executeSearchQuery(String, Language,
+     * Language, boolean)}.
+     *
+     * @param queryInput
+     *         The query string i.e. word that should be looked up.
+     * @param inputLanguage
+     *         The input language of the query. This language must be specified as a dictionary's input language of
+     *         this engine.
+     * @param outputLanguage
+     *         The expected output language of the query. This language must be specified as the output language of the
+     *         same dictionary to which the given inputLanguage belongs.
+     * @param allowBothWay
+     *         True, if the engine may search in both directions.
+     * @return a stage that will be completed with the results from the search query or exceptionally if the query
+     * failed.
+     */
+    CompletionStage<EngineQueryResult> executeSearchQueryAsync(String queryInput, Language inputLanguage, Language outputLanguage, boolean allowBothWay);
+
+    /**
+     * Blocking variant of {@link #executeSearchQueryAsync(String, Language, Language, boolean)} which waits until the
+     * query is finished.
+     */
+    @Override
+    default EngineQueryResult executeSearchQuery(String queryInput, Language inputLanguage, Language outputLanguage, boolean allowBothWay) throws Exception {
+        try {
+            return executeSearchQueryAsync(queryInput, inputLanguage, outputLanguage, allowBothWay).toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+}
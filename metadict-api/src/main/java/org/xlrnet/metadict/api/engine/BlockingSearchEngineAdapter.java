@@ -0,0 +1,90 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.api.engine;
+
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Adapter that provides a blocking {@link SearchEngine} as {@link AsyncSearchEngine}. Each asynchronous query will be
+ * executed as a blocking query on the given {@link Executor}.
+ */
+public class BlockingSearchEngineAdapter implements AsyncSearchEngine {
+
+    private final SearchEngine searchEngine;
+
+    private final Executor executor;
+
+    private BlockingSearchEngineAdapter(SearchEngine searchEngine, Executor executor) {
+        this.searchEngine = searchEngine;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the given engine as {@link AsyncSearchEngine}. If the engine already implements {@link AsyncSearchEngine},
+     * it will be returned directly. Otherwise it will be wrapped in an adapter that executes the blocking queries on
+     * the given {@link Executor}.
+     *
+     * @param searchEngine
+     *         The engine that should be adapted.
+     * @param executor
+     *         The executor for running blocking queries.
+     * @return an asynchronous engine.
+     */
+    public static AsyncSearchEngine adapt(SearchEngine searchEngine, Executor executor) {
+        if (searchEngine instanceof AsyncSearchEngine)
+            return (AsyncSearchEngine) searchEngine;
+        return new BlockingSearchEngineAdapter(searchEngine, executor);
+    }
+
+    /**
+     * Execute the query on the underlying blocking engine in the executor of this adapter. A {@link
+     * java.util.concurrent.RejectedExecutionException} from the executor will be thrown directly.
+     */
+    @Override
+    public CompletionStage<EngineQueryResult> executeSearchQueryAsync(String queryInput, Language inputLanguage, Language outputLanguage, boolean allowBothWay) {
+        CompletableFuture<EngineQueryResult> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                future.complete(searchEngine.executeSearchQuery(queryInput, inputLanguage, outputLanguage, allowBothWay));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Execute the query directly on the underlying blocking engine without using the executor.
+     */
+    @Override
+    public EngineQueryResult executeSearchQuery(String queryInput, Language inputLanguage, Language outputLanguage, boolean allowBothWay) throws Exception {
+        return searchEngine.executeSearchQuery(queryInput, inputLanguage, outputLanguage, allowBothWay);
+    }
+}
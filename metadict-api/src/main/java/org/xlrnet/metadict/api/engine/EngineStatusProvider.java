@@ -22,35 +22,23 @@
  * THE SOFTWARE.
  */
 
-package org.xlrnet.metadict.engines.heinzelnisse.entities;
+package org.xlrnet.metadict.api.engine;
 
-import com.fasterxml.jackson.annotation.JsonProperty;
-import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
 
 /**
- * Created by xolor on 07.04.15.
+ * Optional interface for {@link SearchEngine} implementations that can report engine-specific status information, e.g.
+ * the statistics of a connection pool. The core exposes the status of every registered engine that implements this
+ * interface.
  */
-public class ForumAnswer {
-
-    @JsonProperty("timestamp")
-    private String timestamp;
-
-    @JsonProperty("id")
-    private int id;
-
-    @JsonProperty("userName")
-    private String userName;
-
-    @JsonProperty("html")
-    private String html;
-
-    @Override
-    public String toString() {
-        return MoreObjects.toStringHelper(this)
-                .add("timestamp", timestamp)
-                .add("id", id)
-                .add("userName", userName)
-                .add("html", html)
-                .toString();
-    }
+public interface EngineStatusProvider {
+
+    /**
+     * Returns a snapshot of the current status of this engine. The returned object should be a simple bean, since it
+     * will be serialized for monitoring (e.g. as JSON).
+     *
+     * @return a snapshot of the current status of this engine.
+     */
+    @NotNull
+    Object getEngineStatus();
 }
@@ -35,6 +35,9 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Builder for creating new {@link DictionaryEntry} objects.
+ * <p>
+ * Objects may be added concurrently from multiple threads (e.g. from a parallel stream), but their order in the built
+ * result is then undefined.
  */
 public class EngineQueryResultBuilder {
 
@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.api.query;
+
+import org.junit.Test;
+import org.xlrnet.metadict.api.language.Language;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cases for {@link EngineQueryResultBuilder}.
+ */
+public class EngineQueryResultBuilderTest {
+
+    private static final int SECTION_COUNT = 10000;
+
+    @Test
+    public void testAddEntry_concurrent() throws Exception {
+        EngineQueryResultBuilder builder = new EngineQueryResultBuilder();
+
+        IntStream.range(0, SECTION_COUNT).parallel().forEach(section -> {
+            DictionaryObject object = new DictionaryObjectBuilder().setLanguage(Language.GERMAN).setGeneralForm(String.valueOf(section)).build();
+            builder.addEntry(new DictionaryEntryBuilder().setInputObject(object).build());
+            builder.addSimilarRecommendation(object);
+        });
+        EngineQueryResult result = builder.build();
+
+        Set<String> expected = IntStream.range(0, SECTION_COUNT).mapToObj(String::valueOf).collect(Collectors.toSet());
+
+        assertEquals(SECTION_COUNT, result.getEntries().size());
+        assertEquals(expected, result.getEntries().stream().map(e -> e.getInput().getGeneralForm()).collect(Collectors.toSet()));
+        assertEquals(expected, result.getSimilarRecommendations().stream().map(DictionaryObject::getGeneralForm).collect(Collectors.toSet()));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.metadict.impl.query.QueryManager;
+import org.xlrnet.metadict.impl.strategies.QueryStepCache;
+import org.xlrnet.metadict.impl.strategies.QueryStepCacheStatistics;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+/**
+ * Central access point for monitoring and invalidating all caches of Metadict. Invalidating results always clears both
+ * the {@link QueryStepCache} and the response cache of the {@link QueryManager}, so that no stale response can be
+ * served from a cache that has not been invalidated.
+ * <p>
+ * Since responses are not associated with the engines that produced them, invalidating an engine removes all cached
+ * responses.
+ */
+@ApplicationScoped
+public class CacheManager {
+
+    @Inject
+    QueryStepCache queryStepCache;
+
+    @Inject
+    QueryManager queryManager;
+
+    /**
+     * Returns the current statistics of the query step cache.
+     *
+     * @return the current statistics of the query step cache.
+     */
+    @NotNull
+    public QueryStepCacheStatistics getStatistics() {
+        return queryStepCache.getStatistics();
+    }
+
+    /**
+     * Remove all cached results of the engine with the given name and all cached responses.
+     *
+     * @param engineName
+     *         The name of the engine.
+     * @return the number of removed entries from the in-memory caches.
+     */
+    public int invalidateEngine(@NotNull String engineName) {
+        return queryStepCache.invalidateEngine(engineName) + queryManager.invalidateAllResponses();
+    }
+
+    /**
+     * Remove all cached results and responses for the given query string. The query string will be normalized before
+     * matching.
+     *
+     * @param queryString
+     *         The query string.
+     * @return the number of removed entries from the in-memory caches.
+     */
+    public int invalidateQuery(@NotNull String queryString) {
+        return queryStepCache.invalidateQuery(queryString) + queryManager.invalidateResponses(queryString);
+    }
+
+    /**
+     * Remove all cached results and responses.
+     *
+     * @return the number of removed entries from the in-memory caches.
+     */
+    public int invalidateAll() {
+        return queryStepCache.invalidateAll() + queryManager.invalidateAllResponses();
+    }
+}
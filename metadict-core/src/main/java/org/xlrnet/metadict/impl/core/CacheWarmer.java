@@ -0,0 +1,217 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.language.Dictionary;
+import org.xlrnet.metadict.impl.query.QueryRequest;
+import org.xlrnet.metadict.impl.query.QueryRequestBuilder;
+import org.xlrnet.metadict.impl.query.QueryStep;
+import org.xlrnet.metadict.impl.strategies.QueryStepCache;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link CacheWarmer} replays a log of historical queries through {@link MetadictCore#executeRequest(QueryRequest)}
+ * to fill the caches before the first real request arrives.
+ * <p>
+ * Each line of the query log has the format <code>DICTIONARIES&lt;TAB&gt;QUERY</code> where DICTIONARIES is a
+ * comma-separated list of dictionaries (e.g. "de-en,de-no_ny") that will be queried in both directions and QUERY is the
+ * query string. Empty lines and lines starting with "#" are ignored.
+ * <p>
+ * The queries will be executed concurrently on a bounded thread pool. Each engine has its own rate limit, i.e. a query
+ * may only be executed after a permit of every engine that will actually be called has been acquired. Engines whose
+ * results are already cached (e.g. restored from a snapshot) won't be throttled.
+ */
+public class CacheWarmer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private final MetadictCore metadictCore;
+
+    private final EngineRegistry engineRegistry;
+
+    private final QueryStepCache queryStepCache;
+
+    private final int threadCount;
+
+    private final double requestsPerSecond;
+
+    final Map<String, RateLimiter> rateLimiters = new ConcurrentHashMap<>();
+
+    /**
+     * Create a new warmer.
+     *
+     * @param metadictCore
+     *         The core that executes the queries.
+     * @param engineRegistry
+     *         The registry for resolving the engines of each query.
+     * @param queryStepCache
+     *         The cache for checking which engines have to be called for a query.
+     * @param threadCount
+     *         Maximum number of concurrently executed queries.
+     * @param requestsPerSecond
+     *         Maximum number of queries per second that may be sent to a single engine.
+     */
+    public CacheWarmer(@NotNull MetadictCore metadictCore, @NotNull EngineRegistry engineRegistry, @NotNull QueryStepCache queryStepCache, int threadCount, double requestsPerSecond) {
+        this.metadictCore = metadictCore;
+        this.engineRegistry = engineRegistry;
+        this.queryStepCache = queryStepCache;
+        this.threadCount = threadCount;
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * Replay the given query log. This method blocks until all queries have been executed or the timeout expired.
+     *
+     * @param queryLog
+     *         The file with the queries to replay.
+     * @param maxQueries
+     *         Maximum number of queries to read from the log.
+     * @param timeoutSeconds
+     *         Maximum time in seconds for the whole warm-up. Queries that didn't run until then will be skipped.
+     * @return the number of successfully executed queries.
+     */
+    public int warmUp(@NotNull Path queryLog, int maxQueries, long timeoutSeconds) {
+        List<QueryRequest> queryRequests = readQueryLog(queryLog, maxQueries);
+        LOGGER.info("Warming up caches with {} queries from {} ...", queryRequests.size(), queryLog);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount, new ThreadFactoryBuilder()
+                .setNameFormat("metadict-warmup-%d")
+                .setDaemon(true)
+                .build());
+        AtomicInteger executedQueries = new AtomicInteger();
+        long startTime = System.currentTimeMillis();
+
+        for (QueryRequest queryRequest : queryRequests) {
+            executorService.execute(() -> {
+                try {
+                    acquirePermits(queryRequest);
+                    metadictCore.executeRequest(queryRequest);
+                    executedQueries.incrementAndGet();
+                } catch (Exception e) {
+                    LOGGER.warn("Warm-up query {} failed: {}", queryRequest, e.getMessage());
+                }
+            });
+        }
+        executorService.shutdown();
+
+        try {
+            if (!executorService.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                LOGGER.warn("Warm-up didn't finish within {} seconds - skipping remaining queries", timeoutSeconds);
+                executorService.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executorService.shutdownNow();
+        }
+
+        LOGGER.info("Warmed up caches with {} queries in {} ms", executedQueries.get(), System.currentTimeMillis() - startTime);
+        return executedQueries.get();
+    }
+
+    /**
+     * Acquire a permit of each engine that has at least one query step of the given request which can't be answered
+     * from the cache.
+     */
+    private void acquirePermits(@NotNull QueryRequest queryRequest) {
+        Set<String> engineNames = new HashSet<>();
+        for (Dictionary dictionary : queryRequest.getQueryDictionaries()) {
+            for (String engineName : engineRegistry.getSearchEngineNamesByDictionary(dictionary)) {
+                QueryStep queryStep = new QueryStep()
+                        .setInputLanguage(dictionary.getInput())
+                        .setOutputLanguage(dictionary.getOutput())
+                        .setAllowBothWay(dictionary.isBidirectional())
+                        .setSearchEngineName(engineName)
+                        .setQueryString(queryRequest.getQueryString());
+                if (!queryStepCache.isCached(queryStep)) {
+                    engineNames.add(engineName);
+                }
+            }
+        }
+        for (String engineName : engineNames) {
+            rateLimiters.computeIfAbsent(engineName, name -> RateLimiter.create(requestsPerSecond)).acquire();
+        }
+    }
+
+    @NotNull
+    private List<QueryRequest> readQueryLog(@NotNull Path queryLog, int maxQueries) {
+        List<QueryRequest> queryRequests = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(queryLog, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null && queryRequests.size() < maxQueries) {
+                QueryRequest queryRequest = parseQueryLogLine(line);
+                if (queryRequest != null) {
+                    queryRequests.add(queryRequest);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Reading query log {} failed", queryLog, e);
+        }
+
+        return queryRequests;
+    }
+
+    @Nullable
+    private QueryRequest parseQueryLogLine(@NotNull String line) {
+        if (StringUtils.isBlank(line) || line.startsWith("#"))
+            return null;
+
+        String[] parts = StringUtils.split(line, '\t');
+        if (parts.length != 2 || StringUtils.isBlank(parts[1])) {
+            LOGGER.warn("Skipping malformed query log line: {}", line);
+            return null;
+        }
+
+        QueryRequestBuilder requestBuilder = metadictCore.createNewQueryRequestBuilder().setQueryString(parts[1].trim());
+        for (String dictionaryString : StringUtils.split(parts[0], ',')) {
+            try {
+                Dictionary dictionary = Dictionary.fromQueryString(dictionaryString.trim(), true);
+                if (dictionary != null) {
+                    requestBuilder.addQueryDictionary(dictionary);
+                }
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Skipping invalid dictionary {} in query log", dictionaryString);
+            }
+        }
+
+        QueryRequest queryRequest = requestBuilder.build();
+        return queryRequest.getQueryDictionaries().isEmpty() ? null : queryRequest;
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Ticker;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Circuit breaker for a single {@link org.xlrnet.metadict.api.engine.SearchEngine}. The breaker starts {@link
+ * State#CLOSED} and opens after the configured number of consecutive failures. While it is {@link State#OPEN}, no
+ * calls are permitted. After the open duration has passed, a single probe call is permitted ({@link
+ * State#HALF_OPEN}): if the probe succeeds, the breaker closes again; otherwise it stays open for another open
+ * duration.
+ * <p>
+ * All methods of this class are thread-safe.
+ */
+public class CircuitBreaker {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * The state of a {@link CircuitBreaker}.
+     */
+    public enum State {
+
+        /** Calls are permitted and failures are counted. */
+        CLOSED,
+
+        /** No calls are permitted until the open duration has passed. */
+        OPEN,
+
+        /** A single probe call is permitted to check whether the engine recovered. */
+        HALF_OPEN
+    }
+
+    private final String name;
+
+    private final int failureThreshold;
+
+    private final long openDurationNanos;
+
+    private final Ticker ticker;
+
+    private State state = State.CLOSED;
+
+    private int consecutiveFailures;
+
+    private long openedAt;
+
+    private boolean probeInFlight;
+
+    private long rejectedCalls;
+
+    /**
+     * Create a new circuit breaker.
+     *
+     * @param name
+     *         Name of the protected engine, used for logging.
+     * @param failureThreshold
+     *         Number of consecutive failures after which the breaker opens.
+     * @param openDurationMillis
+     *         Time in milliseconds after which an open breaker permits a probe call.
+     */
+    public CircuitBreaker(@NotNull String name, int failureThreshold, long openDurationMillis) {
+        this(name, failureThreshold, openDurationMillis, Ticker.systemTicker());
+    }
+
+    CircuitBreaker(@NotNull String name, int failureThreshold, long openDurationMillis, @NotNull Ticker ticker) {
+        checkArgument(failureThreshold > 0, "Failure threshold must be positive");
+        checkArgument(openDurationMillis >= 0, "Open duration may not be negative");
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMillis);
+        this.ticker = ticker;
+    }
+
+    /**
+     * Check if a call is currently permitted. If this method returns true, the caller must report the outcome of the
+     * call with either {@link #recordSuccess()} or {@link #recordFailure()} or release the permission with {@link
+     * #releasePermission()} if the call was aborted.
+     *
+     * @return true, if the call is permitted.
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN && ticker.read() - openedAt >= openDurationNanos) {
+            LOGGER.info("Circuit breaker for {} is half-open - sending probe", name);
+            state = State.HALF_OPEN;
+            probeInFlight = false;
+        }
+        if (state == State.CLOSED)
+            return true;
+        if (state == State.HALF_OPEN && !probeInFlight) {
+            probeInFlight = true;
+            return true;
+        }
+        rejectedCalls++;
+        return false;
+    }
+
+    /**
+     * Record a successful call.
+     */
+    public synchronized void recordSuccess() {
+        if (state == State.HALF_OPEN) {
+            LOGGER.info("Circuit breaker for {} closed", name);
+            state = State.CLOSED;
+            probeInFlight = false;
+        }
+        consecutiveFailures = 0;
+    }
+
+    /**
+     * Release the permission of a call that was aborted by the caller (e.g. cancelled). The call counts neither as
+     * success nor as failure, but a probe of a {@link State#HALF_OPEN} breaker may be sent again.
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN)
+            probeInFlight = false;
+    }
+
+    /**
+     * Record a failed call.
+     */
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            LOGGER.warn("Circuit breaker for {} opened after {} consecutive failures", name, consecutiveFailures);
+            state = State.OPEN;
+            openedAt = ticker.read();
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * Returns the current state of this breaker. An open breaker whose open duration has passed will still be
+     * reported as {@link State#OPEN} until the next call is attempted.
+     *
+     * @return the current state of this breaker.
+     */
+    @NotNull
+    public synchronized State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the number of calls that were rejected since this breaker was created.
+     *
+     * @return the number of calls that were rejected.
+     */
+    public synchronized long getRejectedCalls() {
+        return rejectedCalls;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("name", name)
+                .add("state", state)
+                .add("consecutiveFailures", consecutiveFailures)
+                .add("rejectedCalls", rejectedCalls)
+                .toString();
+    }
+}
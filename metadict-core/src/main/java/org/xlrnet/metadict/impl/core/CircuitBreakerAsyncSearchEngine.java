@@ -0,0 +1,73 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.metadict.api.engine.AsyncSearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.impl.exception.CircuitBreakerOpenException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Decorator for an {@link AsyncSearchEngine} that protects it with a {@link CircuitBreaker}. While the breaker is open,
+ * the returned stage fails immediately with a {@link CircuitBreakerOpenException}. Blocking engines are decorated by
+ * {@link CircuitBreakerSearchEngine}.
+ */
+class CircuitBreakerAsyncSearchEngine extends CircuitBreakerSearchEngine implements AsyncSearchEngine {
+
+    private final AsyncSearchEngine delegate;
+
+    CircuitBreakerAsyncSearchEngine(@NotNull AsyncSearchEngine delegate, @NotNull String engineName, @NotNull CircuitBreaker circuitBreaker) {
+        super(delegate, engineName, circuitBreaker);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletionStage<EngineQueryResult> executeSearchQueryAsync(String queryInput, Language inputLanguage, Language outputLanguage, boolean allowBothWay) {
+        try {
+            acquirePermission();
+        } catch (CircuitBreakerOpenException e) {
+            CompletableFuture<EngineQueryResult> failedFuture = new CompletableFuture<>();
+            failedFuture.completeExceptionally(e);
+            return failedFuture;
+        }
+
+        CompletionStage<EngineQueryResult> queryResultStage;
+        try {
+            queryResultStage = delegate.executeSearchQueryAsync(queryInput, inputLanguage, outputLanguage, allowBothWay);
+        } catch (RuntimeException e) {
+            recordOutcome(QueryOutcome.FAILURE);
+            throw e;
+        }
+        if (queryResultStage == null) {
+            recordOutcome(QueryOutcome.FAILURE);
+            return null;
+        }
+        return queryResultStage.whenComplete((engineQueryResult, throwable) -> recordOutcome(QueryOutcome.of(engineQueryResult, throwable)));
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.impl.exception.CircuitBreakerOpenException;
+
+/**
+ * Decorator for a {@link SearchEngine} that protects it with a {@link CircuitBreaker}. While the breaker is open,
+ * queries fail immediately with a {@link CircuitBreakerOpenException} instead of waiting for the engine's timeout.
+ * Cancelled or interrupted calls are neither counted as success nor as failure (see {@link QueryOutcome#ABORTED}).
+ */
+class CircuitBreakerSearchEngine implements SearchEngine {
+
+    private final SearchEngine delegate;
+
+    private final String engineName;
+
+    private final CircuitBreaker circuitBreaker;
+
+    CircuitBreakerSearchEngine(@NotNull SearchEngine delegate, @NotNull String engineName, @NotNull CircuitBreaker circuitBreaker) {
+        this.delegate = delegate;
+        this.engineName = engineName;
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public EngineQueryResult executeSearchQuery(String queryInput, Language inputLanguage, Language outputLanguage, boolean allowBothWay) throws Exception {
+        acquirePermission();
+        EngineQueryResult engineQueryResult = null;
+        Throwable throwable = null;
+        try {
+            engineQueryResult = delegate.executeSearchQuery(queryInput, inputLanguage, outputLanguage, allowBothWay);
+            return engineQueryResult;
+        } catch (Throwable t) {
+            throwable = t;
+            throw t;
+        } finally {
+            recordOutcome(QueryOutcome.ofBlockingCall(engineQueryResult, throwable));
+        }
+    }
+
+    void acquirePermission() {
+        if (!circuitBreaker.tryAcquirePermission())
+            throw new CircuitBreakerOpenException(engineName);
+    }
+
+    void recordOutcome(@NotNull QueryOutcome queryOutcome) {
+        switch (queryOutcome) {
+            case SUCCESS:
+                circuitBreaker.recordSuccess();
+                break;
+            case FAILURE:
+                circuitBreaker.recordFailure();
+                break;
+            case ABORTED:
+                circuitBreaker.releasePermission();
+                break;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
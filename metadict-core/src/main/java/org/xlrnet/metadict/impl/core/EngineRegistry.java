@@ -30,18 +30,23 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.engine.AsyncSearchEngine;
+import org.xlrnet.metadict.api.engine.EngineStatusProvider;
 import org.xlrnet.metadict.api.engine.SearchEngine;
 import org.xlrnet.metadict.api.engine.SearchProvider;
 import org.xlrnet.metadict.api.language.Dictionary;
 import org.xlrnet.metadict.api.metadata.EngineDescription;
 import org.xlrnet.metadict.api.metadata.FeatureSet;
 import org.xlrnet.metadict.impl.exception.UnknownSearchEngineException;
+import org.xlrnet.metadict.impl.util.CommonUtils;
 
 import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
@@ -57,6 +62,14 @@ public class EngineRegistry {
 
     private static final Logger logger = LoggerFactory.getLogger(EngineRegistry.class);
 
+    private static final int STATISTICS_SAMPLES = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.engine.statistics.samples", 256);
+
+    private static final long STATISTICS_WINDOW = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.engine.statistics.window", 300000);
+
+    private static final int CIRCUIT_BREAKER_FAILURE_THRESHOLD = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.engine.circuitBreaker.failureThreshold", 5);
+
+    private static final long CIRCUIT_BREAKER_OPEN_DURATION = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.engine.circuitBreaker.openDuration", 30000);
+
     @Inject
     Instance<SearchProvider> searchProviderInstances;
 
@@ -68,6 +81,14 @@ public class EngineRegistry {
 
     Map<String, SearchEngine> searchEngineMap = new HashMap<>();
 
+    Map<String, EngineStatistics> engineStatisticsMap = new ConcurrentHashMap<>();
+
+    Map<String, CircuitBreaker> circuitBreakerMap = new ConcurrentHashMap<>();
+
+    Map<String, EngineStatusProvider> engineStatusProviderMap = new HashMap<>();
+
+    private final AtomicLong registryVersion = new AtomicLong();
+
     /**
      * Returns the amount of currently registered search engines. Search engines are provided by implementations of
      * {@link SearchProvider} and can be registered using {@link #registerSearchProvider(SearchProvider)}.
@@ -135,6 +156,58 @@ public class EngineRegistry {
         return featureSetMap.get(engineName);
     }
 
+    /**
+     * Returns the rolling latency and error statistics for the {@link SearchEngine} that is registered under the given
+     * name. The statistics are updated on every call of the engine that is returned by {@link
+     * #getEngineByName(String)}.
+     *
+     * @param engineName
+     *         Name of the registered engine
+     * @return the statistics of the engine.
+     * @throws UnknownSearchEngineException
+     *         Will be thrown, if no engine is registered under the given name.
+     */
+    @NotNull
+    public EngineStatistics getEngineStatisticsByName(String engineName) {
+        EngineStatistics engineStatistics = engineStatisticsMap.get(engineName);
+        if (engineStatistics == null) {
+            throw new UnknownSearchEngineException(engineName);
+        }
+        return engineStatistics;
+    }
+
+    /**
+     * Returns the {@link CircuitBreaker} for the {@link SearchEngine} that is registered under the given name. Calls
+     * of the engine that is returned by {@link #getEngineByName(String)} will fail immediately while the breaker is
+     * open.
+     *
+     * @param engineName
+     *         Name of the registered engine
+     * @return the circuit breaker of the engine or null, if circuit breakers are disabled.
+     * @throws UnknownSearchEngineException
+     *         Will be thrown, if no engine is registered under the given name.
+     */
+    @Nullable
+    public CircuitBreaker getCircuitBreakerByName(String engineName) {
+        if (!searchEngineMap.containsKey(engineName)) {
+            throw new UnknownSearchEngineException(engineName);
+        }
+        return circuitBreakerMap.get(engineName);
+    }
+
+    /**
+     * Returns the engine-specific status (e.g. the statistics of a connection pool) of all registered engines that
+     * implement {@link EngineStatusProvider}.
+     *
+     * @return a map from the name of each engine to its current status, sorted by engine name.
+     */
+    @NotNull
+    public Map<String, Object> getEngineStatus() {
+        Map<String, Object> engineStatus = new TreeMap<>();
+        engineStatusProviderMap.forEach((engineName, statusProvider) -> engineStatus.put(engineName, statusProvider.getEngineStatus()));
+        return engineStatus;
+    }
+
     /**
      * Returns an unmodifiable set of the currently registered search engine names. The registered names should be the
      * canonical class name of the {@link SearchEngine} implementation.
@@ -146,6 +219,16 @@ public class EngineRegistry {
         return Collections.unmodifiableSet(searchEngineMap.keySet());
     }
 
+    /**
+     * Returns the current version of this registry. The version will change whenever a new {@link SearchEngine} is
+     * registered and can be used to invalidate data that was derived from the registry (e.g. query plans).
+     *
+     * @return the current version of this registry.
+     */
+    public long getRegistryVersion() {
+        return registryVersion.get();
+    }
+
     /**
      * Returns the names of all engines that support the given {@link Dictionary}.
      *
@@ -213,14 +296,44 @@ public class EngineRegistry {
 
         engineDescriptionMap.put(canonicalEngineName, engineDescription);
         featureSetMap.put(canonicalEngineName, featureSet);
-        searchEngineMap.put(canonicalEngineName, searchEngine);
+        EngineStatistics engineStatistics = new EngineStatistics(STATISTICS_SAMPLES, STATISTICS_WINDOW);
+        engineStatisticsMap.put(canonicalEngineName, engineStatistics);
+        searchEngineMap.put(canonicalEngineName, protectSearchEngine(canonicalEngineName, monitorSearchEngine(searchEngine, engineStatistics)));
+        if (searchEngine instanceof EngineStatusProvider) {
+            // The decorators hide the interface, so the status has to be queried from the original engine
+            engineStatusProviderMap.put(canonicalEngineName, (EngineStatusProvider) searchEngine);
+        }
 
         // Register supported dictionaries for engine
         registerDictionariesFromFeatureSet(canonicalEngineName, featureSet);
+        registryVersion.incrementAndGet();
 
         logger.info("Registered engine {} from provider {}", canonicalEngineName, canonicalProviderName);
     }
 
+    @NotNull
+    private SearchEngine monitorSearchEngine(@NotNull SearchEngine searchEngine, @NotNull EngineStatistics engineStatistics) {
+        if (searchEngine instanceof AsyncSearchEngine)
+            return new MonitoredAsyncSearchEngine((AsyncSearchEngine) searchEngine, engineStatistics);
+        return new MonitoredSearchEngine(searchEngine, engineStatistics);
+    }
+
+    /**
+     * Wrap the given engine with a circuit breaker. The breaker is placed outside of the monitoring decorator, so that
+     * rejected calls don't influence the engine statistics.
+     */
+    @NotNull
+    private SearchEngine protectSearchEngine(@NotNull String canonicalEngineName, @NotNull SearchEngine searchEngine) {
+        if (CIRCUIT_BREAKER_FAILURE_THRESHOLD <= 0)
+            return searchEngine;
+
+        CircuitBreaker circuitBreaker = new CircuitBreaker(canonicalEngineName, CIRCUIT_BREAKER_FAILURE_THRESHOLD, CIRCUIT_BREAKER_OPEN_DURATION);
+        circuitBreakerMap.put(canonicalEngineName, circuitBreaker);
+        if (searchEngine instanceof AsyncSearchEngine)
+            return new CircuitBreakerAsyncSearchEngine((AsyncSearchEngine) searchEngine, canonicalEngineName, circuitBreaker);
+        return new CircuitBreakerSearchEngine(searchEngine, canonicalEngineName, circuitBreaker);
+    }
+
     private void registerDictionariesFromFeatureSet(@NotNull String canonicalEngineName, @NotNull FeatureSet featureSet) {
         for (Dictionary dictionary : featureSet.getSupportedDictionaries()) {
             registerDictionary(canonicalEngineName, dictionary);
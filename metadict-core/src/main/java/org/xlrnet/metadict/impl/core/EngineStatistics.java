@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Rolling latency and error statistics of a single {@link org.xlrnet.metadict.api.engine.SearchEngine}. The statistics
+ * keep a fixed number of the most recent samples, but only samples that are younger than the configured window will be
+ * used for calculating percentiles and error rates. Old observations will therefore expire, so that an engine which
+ * was degraded will eventually be considered again.
+ * <p>
+ * All methods of this class are thread-safe.
+ */
+public class EngineStatistics {
+
+    private final long[] timestamps;
+
+    private final long[] latencies;
+
+    private final boolean[] failures;
+
+    private final long windowNanos;
+
+    private int nextIndex;
+
+    private long totalQueries;
+
+    private long totalFailures;
+
+    /**
+     * Create new statistics.
+     *
+     * @param capacity
+     *         Maximum number of samples that will be kept.
+     * @param windowMillis
+     *         Maximum age of a sample in milliseconds.
+     */
+    public EngineStatistics(int capacity, long windowMillis) {
+        checkArgument(capacity > 0, "Capacity must be positive");
+        this.timestamps = new long[capacity];
+        this.latencies = new long[capacity];
+        this.failures = new boolean[capacity];
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        Arrays.fill(timestamps, Long.MIN_VALUE);
+    }
+
+    /**
+     * Record a new observation.
+     *
+     * @param latencyMillis
+     *         The time in milliseconds the engine took to respond.
+     * @param failed
+     *         True, if the engine failed.
+     */
+    public synchronized void record(long latencyMillis, boolean failed) {
+        timestamps[nextIndex] = System.nanoTime();
+        latencies[nextIndex] = latencyMillis;
+        failures[nextIndex] = failed;
+        nextIndex = (nextIndex + 1) % timestamps.length;
+        totalQueries++;
+        if (failed)
+            totalFailures++;
+    }
+
+    /**
+     * Returns the number of samples inside the current window.
+     *
+     * @return the number of samples inside the current window.
+     */
+    public synchronized int getSampleCount() {
+        long minTimestamp = System.nanoTime() - windowNanos;
+        int count = 0;
+        for (long timestamp : timestamps) {
+            if (isInWindow(timestamp, minTimestamp))
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the ratio of failed queries to all queries inside the current window. If there are no samples, the error
+     * rate is 0.
+     *
+     * @return the ratio of failed queries inside the current window.
+     */
+    public synchronized double getErrorRate() {
+        long minTimestamp = System.nanoTime() - windowNanos;
+        int count = 0;
+        int failureCount = 0;
+        for (int i = 0; i < timestamps.length; i++) {
+            if (isInWindow(timestamps[i], minTimestamp)) {
+                count++;
+                if (failures[i])
+                    failureCount++;
+            }
+        }
+        return count == 0 ? 0.0 : (double) failureCount / count;
+    }
+
+    /**
+     * Returns the latency percentile in milliseconds of all samples inside the current window. If there are no
+     * samples, 0 will be returned.
+     *
+     * @param percentile
+     *         The percentile between 0 (exclusive) and 1 (inclusive), e.g. 0.99 for the p99 latency.
+     * @return the latency percentile in milliseconds.
+     */
+    public synchronized long getLatencyPercentile(double percentile) {
+        checkArgument(percentile > 0 && percentile <= 1, "Percentile must be in (0, 1]");
+
+        long minTimestamp = System.nanoTime() - windowNanos;
+        long[] windowLatencies = new long[latencies.length];
+        int count = 0;
+        for (int i = 0; i < timestamps.length; i++) {
+            if (isInWindow(timestamps[i], minTimestamp))
+                windowLatencies[count++] = latencies[i];
+        }
+        if (count == 0)
+            return 0;
+
+        Arrays.sort(windowLatencies, 0, count);
+        int rank = (int) Math.ceil(percentile * count) - 1;
+        return windowLatencies[Math.max(0, rank)];
+    }
+
+    public synchronized long getTotalFailures() {
+        return totalFailures;
+    }
+
+    public synchronized long getTotalQueries() {
+        return totalQueries;
+    }
+
+    private boolean isInWindow(long timestamp, long minTimestamp) {
+        return timestamp != Long.MIN_VALUE && timestamp - minTimestamp >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("samples", getSampleCount())
+                .add("p50", getLatencyPercentile(0.5))
+                .add("p99", getLatencyPercentile(0.99))
+                .add("errorRate", getErrorRate())
+                .toString();
+    }
+}
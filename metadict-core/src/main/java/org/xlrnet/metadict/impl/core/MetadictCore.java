@@ -24,37 +24,74 @@
 
 package org.xlrnet.metadict.impl.core;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.language.Dictionary;
 import org.xlrnet.metadict.impl.query.QueryManager;
 import org.xlrnet.metadict.impl.query.QueryRequest;
 import org.xlrnet.metadict.impl.query.QueryRequestBuilder;
 import org.xlrnet.metadict.impl.query.QueryResponse;
+import org.xlrnet.metadict.impl.strategies.QueryStepCache;
+import org.xlrnet.metadict.impl.util.CommonUtils;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.context.Initialized;
+import javax.enterprise.event.Observes;
 import javax.inject.Inject;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 /**
  * The main entry point for accessing and querying Metadict. To access this component, you should inject it through
  * {@link Inject} inside a CDI container (e.g. JBoss Weld).
  * <p>
  * Since this object is {@link javax.enterprise.context.ApplicationScoped}, only one instance will be running at the
- * same time.
+ * same time. The instance will be created eagerly when the application starts, so that restoring the caches doesn't
+ * delay the first request. The caches will be warmed up from the query log in the background afterwards. Use {@link
+ * SystemStatus#isReady()} to check whether the warm-up has finished.
  */
 @ApplicationScoped
 public class MetadictCore {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(MetadictCore.class);
 
+    private static final String WARMUP_FILE = CommonUtils.getProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.warmup.file", "");
+
+    private static final int WARMUP_THREADS = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.warmup.threads", 4);
+
+    private static final int WARMUP_RATE_LIMIT = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.warmup.rateLimit", 5);
+
+    private static final int WARMUP_MAX_QUERIES = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.warmup.maxQueries", 10000);
+
+    private static final long WARMUP_TIMEOUT = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.warmup.timeout", 600);
+
     @Inject
     private EngineRegistry engineRegistry;
 
     @Inject
     private QueryManager queryManager;
 
+    @Inject
+    private QueryStepCache queryStepCache;
+
+    @Inject
+    private CacheManager cacheManager;
+
+    private ExecutorService warmUpExecutor;
+
     /**
      * Creates a new builder for creating {@link QueryRequest} objects. Use this method to prepare your queries.
      *
@@ -69,6 +106,47 @@ public class MetadictCore {
         return queryManager.executeQuery(queryRequest);
     }
 
+    /**
+     * Execute multiple {@link QueryRequest} objects concurrently with shared concurrency limits. Duplicate requests
+     * will only be executed once. Each returned future completes as soon as its request has been executed.
+     *
+     * @param queryRequests
+     *         The requests to execute.
+     * @return a list of futures in the same order as the given requests.
+     */
+    @NotNull
+    public List<CompletableFuture<QueryResponse>> executeBatchRequest(@NotNull List<QueryRequest> queryRequests) {
+        return queryManager.executeBatchQuery(queryRequests);
+    }
+
+    /**
+     * Look up multiple query strings (e.g. a vocabulary list) in the same dictionaries. This is a shortcut for
+     * building one {@link QueryRequest} per query string and executing them with {@link
+     * #executeBatchRequest(List)}.
+     *
+     * @param queryStrings
+     *         The query strings to look up.
+     * @param dictionaries
+     *         The dictionaries that should be queried for each query string.
+     * @return a map from each distinct query string to the future of its response in the iteration order of the given
+     * query strings.
+     */
+    @NotNull
+    public Map<String, CompletableFuture<QueryResponse>> executeBatchRequest(@NotNull Collection<String> queryStrings, @NotNull List<Dictionary> dictionaries) {
+        List<String> distinctQueryStrings = queryStrings.stream().distinct().collect(Collectors.toList());
+        List<QueryRequest> queryRequests = distinctQueryStrings.stream()
+                .map(queryString -> createNewQueryRequestBuilder().setQueryString(queryString).setQueryDictionaries(dictionaries).build())
+                .collect(Collectors.toList());
+
+        List<CompletableFuture<QueryResponse>> queryResponses = executeBatchRequest(queryRequests);
+
+        Map<String, CompletableFuture<QueryResponse>> queryResponseMap = new LinkedHashMap<>();
+        for (int i = 0; i < distinctQueryStrings.size(); i++) {
+            queryResponseMap.put(distinctQueryStrings.get(i), queryResponses.get(i));
+        }
+        return queryResponseMap;
+    }
+
     /**
      * Return a reference to the internal {@link EngineRegistry} of this instance. You can use it for viewing the
      * currently registered engines and their implemented {@link org.xlrnet.metadict.api.metadata.FeatureSet} and
@@ -83,6 +161,26 @@ public class MetadictCore {
         return engineRegistry;
     }
 
+    /**
+     * Return a reference to the internal {@link QueryStepCache} of this instance. Use {@link #getCacheManager()} for
+     * invalidating cached results, since the cache manager also clears cached responses.
+     *
+     * @return a reference to the internal query step cache.
+     */
+    public QueryStepCache getQueryStepCache() {
+        return queryStepCache;
+    }
+
+    /**
+     * Return a reference to the internal {@link CacheManager} of this instance. You can use it for viewing the cache
+     * statistics or invalidating cached results and responses.
+     *
+     * @return a reference to the internal cache manager.
+     */
+    public CacheManager getCacheManager() {
+        return cacheManager;
+    }
+
     /**
      * Returns the current system status.
      *
@@ -95,11 +193,57 @@ public class MetadictCore {
     @PostConstruct
     private void initialize() {
         SystemStatus.initialize();
+        // The snapshot is written when the cache is destroyed
+        queryStepCache.restoreSnapshot();
+        startWarmUp();
         LOGGER.info("Metadict Core booted with {} search engines.", engineRegistry.countRegisteredEngines());
     }
 
+    /**
+     * Creates the core when the application context has been initialized. Observing the event is enough for the
+     * container to create the instance and call {@link #initialize()}.
+     */
+    private void onStartup(@Observes @Initialized(ApplicationScoped.class) Object event) {
+        LOGGER.debug("Metadict Core initialized on application startup");
+    }
+
+    /**
+     * Replay the query log in the background, so that a long warm-up can't block the deployment. The system will be
+     * marked as ready when the warm-up has finished or timed out.
+     */
+    private void startWarmUp() {
+        if (WARMUP_FILE.isEmpty()) {
+            SystemStatus.markReady();
+            return;
+        }
+
+        Path queryLog = Paths.get(WARMUP_FILE);
+        if (!Files.isReadable(queryLog)) {
+            LOGGER.warn("Query log {} for warm-up is not readable", queryLog);
+            SystemStatus.markReady();
+            return;
+        }
+
+        warmUpExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("metadict-warmup-main")
+                .setDaemon(true)
+                .build());
+        warmUpExecutor.execute(() -> {
+            try {
+                new CacheWarmer(this, engineRegistry, queryStepCache, WARMUP_THREADS, WARMUP_RATE_LIMIT).warmUp(queryLog, WARMUP_MAX_QUERIES, WARMUP_TIMEOUT);
+            } catch (RuntimeException e) {
+                LOGGER.error("Warm-up from query log {} failed", queryLog, e);
+            } finally {
+                SystemStatus.markReady();
+            }
+        });
+        warmUpExecutor.shutdown();
+    }
+
     @PreDestroy
     private void shutdown() {
         LOGGER.info("Shutting down Metadict Core...");
+        if (warmUpExecutor != null)
+            warmUpExecutor.shutdownNow();
     }
 }
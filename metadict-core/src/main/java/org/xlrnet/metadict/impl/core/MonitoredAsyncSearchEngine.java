@@ -0,0 +1,65 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.metadict.api.engine.AsyncSearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Decorator for an {@link AsyncSearchEngine} that records the latency and outcome of every query in an {@link
+ * EngineStatistics} object once the query completed. Engines that throw synchronously or return no stage will be
+ * recorded as failed. Blocking engines are decorated by {@link MonitoredSearchEngine}.
+ */
+class MonitoredAsyncSearchEngine extends MonitoredSearchEngine implements AsyncSearchEngine {
+
+    private final AsyncSearchEngine delegate;
+
+    MonitoredAsyncSearchEngine(@NotNull AsyncSearchEngine delegate, @NotNull EngineStatistics engineStatistics) {
+        super(delegate, engineStatistics);
+        this.delegate = delegate;
+    }
+
+    @Override
+    public CompletionStage<EngineQueryResult> executeSearchQueryAsync(String queryInput, Language inputLanguage, Language outputLanguage, boolean allowBothWay) {
+        long startTime = System.currentTimeMillis();
+        CompletionStage<EngineQueryResult> queryResultStage;
+        try {
+            queryResultStage = delegate.executeSearchQueryAsync(queryInput, inputLanguage, outputLanguage, allowBothWay);
+        } catch (RuntimeException e) {
+            recordOutcome(System.currentTimeMillis() - startTime, QueryOutcome.FAILURE);
+            throw e;
+        }
+        if (queryResultStage == null) {
+            recordOutcome(System.currentTimeMillis() - startTime, QueryOutcome.FAILURE);
+            return null;
+        }
+        return queryResultStage.whenComplete((engineQueryResult, throwable) ->
+                recordOutcome(System.currentTimeMillis() - startTime, QueryOutcome.of(engineQueryResult, throwable)));
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+
+/**
+ * Decorator for a {@link SearchEngine} that records the latency and outcome of every query in an {@link
+ * EngineStatistics} object. Only real engine calls are measured, i.e. results that are served from a cache don't
+ * influence the statistics. Calls that were cancelled or interrupted by the caller (see {@link QueryOutcome#ABORTED})
+ * won't be recorded, since their latency and outcome say nothing about the engine.
+ */
+class MonitoredSearchEngine implements SearchEngine {
+
+    private final SearchEngine delegate;
+
+    private final EngineStatistics engineStatistics;
+
+    MonitoredSearchEngine(@NotNull SearchEngine delegate, @NotNull EngineStatistics engineStatistics) {
+        this.delegate = delegate;
+        this.engineStatistics = engineStatistics;
+    }
+
+    @Override
+    public EngineQueryResult executeSearchQuery(String queryInput, Language inputLanguage, Language outputLanguage, boolean allowBothWay) throws Exception {
+        long startTime = System.currentTimeMillis();
+        EngineQueryResult engineQueryResult = null;
+        Throwable throwable = null;
+        try {
+            engineQueryResult = delegate.executeSearchQuery(queryInput, inputLanguage, outputLanguage, allowBothWay);
+            return engineQueryResult;
+        } catch (Throwable t) {
+            throwable = t;
+            throw t;
+        } finally {
+            recordOutcome(System.currentTimeMillis() - startTime, QueryOutcome.ofBlockingCall(engineQueryResult, throwable));
+        }
+    }
+
+    void recordOutcome(long latencyMillis, @NotNull QueryOutcome queryOutcome) {
+        if (queryOutcome != QueryOutcome.ABORTED) {
+            engineStatistics.record(latencyMillis, queryOutcome == QueryOutcome.FAILURE);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
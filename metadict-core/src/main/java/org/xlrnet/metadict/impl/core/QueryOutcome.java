@@ -0,0 +1,97 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import com.google.common.base.Throwables;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Outcome of a single engine call as seen by the monitoring and circuit breaker decorators.
+ */
+enum QueryOutcome {
+
+    /** The engine returned a result. */
+    SUCCESS,
+
+    /** The engine failed or returned no result. */
+    FAILURE,
+
+    /**
+     * The call was cancelled or interrupted by the caller (e.g. a hedged request that lost or a step that exceeded
+     * its deadline). This says nothing about the health of the engine and must not be counted as a failure.
+     */
+    ABORTED;
+
+    /**
+     * Classify the outcome of an asynchronous call from the values that completed its stage.
+     *
+     * @param engineQueryResult
+     *         The result of the call or null.
+     * @param throwable
+     *         The exception of the call or null.
+     * @return the outcome of the call.
+     */
+    @NotNull
+    static QueryOutcome of(@Nullable EngineQueryResult engineQueryResult, @Nullable Throwable throwable) {
+        if (throwable != null)
+            return isAbort(throwable) ? ABORTED : FAILURE;
+        return engineQueryResult != null ? SUCCESS : FAILURE;
+    }
+
+    /**
+     * Classify the outcome of a blocking call. Must be called on the thread that executed the call, since a failure
+     * of an interrupted thread will be treated as aborted.
+     *
+     * @param engineQueryResult
+     *         The result of the call or null.
+     * @param throwable
+     *         The exception of the call or null.
+     * @return the outcome of the call.
+     */
+    @NotNull
+    static QueryOutcome ofBlockingCall(@Nullable EngineQueryResult engineQueryResult, @Nullable Throwable throwable) {
+        if (throwable != null && Thread.currentThread().isInterrupted())
+            return ABORTED;
+        return of(engineQueryResult, throwable);
+    }
+
+    private static boolean isAbort(@NotNull Throwable throwable) {
+        for (Throwable cause : Throwables.getCausalChain(throwable)) {
+            if (cause instanceof CancellationException || cause instanceof InterruptedException || cause instanceof ClosedByInterruptException)
+                return true;
+            // Socket timeouts are interrupted I/O as well, but they are real failures of the engine
+            if (cause instanceof InterruptedIOException && !(cause instanceof SocketTimeoutException))
+                return true;
+        }
+        return false;
+    }
+}
@@ -30,8 +30,8 @@ import java.time.Duration;
 import java.time.Instant;
 
 /**
- * The class {@link SystemStatus} is a container for several system-related status information like current version and
- * uptime.
+ * The class {@link SystemStatus} is a container for several system-related status information like current version,
+ * uptime and whether the system is ready for accepting requests.
  */
 public class SystemStatus {
 
@@ -41,10 +41,15 @@ public class SystemStatus {
 
     private static Instant startTime;
 
+    private static volatile boolean systemReady;
+
     private final Duration uptime;
 
-    public SystemStatus(Duration uptime) {
+    private final boolean ready;
+
+    public SystemStatus(Duration uptime, boolean ready) {
         this.uptime = uptime;
+        this.ready = ready;
     }
 
     /**
@@ -52,11 +57,20 @@ public class SystemStatus {
      * @return the current system status.
      */
     protected static SystemStatus queryStatus() {
-        return new SystemStatus(Duration.between(startTime, Instant.now()));
+        return new SystemStatus(Duration.between(startTime, Instant.now()), systemReady);
     }
 
     static void initialize() {
         startTime = Instant.now();
+        systemReady = false;
+    }
+
+    /**
+     * Mark the system as ready after the startup (including restoring and warming up the caches) has finished or the
+     * warm-up timed out.
+     */
+    static void markReady() {
+        systemReady = true;
     }
 
     public String getBuildTime() {
@@ -74,4 +88,14 @@ public class SystemStatus {
     public String getVersion() {
         return version;
     }
+
+    /**
+     * Returns true, if the caches have been warmed up. Requests will be accepted while the warm-up is running in the
+     * background, but they may not be answered from the caches yet.
+     *
+     * @return true, if the startup has finished.
+     */
+    public boolean isReady() {
+        return ready;
+    }
 }
@@ -24,6 +24,9 @@
 
 package org.xlrnet.metadict.impl.query;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,32 +39,70 @@ import org.xlrnet.metadict.impl.aggregation.ResultGroup;
 import org.xlrnet.metadict.impl.core.EngineRegistry;
 import org.xlrnet.metadict.impl.core.MetadictCore;
 import org.xlrnet.metadict.impl.strategies.DefaultExecutionStrategy;
+import org.xlrnet.metadict.impl.strategies.DefaultPlanningStrategy;
+import org.xlrnet.metadict.impl.util.CommonUtils;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * The {@link QueryManager} is used for managing and coordinating the execution of {@link QueryRequest} objects.
+ * <p>
+ * Finished {@link QueryResponse} objects can optionally be cached, so that repeated requests skip planning, grouping,
+ * ordering and collecting entirely. Responses that contain a failed query step will never be cached. The response cache
+ * is disabled by default and can be enabled with {@code metadict.cache.response.enabled}.
+ * <p>
+ * Batches of requests (see {@link #executeBatchQuery(List)}) are executed on a shared thread pool whose size can be
+ * configured with {@code metadict.batch.threads}. This limits the load that batches put on the engines, no matter how
+ * many batches are running at the same time.
+ * <p>
+ * Since the response cache has to be shared by all callers, this object is {@link ApplicationScoped}.
  */
+@ApplicationScoped
 public class QueryManager {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(QueryManager.class);
 
+    private static final boolean RESPONSE_CACHE_ENABLED = CommonUtils.getBooleanProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.response.enabled", false);
+
+    private static final long RESPONSE_CACHE_MAXIMUM_SIZE = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.response.maximumSize", 1024);
+
+    private static final long RESPONSE_CACHE_EXPIRE_AFTER_WRITE = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.response.expireAfterWrite", 300);
+
+    private static final int BATCH_THREAD_COUNT = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.batch.threads", 8);
+
+    private boolean responseCacheEnabled = RESPONSE_CACHE_ENABLED;
+
     @Inject
     private MetadictCore metadictCore;
 
     @Inject
-    private EngineRegistry engineRegistry;
+    EngineRegistry engineRegistry;
 
     @Inject
-    private QueryPlanningStrategy queryPlanningStrategy;
+    @DefaultPlanningStrategy
+    QueryPlanningStrategy queryPlanningStrategy;
 
     @Inject
     @DefaultExecutionStrategy
-    private QueryPlanExecutionStrategy queryPlanExecutionStrategy;
+    QueryPlanExecutionStrategy queryPlanExecutionStrategy;
+
+    /** Cache for finished responses - null if disabled. */
+    private Cache<QueryResponseCacheKey, QueryResponse> queryResponseCache;
+
+    /** Shared executor for all batch requests. */
+    private ExecutorService batchExecutorService;
 
     public QueryRequestBuilder createNewQueryRequestBuilder() {
         return new QueryRequestBuilder(metadictCore);
@@ -80,6 +121,101 @@ public class QueryManager {
         //return new QueryResponseBuilder().build();
     }
 
+    /**
+     * Execute multiple {@link QueryRequest} objects concurrently. The requests will be validated before any of them is
+     * executed. Requests with the same normalized query string, dictionaries, grouping and ordering will be executed
+     * only once. Each duplicate gets its own copy of the response with its original request string.
+     * <p>
+     * The requests of a batch are still planned separately. However, if the cached execution strategy is used, equal
+     * query steps of concurrently executed requests will only be sent once to the engine (see {@link
+     * org.xlrnet.metadict.impl.strategies.QueryStepCache#get(QueryStep)}).
+     * <p>
+     * Each returned future completes as soon as its request has been executed, i.e. callers can process the results in
+     * completion order. If a request fails, its future will be completed exceptionally.
+     *
+     * @param queryRequests
+     *         The requests to execute.
+     * @return a list of futures in the same order as the given requests.
+     */
+    @NotNull
+    public List<CompletableFuture<QueryResponse>> executeBatchQuery(@NotNull List<QueryRequest> queryRequests) {
+        checkNotNull(queryRequests, "Query request list may not be null");
+        queryRequests.forEach(this::validateQueryRequest);
+
+        LOGGER.info("Incoming batch with {} query requests", queryRequests.size());
+
+        Map<QueryResponseCacheKey, CompletableFuture<QueryResponse>> pendingResponses = new HashMap<>();
+        List<CompletableFuture<QueryResponse>> queryResponses = new ArrayList<>(queryRequests.size());
+
+        for (QueryRequest queryRequest : queryRequests) {
+            QueryResponseCacheKey cacheKey = QueryResponseCacheKey.fromQueryRequest(queryRequest);
+            CompletableFuture<QueryResponse> pendingResponse = pendingResponses.get(cacheKey);
+            if (pendingResponse == null) {
+                pendingResponse = CompletableFuture.supplyAsync(() -> executeQuery(queryRequest), batchExecutorService);
+                pendingResponses.put(cacheKey, pendingResponse);
+                queryResponses.add(pendingResponse);
+            } else {
+                queryResponses.add(pendingResponse.thenApply(queryResponse -> copyQueryResponse(queryRequest, queryResponse, queryResponse.getPerformanceStatistics())));
+            }
+        }
+
+        LOGGER.debug("Scheduled {} distinct query requests for batch", pendingResponses.size());
+
+        return queryResponses;
+    }
+
+    /**
+     * Remove all cached responses for the given query string. The query string will be normalized before matching,
+     * i.e. responses for all dictionaries of the same normalized query will be removed.
+     *
+     * @param queryString
+     *         The query string.
+     * @return the number of removed responses.
+     */
+    public int invalidateResponses(@NotNull String queryString) {
+        String normalizedQueryString = QueryStepCacheKey.normalizeQueryString(queryString);
+        return invalidateResponsesIf(cacheKey -> normalizedQueryString.equals(cacheKey.getQueryString()));
+    }
+
+    /**
+     * Remove all cached responses.
+     *
+     * @return the number of removed responses.
+     */
+    public int invalidateAllResponses() {
+        return invalidateResponsesIf(cacheKey -> true);
+    }
+
+    /**
+     * Override the configured state of the response cache. Has to be called before {@link #initialize()}, only used in
+     * tests.
+     */
+    void setResponseCacheEnabled(boolean responseCacheEnabled) {
+        this.responseCacheEnabled = responseCacheEnabled;
+    }
+
+    @PostConstruct
+    void initialize() {
+        batchExecutorService = Executors.newFixedThreadPool(BATCH_THREAD_COUNT, new ThreadFactoryBuilder()
+                .setNameFormat("metadict-batch-%d")
+                .setDaemon(true)
+                .build());
+
+        if (responseCacheEnabled) {
+            queryResponseCache = CacheBuilder
+                    .newBuilder()
+                    .concurrencyLevel(8)
+                    .maximumSize(RESPONSE_CACHE_MAXIMUM_SIZE)
+                    .expireAfterWrite(RESPONSE_CACHE_EXPIRE_AFTER_WRITE, TimeUnit.SECONDS)
+                    .build();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        batchExecutorService.shutdownNow();
+    }
+
     @NotNull
     protected Iterable<QueryStepResult> executeQueryPlan(@NotNull QueryPlan queryPlan) {
         LOGGER.debug("Executing query plan {} using executor {} ...", queryPlan, queryPlanExecutionStrategy.getClass().getSimpleName());
@@ -105,6 +241,15 @@ public class QueryManager {
             checkNotNull(dictionary, "Query dictionary in query may not be null");
     }
 
+    private int invalidateResponsesIf(@NotNull Predicate<QueryResponseCacheKey> predicate) {
+        if (queryResponseCache == null)
+            return 0;
+
+        List<QueryResponseCacheKey> invalidatedKeys = queryResponseCache.asMap().keySet().stream().filter(predicate).collect(Collectors.toList());
+        queryResponseCache.invalidateAll(invalidatedKeys);
+        return invalidatedKeys.size();
+    }
+
     @NotNull
     private Collection<ResultGroup> groupQueryResults(@NotNull QueryRequest queryRequest, @NotNull Iterable<QueryStepResult> engineQueryResults) {
         GroupingType groupingType = queryRequest.getQueryGrouping();
@@ -140,9 +285,52 @@ public class QueryManager {
 
     @NotNull
     private QueryResponse internalExecuteQuery(@NotNull QueryRequest queryRequest) {
-        QueryPerformanceStatistics performanceStatistics = new QueryPerformanceStatistics();
         validateQueryRequest(queryRequest);
 
+        if (queryResponseCache == null)
+            return executeQueryPipeline(queryRequest);
+
+        long startLookupTime = System.currentTimeMillis();
+        QueryResponseCacheKey cacheKey = QueryResponseCacheKey.fromQueryRequest(queryRequest);
+        QueryResponse cachedResponse = queryResponseCache.getIfPresent(cacheKey);
+        if (cachedResponse != null) {
+            LOGGER.debug("Response cache hit on query request {}", queryRequest);
+            // The performance statistics of a cached response only contain the time of the cache lookup
+            QueryPerformanceStatistics performanceStatistics = new QueryPerformanceStatistics().setTotalDuration(System.currentTimeMillis() - startLookupTime);
+            return copyQueryResponse(queryRequest, cachedResponse, performanceStatistics);
+        }
+
+        return executeQueryPipeline(queryRequest);
+    }
+
+    /**
+     * Copy a shared response for the given request. The request string of the copy will be the one from the given
+     * request.
+     */
+    @NotNull
+    private QueryResponse copyQueryResponse(@NotNull QueryRequest queryRequest, @NotNull QueryResponse sharedResponse, @NotNull QueryPerformanceStatistics performanceStatistics) {
+        return new QueryResponseBuilder()
+                .setQueryRequestString(queryRequest.getQueryString())
+                .setQueryPerformanceStatistics(performanceStatistics)
+                .setGroupedResults(sharedResponse.getGroupedResults())
+                .setGroupingType(sharedResponse.getGroupingType())
+                .setSimilarRecommendations(sharedResponse.getSimilarRecommendations())
+                .setExternalContents(sharedResponse.getExternalContents())
+                .build();
+    }
+
+    private boolean containsFailedStep(@NotNull Iterable<QueryStepResult> queryStepResults) {
+        for (QueryStepResult queryStepResult : queryStepResults) {
+            if (queryStepResult.isFailedStep())
+                return true;
+        }
+        return false;
+    }
+
+    @NotNull
+    private QueryResponse executeQueryPipeline(@NotNull QueryRequest queryRequest) {
+        QueryPerformanceStatistics performanceStatistics = new QueryPerformanceStatistics();
+
         long startPlanningTime = System.currentTimeMillis();
         QueryPlan queryPlan = prepareQueryPlan(queryRequest);
         // TODO: validate query plan
@@ -168,7 +356,13 @@ public class QueryManager {
                 .setCollectPhaseDuration(finishTime - startCollectingTime)
                 .setTotalDuration(finishTime - startPlanningTime);
 
-        return buildQueryResponse(queryRequest, orderedResultGroups, similarRecommendations, externalContents, performanceStatistics);
+        QueryResponse queryResponse = buildQueryResponse(queryRequest, orderedResultGroups, similarRecommendations, externalContents, performanceStatistics);
+
+        if (queryResponseCache != null && !containsFailedStep(engineQueryResults)) {
+            queryResponseCache.put(QueryResponseCacheKey.fromQueryRequest(queryRequest), queryResponse);
+        }
+
+        return queryResponse;
     }
 
     @NotNull
@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.query;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.language.Dictionary;
+import org.xlrnet.metadict.impl.core.EngineRegistry;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Builder for creating new {@link QueryPlan} objects without redundant {@link QueryStep}s.
+ * <p>
+ * Steps that would result in the same backend call will be merged into a single step: if an engine registered a
+ * bidirectional {@link Dictionary} for a pair of languages, every step for this engine with the same languages (in any
+ * direction and with or without allowBothWay) will be merged into one step with allowBothWay=true. The single result of
+ * this step serves all of the requested dictionaries. Identical steps will always be merged.
+ * <p>
+ * The steps of the built plan have the same order as the first occurrence of each merged step.
+ */
+public class QueryPlanBuilder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryPlanBuilder.class);
+
+    private final EngineRegistry engineRegistry;
+
+    private final Map<List<Object>, QueryStep> queryStepMap = new LinkedHashMap<>();
+
+    public QueryPlanBuilder(@NotNull EngineRegistry engineRegistry) {
+        this.engineRegistry = engineRegistry;
+    }
+
+    /**
+     * Adds a new {@link QueryStep} to the plan or merges it into an already added step that results in the same
+     * backend call.
+     *
+     * @param queryStep
+     *         The new step to add.
+     * @return the current builder
+     */
+    public QueryPlanBuilder addQueryStep(@NotNull QueryStep queryStep) {
+        checkNotNull(queryStep);
+
+        boolean mergeable = supportsBidirectional(queryStep);
+        List<Object> stepKey = buildStepKey(queryStep, mergeable);
+        QueryStep existingStep = queryStepMap.get(stepKey);
+
+        if (existingStep == null) {
+            queryStepMap.put(stepKey, queryStep);
+        } else if (mergeable && !existingStep.equals(queryStep)) {
+            LOGGER.debug("Merging query step {} into {}", queryStep, existingStep);
+            existingStep.setAllowBothWay(true);
+        }
+        return this;
+    }
+
+    public QueryPlan build() {
+        QueryPlan queryPlan = new QueryPlan();
+        queryStepMap.values().forEach(queryPlan::addQueryStep);
+        return queryPlan;
+    }
+
+    @NotNull
+    private List<Object> buildStepKey(@NotNull QueryStep queryStep, boolean mergeable) {
+        Object languages;
+        if (mergeable) {
+            languages = ImmutableSet.of(queryStep.getInputLanguage(), queryStep.getOutputLanguage());
+        } else {
+            languages = ImmutableList.of(queryStep.getInputLanguage(), queryStep.getOutputLanguage(), queryStep.isAllowBothWay());
+        }
+        return Arrays.asList(queryStep.getSearchEngineName(), queryStep.getQueryString(), languages);
+    }
+
+    private boolean supportsBidirectional(@NotNull QueryStep queryStep) {
+        Dictionary bidirectionalDictionary = Dictionary.fromLanguages(queryStep.getInputLanguage(), queryStep.getOutputLanguage(), true);
+        return engineRegistry.getSearchEngineNamesByDictionary(bidirectionalDictionary).contains(queryStep.getSearchEngineName());
+    }
+}
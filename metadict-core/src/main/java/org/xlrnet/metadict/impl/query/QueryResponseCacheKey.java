@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.query;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.metadict.api.language.Dictionary;
+import org.xlrnet.metadict.impl.aggregation.GroupingType;
+import org.xlrnet.metadict.impl.aggregation.OrderType;
+
+/**
+ * Immutable key for caching finished {@link QueryResponse} objects. Two requests have the same key if their normalized
+ * query strings (see {@link QueryStepCacheKey#normalizeQueryString(String)}), their dictionaries (including the order)
+ * and their grouping and order types are equal.
+ */
+final class QueryResponseCacheKey {
+
+    private final String queryString;
+
+    private final ImmutableList<Dictionary> dictionaries;
+
+    private final GroupingType groupingType;
+
+    private final OrderType orderType;
+
+    private final int hashCode;
+
+    private QueryResponseCacheKey(@NotNull String queryString, @NotNull ImmutableList<Dictionary> dictionaries, GroupingType groupingType, OrderType orderType) {
+        this.queryString = queryString;
+        this.dictionaries = dictionaries;
+        this.groupingType = groupingType;
+        this.orderType = orderType;
+        this.hashCode = Objects.hashCode(queryString, dictionaries, groupingType, orderType);
+    }
+
+    /**
+     * Create a new cache key for the given (validated) {@link QueryRequest}.
+     *
+     * @param queryRequest
+     *         The request for which the key should be created.
+     * @return a new cache key.
+     */
+    @NotNull
+    static QueryResponseCacheKey fromQueryRequest(@NotNull QueryRequest queryRequest) {
+        return new QueryResponseCacheKey(QueryStepCacheKey.normalizeQueryString(queryRequest.getQueryString()),
+                ImmutableList.copyOf(queryRequest.getQueryDictionaries()), queryRequest.getQueryGrouping(), queryRequest.getQueryOrdering());
+    }
+
+    /**
+     * Returns the normalized query string of the request.
+     *
+     * @return the normalized query string of the request.
+     */
+    @NotNull
+    String getQueryString() {
+        return queryString;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof QueryResponseCacheKey)) return false;
+        QueryResponseCacheKey that = (QueryResponseCacheKey) o;
+        return hashCode == that.hashCode &&
+                Objects.equal(queryString, that.queryString) &&
+                Objects.equal(dictionaries, that.dictionaries) &&
+                groupingType == that.groupingType &&
+                orderType == that.orderType;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("queryString", queryString)
+                .add("dictionaries", dictionaries)
+                .add("groupingType", groupingType)
+                .add("orderType", orderType)
+                .toString();
+    }
+}
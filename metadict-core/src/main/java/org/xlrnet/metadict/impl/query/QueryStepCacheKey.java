@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.query;
+
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+
+import java.util.Locale;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Immutable key for caching the results of a {@link QueryStep}. In contrast to {@link QueryStep} itself, the key
+ * doesn't depend on the concrete {@link SearchEngine} instance but only on the engine's name. The query
+ * string will be normalized, i.e. surrounding whitespace is removed, inner whitespace is collapsed and all characters
+ * are converted to lower case. Therefore "Haus", "haus " and "HAUS" will result in the same key.
+ */
+public final class QueryStepCacheKey {
+
+    private final String searchEngineName;
+
+    private final String queryString;
+
+    private final Language inputLanguage;
+
+    private final Language outputLanguage;
+
+    private final boolean allowBothWay;
+
+    private final int hashCode;
+
+    private QueryStepCacheKey(@NotNull String searchEngineName, @NotNull String queryString, @NotNull Language inputLanguage, @NotNull Language outputLanguage, boolean allowBothWay) {
+        this.searchEngineName = searchEngineName;
+        this.queryString = queryString;
+        this.inputLanguage = inputLanguage;
+        this.outputLanguage = outputLanguage;
+        this.allowBothWay = allowBothWay;
+        this.hashCode = Objects.hashCode(searchEngineName, queryString, inputLanguage, outputLanguage, allowBothWay);
+    }
+
+    /**
+     * Create a new cache key from the given {@link QueryStep}.
+     *
+     * @param queryStep
+     *         The query step for which the key should be created.
+     * @return a new cache key for the given query step.
+     */
+    @NotNull
+    public static QueryStepCacheKey fromQueryStep(@NotNull QueryStep queryStep) {
+        return of(queryStep.getSearchEngineName(), queryStep.getQueryString(), queryStep.getInputLanguage(), queryStep.getOutputLanguage(), queryStep.isAllowBothWay());
+    }
+
+    /**
+     * Create a new cache key from the given values. The query string will be normalized.
+     *
+     * @param searchEngineName
+     *         The name of the engine that executes the query.
+     * @param queryString
+     *         The query string - will be normalized.
+     * @param inputLanguage
+     *         The input language of the query.
+     * @param outputLanguage
+     *         The output language of the query.
+     * @param allowBothWay
+     *         True, if the query may be executed in both directions.
+     * @return a new cache key.
+     */
+    @NotNull
+    public static QueryStepCacheKey of(String searchEngineName, String queryString, Language inputLanguage, Language outputLanguage, boolean allowBothWay) {
+        checkNotNull(searchEngineName, "Search engine name may not be null");
+        checkNotNull(queryString, "Query string may not be null");
+        checkNotNull(inputLanguage, "Input language may not be null");
+        checkNotNull(outputLanguage, "Output language may not be null");
+
+        return new QueryStepCacheKey(searchEngineName, normalizeQueryString(queryString), inputLanguage, outputLanguage, allowBothWay);
+    }
+
+    /**
+     * Normalizes the given query string, i.e. removes surrounding whitespace, collapses inner whitespace and converts
+     * all characters to lower case.
+     *
+     * @param queryString
+     *         The query string to normalize.
+     * @return the normalized query string.
+     */
+    @NotNull
+    public static String normalizeQueryString(@NotNull String queryString) {
+        return StringUtils.normalizeSpace(queryString).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Creates a new {@link QueryStep} that executes the query described by this key with the given engine.
+     *
+     * @param searchEngine
+     *         The engine that is registered under the name of this key.
+     * @return a new query step.
+     */
+    @NotNull
+    public QueryStep toQueryStep(@NotNull SearchEngine searchEngine) {
+        return new QueryStep()
+                .setInputLanguage(inputLanguage)
+                .setOutputLanguage(outputLanguage)
+                .setSearchEngineName(searchEngineName)
+                .setQueryString(queryString)
+                .setAllowBothWay(allowBothWay)
+                .setSearchEngine(searchEngine);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof QueryStepCacheKey)) return false;
+        QueryStepCacheKey that = (QueryStepCacheKey) o;
+        return hashCode == that.hashCode &&
+                allowBothWay == that.allowBothWay &&
+                Objects.equal(searchEngineName, that.searchEngineName) &&
+                Objects.equal(queryString, that.queryString) &&
+                Objects.equal(inputLanguage, that.inputLanguage) &&
+                Objects.equal(outputLanguage, that.outputLanguage);
+    }
+
+    public Language getInputLanguage() {
+        return inputLanguage;
+    }
+
+    public Language getOutputLanguage() {
+        return outputLanguage;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    public String getSearchEngineName() {
+        return searchEngineName;
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    public boolean isAllowBothWay() {
+        return allowBothWay;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("searchEngineName", searchEngineName)
+                .add("queryString", queryString)
+                .add("inputLanguage", inputLanguage)
+                .add("outputLanguage", outputLanguage)
+                .add("allowBothWay", allowBothWay)
+                .toString();
+    }
+}
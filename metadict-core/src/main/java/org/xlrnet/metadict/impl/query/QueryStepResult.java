@@ -62,6 +62,14 @@ public interface QueryStepResult {
      */
     QueryStep getQueryStep();
 
+    /**
+     * Returns the time in milliseconds since the epoch when the {@link EngineQueryResult} was produced by the engine.
+     * Results that are served from a cache keep the timestamp of their original execution.
+     *
+     * @return the time when the result was produced.
+     */
+    long getTimestamp();
+
     /**
      * Returns true, if the attached {@link QueryStep} has failed. If this message returns true, then {@link
      * #getErrorMessage()} should return the message of the thrown exception.
@@ -43,6 +43,8 @@ public class QueryStepResultBuilder {
 
     private String errorMessage;
 
+    private long timestamp;
+
     /**
      * Returns a new instance of {@link QueryStepResult}. This method will throw a {@link NullPointerException} if
      * either the {@link QueryStep} or the {@link EngineQueryResult} is not set.
@@ -53,7 +55,8 @@ public class QueryStepResultBuilder {
         checkNotNull(queryStep, "Provided query step may not be null");
         checkNotNull(engineQueryResult, "Provided query result may not be null");
 
-        return new QueryStepResultImpl(queryStep, engineQueryResult, executionTime, failedStep, errorMessage);
+        return new QueryStepResultImpl(queryStep, engineQueryResult, executionTime, failedStep, errorMessage,
+                timestamp > 0 ? timestamp : System.currentTimeMillis());
     }
 
     /**
@@ -106,6 +109,19 @@ public class QueryStepResultBuilder {
         return this;
     }
 
+    /**
+     * Set the time in milliseconds since the epoch when the result was produced. Defaults to the time when {@link
+     * #build()} is called.
+     *
+     * @param timestamp
+     *         The time when the result was produced.
+     * @return the current builder
+     */
+    public QueryStepResultBuilder setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+        return this;
+    }
+
     /**
      * Set the {@link QueryStep} that was executed.
      *
@@ -41,12 +41,15 @@ public class QueryStepResultImpl implements QueryStepResult {
 
     private final String errorMessage;
 
-    QueryStepResultImpl(QueryStep queryStep, EngineQueryResult engineQueryResult, long executionTime, boolean failedStep, String errorMessage) {
+    private final long timestamp;
+
+    QueryStepResultImpl(QueryStep queryStep, EngineQueryResult engineQueryResult, long executionTime, boolean failedStep, String errorMessage, long timestamp) {
         this.queryStep = queryStep;
         this.engineQueryResult = engineQueryResult;
         this.executionTime = executionTime;
         this.failedStep = failedStep;
         this.errorMessage = errorMessage;
+        this.timestamp = timestamp;
     }
 
     /**
@@ -90,6 +93,16 @@ public class QueryStepResultImpl implements QueryStepResult {
         return queryStep;
     }
 
+    /**
+     * Returns the time in milliseconds since the epoch when the {@link EngineQueryResult} was produced by the engine.
+     *
+     * @return the time when the result was produced.
+     */
+    @Override
+    public long getTimestamp() {
+        return timestamp;
+    }
+
     /**
      * Returns true, if the attached {@link QueryStep} has failed. If this message returns true, then {@link
      * #getErrorMessage()} should return the message of the thrown exception.
@@ -25,17 +25,32 @@
 package org.xlrnet.metadict.impl.query;
 
 import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.engine.AsyncSearchEngine;
+import org.xlrnet.metadict.api.engine.BlockingSearchEngineAdapter;
+import org.xlrnet.metadict.api.language.Language;
 import org.xlrnet.metadict.api.query.DictionaryObject;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
 import org.xlrnet.metadict.api.query.ExternalContent;
+import org.xlrnet.metadict.impl.exception.CircuitBreakerOpenException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Helper class with static utility methods for query-related tasks.
  */
 public class QueryUtil {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryUtil.class);
+
     /**
      * Collect similar recommendations from multiple {@link QueryStepResult} and merge them in one list.
      *
@@ -67,4 +82,139 @@ public class QueryUtil {
         }
         return externalContents;
     }
+
+    /**
+     * Execute the given {@link QueryStep} on its attached {@link org.xlrnet.metadict.api.engine.SearchEngine} and wrap
+     * the outcome in a {@link QueryStepResult}. This method never throws: if the engine fails or returns null, a
+     * failed {@link QueryStepResult} with an empty {@link EngineQueryResult} will be returned.
+     *
+     * @param step
+     *         The query step to execute.
+     * @return the result of the executed step.
+     */
+    @NotNull
+    public static QueryStepResult executeQueryStep(@NotNull QueryStep step) {
+        LOGGER.debug("Executing query step {}", step);
+
+        QueryStepResultBuilder stepResultBuilder = new QueryStepResultBuilder().setQueryStep(step);
+        long startTime = System.currentTimeMillis();
+
+        try {
+            String queryString = step.getQueryString();
+            Language inputLanguage = step.getInputLanguage();
+            Language outLanguage = step.getOutputLanguage();
+            boolean allowBothWay = step.isAllowBothWay();
+
+            EngineQueryResult queryResult = step.getSearchEngine().executeSearchQuery(queryString, inputLanguage, outLanguage, allowBothWay);
+
+            if (queryResult == null) {
+                LOGGER.error("Query step {} failed: query result was null", step);
+                stepResultBuilder.setFailedStep(true).setErrorMessage("query result was null");
+                queryResult = EngineQueryResultBuilder.EMPTY_QUERY_RESULT;
+            }
+            stepResultBuilder.setEngineQueryResult(queryResult);
+
+            long executionTime = System.currentTimeMillis() - startTime;
+            stepResultBuilder.setExecutionTime(executionTime);
+
+            LOGGER.debug("Executed query step {} in {} ms", step, executionTime);
+
+        } catch (CircuitBreakerOpenException e) {
+            LOGGER.debug("Query step {} skipped: {}", step, e.getMessage());
+            stepResultBuilder.setFailedStep(true).setErrorMessage(e.getMessage())
+                    .setEngineQueryResult(EngineQueryResultBuilder.EMPTY_QUERY_RESULT)
+                    .setExecutionTime(System.currentTimeMillis() - startTime);
+        } catch (Exception e) {
+            LOGGER.error("Query step {} failed: {}", step, e);
+            stepResultBuilder.setFailedStep(true).setErrorMessage(e.getMessage())
+                    .setEngineQueryResult(EngineQueryResultBuilder.EMPTY_QUERY_RESULT)
+                    .setExecutionTime(System.currentTimeMillis() - startTime);
+        }
+        return stepResultBuilder.build();
+    }
+
+    /**
+     * Execute the given {@link QueryStep} asynchronously and wrap the outcome in a {@link QueryStepResult}. Engines
+     * that implement {@link AsyncSearchEngine} will be called directly without blocking a thread of the given executor,
+     * blocking engines will be executed on the executor (see {@link BlockingSearchEngineAdapter}).
+     * <p>
+     * The returned future never completes exceptionally: if the engine fails or returns null, it will be completed with
+     * a failed {@link QueryStepResult}.
+     *
+     * @param step
+     *         The query step to execute.
+     * @param executor
+     *         The executor for blocking engines.
+     * @return a future with the result of the executed step.
+     * @throws RejectedExecutionException
+     *         if a blocking engine couldn't be scheduled on the executor.
+     */
+    @NotNull
+    public static CompletableFuture<QueryStepResult> executeQueryStepAsync(@NotNull QueryStep step, @NotNull Executor executor) {
+        LOGGER.debug("Executing query step {} asynchronously", step);
+
+        long startTime = System.currentTimeMillis();
+        AsyncSearchEngine searchEngine = BlockingSearchEngineAdapter.adapt(step.getSearchEngine(), executor);
+        CompletionStage<EngineQueryResult> queryResultStage;
+
+        try {
+            queryResultStage = searchEngine.executeSearchQueryAsync(step.getQueryString(), step.getInputLanguage(), step.getOutputLanguage(), step.isAllowBothWay());
+        } catch (RejectedExecutionException e) {
+            throw e;
+        } catch (Exception e) {
+            CompletableFuture<EngineQueryResult> failedFuture = new CompletableFuture<>();
+            failedFuture.completeExceptionally(e);
+            queryResultStage = failedFuture;
+        }
+
+        if (queryResultStage == null) {
+            LOGGER.error("Query step {} failed: query result stage was null", step);
+            return CompletableFuture.completedFuture(buildFailedQueryStepResult(step, "query result stage was null", 0));
+        }
+
+        return queryResultStage.toCompletableFuture().handle((queryResult, throwable) -> {
+            long executionTime = System.currentTimeMillis() - startTime;
+            if (throwable != null) {
+                Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+                if (cause instanceof CircuitBreakerOpenException)
+                    LOGGER.debug("Query step {} skipped: {}", step, cause.getMessage());
+                else
+                    LOGGER.error("Query step {} failed: {}", step, cause);
+                return buildFailedQueryStepResult(step, cause.getMessage(), executionTime);
+            }
+            if (queryResult == null) {
+                LOGGER.error("Query step {} failed: query result was null", step);
+                return buildFailedQueryStepResult(step, "query result was null", executionTime);
+            }
+            LOGGER.debug("Executed query step {} in {} ms", step, executionTime);
+            return new QueryStepResultBuilder()
+                    .setQueryStep(step)
+                    .setEngineQueryResult(queryResult)
+                    .setExecutionTime(executionTime)
+                    .build();
+        });
+    }
+
+    /**
+     * Create a failed {@link QueryStepResult} for the given {@link QueryStep} with an empty {@link EngineQueryResult}.
+     * This can be used by execution strategies when a step could not be executed at all.
+     *
+     * @param step
+     *         The query step that failed.
+     * @param errorMessage
+     *         The reason why the step failed.
+     * @param executionTime
+     *         The time in milliseconds that was spent on the step.
+     * @return a failed query step result.
+     */
+    @NotNull
+    public static QueryStepResult buildFailedQueryStepResult(@NotNull QueryStep step, String errorMessage, long executionTime) {
+        return new QueryStepResultBuilder()
+                .setQueryStep(step)
+                .setFailedStep(true)
+                .setErrorMessage(errorMessage)
+                .setEngineQueryResult(EngineQueryResultBuilder.EMPTY_QUERY_RESULT)
+                .setExecutionTime(executionTime)
+                .build();
+    }
 }
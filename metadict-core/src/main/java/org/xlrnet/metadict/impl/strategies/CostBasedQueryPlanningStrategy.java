@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.language.Dictionary;
+import org.xlrnet.metadict.impl.core.EngineRegistry;
+import org.xlrnet.metadict.impl.core.EngineStatistics;
+import org.xlrnet.metadict.impl.query.QueryPlan;
+import org.xlrnet.metadict.impl.query.QueryPlanBuilder;
+import org.xlrnet.metadict.impl.query.QueryPlanningStrategy;
+import org.xlrnet.metadict.impl.query.QueryRequest;
+import org.xlrnet.metadict.impl.query.QueryStep;
+import org.xlrnet.metadict.impl.util.CommonUtils;
+
+import java.util.*;
+
+/**
+ * Planning strategy that uses the observed latency and error statistics of each engine to create query plans with a
+ * bounded tail latency.
+ * <p>
+ * For each requested {@link Dictionary}, all engines that are degraded will be pruned from the plan as long as at
+ * least one healthy engine still covers the same dictionary. An engine is considered degraded, if it has enough recent
+ * samples and either its p99 latency exceeds {@code metadict.planning.latencyBudget} milliseconds or its error rate
+ * exceeds {@code metadict.planning.maxErrorRate}. Since the statistics only cover a rolling window, pruned engines
+ * will be queried again once their old samples expired.
+ * <p>
+ * The remaining steps are ordered by their expected latency in descending order, so that execution strategies which
+ * dispatch the steps concurrently start the slowest steps first. Steps that result in the same backend call will be
+ * merged (see {@link QueryPlanBuilder}).
+ */
+public class CostBasedQueryPlanningStrategy implements QueryPlanningStrategy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CostBasedQueryPlanningStrategy.class);
+
+    private static final long LATENCY_BUDGET = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.planning.latencyBudget", 2000);
+
+    private static final double MAX_ERROR_RATE = CommonUtils.getDoubleProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.planning.maxErrorRate", 0.5);
+
+    private static final int MIN_SAMPLES = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.planning.minSamples", 20);
+
+    /**
+     * Calculate a query plan for the given {@link QueryRequest} that skips degraded engines whenever another engine
+     * covers the same dictionary.
+     *
+     * @param queryRequest
+     *         The query request for which a query plan has to be calculated.
+     * @param engineRegistry
+     *         The registry where all available engines are registered.
+     * @return an executable {@link QueryPlan}.
+     */
+    @NotNull
+    @Override
+    public QueryPlan calculateQueryPlan(@NotNull QueryRequest queryRequest, @NotNull EngineRegistry engineRegistry) {
+        Map<String, EngineCost> engineCosts = new HashMap<>();
+        List<PlannedStep> plannedSteps = new ArrayList<>();
+
+        for (Dictionary dictionary : queryRequest.getQueryDictionaries()) {
+            List<EngineCost> candidates = new ArrayList<>();
+            for (String engineName : engineRegistry.getSearchEngineNamesByDictionary(dictionary)) {
+                candidates.add(engineCosts.computeIfAbsent(engineName, name -> new EngineCost(name, engineRegistry.getEngineStatisticsByName(name))));
+            }
+
+            boolean hasHealthyCandidate = candidates.stream().anyMatch(c -> !c.degraded);
+            for (EngineCost candidate : candidates) {
+                if (hasHealthyCandidate && candidate.degraded) {
+                    LOGGER.debug("Skipping degraded engine {} for dictionary {}", candidate.engineName, dictionary);
+                    continue;
+                }
+                QueryStep queryStep = new QueryStep()
+                        .setQueryString(queryRequest.getQueryString())
+                        .setInputLanguage(dictionary.getInput())
+                        .setOutputLanguage(dictionary.getOutput())
+                        .setAllowBothWay(dictionary.isBidirectional())
+                        .setSearchEngineName(candidate.engineName)
+                        .setSearchEngine(engineRegistry.getEngineByName(candidate.engineName));
+                plannedSteps.add(new PlannedStep(queryStep, candidate.expectedLatency));
+            }
+        }
+
+        // Stable sort keeps the request order for steps with equal cost
+        plannedSteps.sort(Comparator.comparingLong((PlannedStep p) -> p.expectedLatency).reversed());
+
+        QueryPlanBuilder queryPlanBuilder = new QueryPlanBuilder(engineRegistry);
+        for (PlannedStep plannedStep : plannedSteps) {
+            queryPlanBuilder.addQueryStep(plannedStep.queryStep);
+        }
+        return queryPlanBuilder.build();
+    }
+
+    private static class EngineCost {
+
+        private final String engineName;
+
+        private final long expectedLatency;
+
+        private final boolean degraded;
+
+        EngineCost(String engineName, EngineStatistics engineStatistics) {
+            this.engineName = engineName;
+            this.expectedLatency = engineStatistics.getLatencyPercentile(0.5);
+            this.degraded = engineStatistics.getSampleCount() >= MIN_SAMPLES
+                    && (engineStatistics.getLatencyPercentile(0.99) > LATENCY_BUDGET || engineStatistics.getErrorRate() > MAX_ERROR_RATE);
+        }
+    }
+
+    private static class PlannedStep {
+
+        private final QueryStep queryStep;
+
+        private final long expectedLatency;
+
+        PlannedStep(QueryStep queryStep, long expectedLatency) {
+            this.queryStep = queryStep;
+            this.expectedLatency = expectedLatency;
+        }
+    }
+}
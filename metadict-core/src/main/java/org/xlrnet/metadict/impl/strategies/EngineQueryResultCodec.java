@@ -0,0 +1,339 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xlrnet.metadict.api.language.GrammaticalForm;
+import org.xlrnet.metadict.api.language.GrammaticalGender;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.*;
+import org.xlrnet.metadict.impl.query.QueryStepCacheKey;
+
+import java.io.*;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary representation of {@link EngineQueryResult} objects and their {@link QueryStepCacheKey}. The codec
+ * is used by the cache tiers that store results outside of the Java heap.
+ * <p>
+ * Additional grammatical forms can only be restored if their {@link GrammaticalForm} is implemented by an enum - other
+ * forms will be dropped when decoding.
+ */
+public final class EngineQueryResultCodec {
+
+    /** Version of the binary format. Has to be incremented whenever the format changes. */
+    static final byte FORMAT_VERSION = 1;
+
+    private EngineQueryResultCodec() {
+
+    }
+
+    /**
+     * Encode the given key and result into a new byte array.
+     *
+     * @param cacheKey
+     *         The key of the result.
+     * @param engineQueryResult
+     *         The result to encode.
+     * @return a byte array with the encoded key and result.
+     */
+    @NotNull
+    public static byte[] encode(@NotNull QueryStepCacheKey cacheKey, @NotNull EngineQueryResult engineQueryResult) {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(1024);
+        try (DataOutputStream out = new DataOutputStream(byteArrayOutputStream)) {
+            out.writeByte(FORMAT_VERSION);
+            writeCacheKey(out, cacheKey);
+            writeEngineQueryResult(out, engineQueryResult);
+        } catch (IOException e) {
+            // Can't happen when writing to a byte array
+            throw new UncheckedIOException(e);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * Decode only the key from data that was encoded with {@link #encode(QueryStepCacheKey, EngineQueryResult)}.
+     *
+     * @param in
+     *         The input to read from.
+     * @return the decoded key.
+     * @throws IOException
+     *         if the data is malformed or written in a different format version.
+     */
+    @NotNull
+    public static QueryStepCacheKey decodeCacheKey(@NotNull DataInput in) throws IOException {
+        checkFormatVersion(in);
+        return readCacheKey(in);
+    }
+
+    /**
+     * Decode the result from data that was encoded with {@link #encode(QueryStepCacheKey, EngineQueryResult)}. The
+     * key will be skipped.
+     *
+     * @param in
+     *         The input to read from.
+     * @return the decoded result.
+     * @throws IOException
+     *         if the data is malformed or written in a different format version.
+     */
+    @NotNull
+    public static EngineQueryResult decodeEngineQueryResult(@NotNull DataInput in) throws IOException {
+        checkFormatVersion(in);
+        readCacheKey(in);
+        return readEngineQueryResult(in);
+    }
+
+    /**
+     * Decode the result from an input whose key has already been read with {@link #decodeCacheKey(DataInput)}. This
+     * avoids decoding the key twice if both key and result are needed.
+     *
+     * @param in
+     *         The input to read from, positioned after the key.
+     * @return the decoded result.
+     * @throws IOException
+     *         if the data is malformed.
+     */
+    @NotNull
+    public static EngineQueryResult decodeEngineQueryResultAfterKey(@NotNull DataInput in) throws IOException {
+        return readEngineQueryResult(in);
+    }
+
+    private static void checkFormatVersion(@NotNull DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+    }
+
+    private static void writeCacheKey(@NotNull DataOutput out, @NotNull QueryStepCacheKey cacheKey) throws IOException {
+        writeString(out, cacheKey.getSearchEngineName());
+        writeString(out, cacheKey.getQueryString());
+        writeLanguage(out, cacheKey.getInputLanguage());
+        writeLanguage(out, cacheKey.getOutputLanguage());
+        out.writeBoolean(cacheKey.isAllowBothWay());
+    }
+
+    @NotNull
+    private static QueryStepCacheKey readCacheKey(@NotNull DataInput in) throws IOException {
+        String searchEngineName = readString(in);
+        String queryString = readString(in);
+        Language inputLanguage = readLanguage(in);
+        Language outputLanguage = readLanguage(in);
+        boolean allowBothWay = in.readBoolean();
+
+        return QueryStepCacheKey.of(searchEngineName, queryString, inputLanguage, outputLanguage, allowBothWay);
+    }
+
+    private static void writeEngineQueryResult(@NotNull DataOutput out, @NotNull EngineQueryResult engineQueryResult) throws IOException {
+        List<DictionaryEntry> entries = engineQueryResult.getEntries();
+        out.writeInt(entries.size());
+        for (DictionaryEntry entry : entries) {
+            out.writeByte(entry.getEntryType().ordinal());
+            writeDictionaryObject(out, entry.getInput());
+            writeDictionaryObject(out, entry.getOutput());
+        }
+
+        List<ExternalContent> externalContents = engineQueryResult.getExternalContents();
+        out.writeInt(externalContents.size());
+        for (ExternalContent externalContent : externalContents) {
+            writeString(out, externalContent.getTitle());
+            writeString(out, externalContent.getDescription());
+            writeString(out, externalContent.getLink().toExternalForm());
+        }
+
+        List<DictionaryObject> similarRecommendations = engineQueryResult.getSimilarRecommendations();
+        out.writeInt(similarRecommendations.size());
+        for (DictionaryObject similarRecommendation : similarRecommendations) {
+            writeDictionaryObject(out, similarRecommendation);
+        }
+    }
+
+    @NotNull
+    private static EngineQueryResult readEngineQueryResult(@NotNull DataInput in) throws IOException {
+        EngineQueryResultBuilder builder = new EngineQueryResultBuilder();
+
+        int entryCount = in.readInt();
+        for (int i = 0; i < entryCount; i++) {
+            EntryType entryType = EntryType.values()[in.readByte()];
+            DictionaryEntryBuilder entryBuilder = new DictionaryEntryBuilder().setEntryType(entryType);
+            DictionaryObject input = readDictionaryObject(in);
+            DictionaryObject output = readDictionaryObject(in);
+            if (input != null)
+                entryBuilder.setInputObject(input);
+            if (output != null)
+                entryBuilder.setOutputObject(output);
+            builder.addEntry(entryBuilder.build());
+        }
+
+        int externalContentCount = in.readInt();
+        for (int i = 0; i < externalContentCount; i++) {
+            ExternalContentBuilder contentBuilder = new ExternalContentBuilder();
+            String title = readString(in);
+            String description = readString(in);
+            if (title != null)
+                contentBuilder.setTitle(title);
+            if (description != null)
+                contentBuilder.setDescription(description);
+            builder.addExternalContent(contentBuilder.setLink(new URL(readString(in))).build());
+        }
+
+        int similarRecommendationCount = in.readInt();
+        for (int i = 0; i < similarRecommendationCount; i++) {
+            DictionaryObject similarRecommendation = readDictionaryObject(in);
+            if (similarRecommendation != null)
+                builder.addSimilarRecommendation(similarRecommendation);
+        }
+
+        return builder.build();
+    }
+
+    private static void writeDictionaryObject(@NotNull DataOutput out, @Nullable DictionaryObject dictionaryObject) throws IOException {
+        out.writeBoolean(dictionaryObject != null);
+        if (dictionaryObject == null)
+            return;
+
+        writeLanguage(out, dictionaryObject.getLanguage());
+        writeString(out, dictionaryObject.getGeneralForm());
+        writeString(out, dictionaryObject.getDescription());
+        writeString(out, dictionaryObject.getMeaning());
+        writeString(out, dictionaryObject.getAbbreviation());
+        writeString(out, dictionaryObject.getDomain());
+        GrammaticalGender grammaticalGender = dictionaryObject.getGrammaticalGender();
+        out.writeByte(grammaticalGender != null ? grammaticalGender.ordinal() : -1);
+
+        Map<GrammaticalForm, String> additionalForms = dictionaryObject.getAdditionalForms();
+        int formCount = 0;
+        if (additionalForms != null) {
+            for (GrammaticalForm form : additionalForms.keySet()) {
+                if (form instanceof Enum)
+                    formCount++;
+            }
+        }
+        out.writeInt(formCount);
+        if (formCount > 0) {
+            for (Map.Entry<GrammaticalForm, String> additionalForm : additionalForms.entrySet()) {
+                if (additionalForm.getKey() instanceof Enum) {
+                    Enum<?> form = (Enum<?>) additionalForm.getKey();
+                    writeString(out, form.getDeclaringClass().getName());
+                    writeString(out, form.name());
+                    writeString(out, additionalForm.getValue());
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private static DictionaryObject readDictionaryObject(@NotNull DataInput in) throws IOException {
+        if (!in.readBoolean())
+            return null;
+
+        DictionaryObjectBuilder builder = new DictionaryObjectBuilder().setLanguage(readLanguage(in));
+        String generalForm = readString(in);
+        String description = readString(in);
+        String meaning = readString(in);
+        String abbreviation = readString(in);
+        String domain = readString(in);
+        byte grammaticalGender = in.readByte();
+
+        if (generalForm != null)
+            builder.setGeneralForm(generalForm);
+        if (description != null)
+            builder.setDescription(description);
+        if (meaning != null)
+            builder.setMeaning(meaning);
+        if (abbreviation != null)
+            builder.setAbbreviation(abbreviation);
+        if (domain != null)
+            builder.setDomain(domain);
+        if (grammaticalGender >= 0)
+            builder.setGrammaticalGender(GrammaticalGender.values()[grammaticalGender]);
+
+        int formCount = in.readInt();
+        for (int i = 0; i < formCount; i++) {
+            GrammaticalForm form = readGrammaticalForm(readString(in), readString(in));
+            String value = readString(in);
+            if (form != null && value != null)
+                builder.setAdditionalForm(form, value);
+        }
+
+        return builder.build();
+    }
+
+    @Nullable
+    @SuppressWarnings("unchecked")
+    private static GrammaticalForm readGrammaticalForm(String className, String name) {
+        try {
+            Class<?> formClass = Class.forName(className, false, GrammaticalForm.class.getClassLoader());
+            if (!formClass.isEnum() || !GrammaticalForm.class.isAssignableFrom(formClass))
+                return null;
+            return (GrammaticalForm) Enum.valueOf(formClass.asSubclass(Enum.class), name);
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeLanguage(@NotNull DataOutput out, @NotNull Language language) throws IOException {
+        writeString(out, language.getIdentifier());
+        writeString(out, language.getDisplayName());
+        writeString(out, language.getDialect());
+        writeString(out, language.getDialectDisplayName());
+    }
+
+    @NotNull
+    private static Language readLanguage(@NotNull DataInput in) throws IOException {
+        String identifier = readString(in);
+        String displayName = readString(in);
+        String dialect = readString(in);
+        String dialectDisplayName = readString(in);
+
+        if (dialect == null)
+            return Language.forSimpleLanguage(identifier, displayName);
+        return Language.forSimpleLanguage(identifier, displayName, dialect, dialectDisplayName);
+    }
+
+    private static void writeString(@NotNull DataOutput out, @Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nullable
+    private static String readString(@NotNull DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
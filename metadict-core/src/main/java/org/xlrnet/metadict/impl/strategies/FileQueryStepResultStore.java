@@ -0,0 +1,520 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
+import org.xlrnet.metadict.impl.query.QueryStepCacheKey;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only file store for {@link EngineQueryResult} objects that survives restarts of the application. Each record
+ * consists of a fixed-size header (payload length, checksum and write timestamp) followed by the payload that was
+ * encoded with {@link EngineQueryResultCodec}. A record with a negative timestamp is a tombstone that marks its key as
+ * removed. The position of the newest record for each key is kept in an in-memory
+ * index that is rebuilt when the store is opened.
+ * <p>
+ * Once the file grows beyond its maximum size, the store will be compacted in the background: expired and overwritten
+ * records are dropped and only the newest records are kept until three quarters of the maximum size are used. Records
+ * are copied into a new file without blocking readers and writers; only records that were written while copying are
+ * transferred while holding the write lock. If the new file can't be moved into place, the old file stays in use.
+ * <p>
+ * A record with an invalid checksum (e.g. after a crash) will be skipped when opening the store. A truncated record at
+ * the end of the file will be discarded.
+ * <p>
+ * This class is thread-safe. Errors while accessing the file will be logged and treated like cache misses.
+ */
+public class FileQueryStepResultStore implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileQueryStepResultStore.class);
+
+    /** Size of a record header: payload length (int), checksum (int) and write timestamp (long). */
+    private static final int HEADER_SIZE = 16;
+
+    private static final long TOMBSTONE_TIMESTAMP = -1;
+
+    private final Path file;
+
+    private final long maximumSize;
+
+    private final long expireAfterWriteMillis;
+
+    private final Map<QueryStepCacheKey, IndexEntry> index = new ConcurrentHashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** Guards compactions, so that only one compaction can run at a time. */
+    private final Object compactionLock = new Object();
+
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    private final Executor compactionExecutor;
+
+    private final ExecutorService ownedCompactionExecutor;
+
+    private volatile FileChannel fileChannel;
+
+    private volatile boolean closed;
+
+    /**
+     * Open the store in the given file. The file and its parent directories will be created if they don't exist yet.
+     * Compactions will run on a background thread that is owned by this store.
+     *
+     * @param file
+     *         The file in which the records will be stored.
+     * @param maximumSize
+     *         Maximum size of the file in bytes.
+     * @param expireAfterWriteMillis
+     *         Time in milliseconds after which a record expires. Use 0 to disable expiration.
+     * @throws IOException
+     *         if the file couldn't be opened.
+     */
+    public FileQueryStepResultStore(@NotNull Path file, long maximumSize, long expireAfterWriteMillis) throws IOException {
+        this(file, maximumSize, expireAfterWriteMillis, null);
+    }
+
+    /**
+     * Open the store in the given file. The file and its parent directories will be created if they don't exist yet.
+     *
+     * @param file
+     *         The file in which the records will be stored.
+     * @param maximumSize
+     *         Maximum size of the file in bytes.
+     * @param expireAfterWriteMillis
+     *         Time in milliseconds after which a record expires. Use 0 to disable expiration.
+     * @param compactionExecutor
+     *         The executor on which compactions will run or null to use a background thread owned by this store.
+     * @throws IOException
+     *         if the file couldn't be opened.
+     */
+    public FileQueryStepResultStore(@NotNull Path file, long maximumSize, long expireAfterWriteMillis, @Nullable Executor compactionExecutor) throws IOException {
+        this.file = file;
+        this.maximumSize = maximumSize;
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+
+        if (compactionExecutor != null) {
+            this.compactionExecutor = compactionExecutor;
+            this.ownedCompactionExecutor = null;
+        } else {
+            this.ownedCompactionExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("metadict-file-cache-compaction-%d")
+                    .setDaemon(true)
+                    .build());
+            this.compactionExecutor = this.ownedCompactionExecutor;
+        }
+
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        openAndLoad();
+    }
+
+    /**
+     * Returns the stored result for the given key or null if no unexpired result is stored.
+     *
+     * @param cacheKey
+     *         The key to look up.
+     * @return the stored result or null.
+     */
+    @Nullable
+    public EngineQueryResult get(@NotNull QueryStepCacheKey cacheKey) {
+        StoredEngineQueryResult storedResult = lookup(cacheKey);
+        return storedResult != null ? storedResult.getEngineQueryResult() : null;
+    }
+
+    /**
+     * Returns the stored result for the given key together with the time when it was originally written or null if no
+     * unexpired result is stored.
+     *
+     * @param cacheKey
+     *         The key to look up.
+     * @return the stored result or null.
+     */
+    @Nullable
+    public StoredEngineQueryResult lookup(@NotNull QueryStepCacheKey cacheKey) {
+        IndexEntry indexEntry = index.get(cacheKey);
+        if (indexEntry == null)
+            return null;
+
+        if (isExpired(indexEntry.timestamp, System.currentTimeMillis())) {
+            index.remove(cacheKey, indexEntry);
+            return null;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (index.get(cacheKey) != indexEntry)
+                return null;    // Store has been compacted in the meantime
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + indexEntry.length);
+            readFully(fileChannel, buffer, indexEntry.position);
+            buffer.flip();
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length != indexEntry.length || checksum != computeChecksum(buffer.array(), 8, HEADER_SIZE - 8 + length)) {
+                LOGGER.warn("Corrupted record for {} in file cache {}", cacheKey, file);
+                index.remove(cacheKey, indexEntry);
+                return null;
+            }
+            EngineQueryResult engineQueryResult = EngineQueryResultCodec.decodeEngineQueryResult(new DataInputStream(new ByteArrayInputStream(buffer.array(), HEADER_SIZE, length)));
+            return new StoredEngineQueryResult(engineQueryResult, indexEntry.timestamp);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Reading {} from file cache {} failed", cacheKey, file, e);
+            index.remove(cacheKey, indexEntry);
+            return null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Store the given result under the given key. A previously stored result for the same key will be replaced.
+     *
+     * @param cacheKey
+     *         The key of the result.
+     * @param engineQueryResult
+     *         The result to store.
+     */
+    public void put(@NotNull QueryStepCacheKey cacheKey, @NotNull EngineQueryResult engineQueryResult) {
+        put(cacheKey, engineQueryResult, System.currentTimeMillis());
+    }
+
+    /**
+     * Store the given result under the given key with the time when it was originally produced. The result expires
+     * relative to that time. A previously stored result for the same key will be replaced.
+     *
+     * @param cacheKey
+     *         The key of the result.
+     * @param engineQueryResult
+     *         The result to store.
+     * @param timestamp
+     *         Time in milliseconds since the epoch when the result was produced.
+     */
+    public void put(@NotNull QueryStepCacheKey cacheKey, @NotNull EngineQueryResult engineQueryResult, long timestamp) {
+        if (isExpired(timestamp, System.currentTimeMillis()))
+            return;
+
+        byte[] payload = EngineQueryResultCodec.encode(cacheKey, engineQueryResult);
+        boolean compactionRequired = false;
+
+        lock.writeLock().lock();
+        try {
+            long position = fileChannel.size();
+            writeRecord(fileChannel, position, payload, timestamp);
+            index.put(cacheKey, new IndexEntry(position, payload.length, timestamp));
+            compactionRequired = fileChannel.size() > maximumSize;
+        } catch (IOException e) {
+            LOGGER.error("Writing {} to file cache {} failed", cacheKey, file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        if (compactionRequired) {
+            scheduleCompaction();
+        }
+    }
+
+    /**
+     * Remove all results whose key matches the given predicate from the store. A tombstone will be written for each
+     * removed key, so that the removal survives a restart.
+     *
+     * @param predicate
+     *         The predicate for the keys to remove.
+     */
+    public void invalidateIf(@NotNull Predicate<QueryStepCacheKey> predicate) {
+        lock.writeLock().lock();
+        try {
+            for (QueryStepCacheKey cacheKey : new ArrayList<>(index.keySet())) {
+                if (predicate.test(cacheKey)) {
+                    writeRecord(fileChannel, fileChannel.size(), EngineQueryResultCodec.encode(cacheKey, EngineQueryResultBuilder.EMPTY_QUERY_RESULT), TOMBSTONE_TIMESTAMP);
+                    index.remove(cacheKey);
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Invalidating entries in file cache {} failed", file, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of records that are currently reachable through the index.
+     *
+     * @return the number of records that are currently reachable through the index.
+     */
+    public int count() {
+        return index.size();
+    }
+
+    /**
+     * Rewrite the file with only the newest unexpired records until three quarters of the maximum size are used. The
+     * records are copied without holding the write lock; only records that have been written or removed in the
+     * meantime are reconciled while holding it. If the rewritten file can't be moved into place, it will be discarded
+     * and the current file stays in use.
+     *
+     * @throws IOException
+     *         if the file couldn't be rewritten.
+     */
+    public void compact() throws IOException {
+        synchronized (compactionLock) {
+            if (closed)
+                return;
+
+            long now = System.currentTimeMillis();
+            long sizeBudget = maximumSize / 4 * 3;
+            Map<QueryStepCacheKey, IndexEntry> snapshot = new HashMap<>(index);
+            List<Map.Entry<QueryStepCacheKey, IndexEntry>> entries = new ArrayList<>(snapshot.entrySet());
+            entries.sort((a, b) -> Long.compare(b.getValue().timestamp, a.getValue().timestamp));
+
+            Path compactFile = file.resolveSibling(file.getFileName() + ".compact");
+            Map<QueryStepCacheKey, IndexEntry> compactIndex = new HashMap<>();
+            FileChannel compactChannel = FileChannel.open(compactFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean replaced = false;
+
+            try {
+                long position = 0;
+                for (Map.Entry<QueryStepCacheKey, IndexEntry> entry : entries) {
+                    IndexEntry indexEntry = entry.getValue();
+                    if (isExpired(indexEntry.timestamp, now) || position + HEADER_SIZE + indexEntry.length > sizeBudget)
+                        continue;
+                    compactIndex.put(entry.getKey(), copyRecord(indexEntry, compactChannel, position));
+                    position += HEADER_SIZE + indexEntry.length;
+                }
+
+                lock.writeLock().lock();
+                try {
+                    // Reconcile with the records that have been written or removed while copying
+                    for (Map.Entry<QueryStepCacheKey, IndexEntry> entry : index.entrySet()) {
+                        IndexEntry indexEntry = entry.getValue();
+                        if (snapshot.get(entry.getKey()) != indexEntry && !isExpired(indexEntry.timestamp, now)) {
+                            compactIndex.put(entry.getKey(), copyRecord(indexEntry, compactChannel, position));
+                            position += HEADER_SIZE + indexEntry.length;
+                        }
+                    }
+                    compactIndex.keySet().retainAll(index.keySet());
+                    compactChannel.force(true);
+
+                    Files.move(compactFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                    // The compacted channel now refers to the moved file and can be used directly
+                    FileChannel oldChannel = fileChannel;
+                    fileChannel = compactChannel;
+                    replaced = true;
+                    index.keySet().retainAll(compactIndex.keySet());
+                    index.putAll(compactIndex);
+                    closeQuietly(oldChannel);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+
+                LOGGER.info("Compacted file cache {} to {} records ({} bytes)", file, compactIndex.size(), position);
+            } finally {
+                if (!replaced) {
+                    closeQuietly(compactChannel);
+                    Files.deleteIfExists(compactFile);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (ownedCompactionExecutor != null) {
+            ownedCompactionExecutor.shutdown();
+        }
+        synchronized (compactionLock) {
+            lock.writeLock().lock();
+            try {
+                fileChannel.close();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (closed || !compactionScheduled.compareAndSet(false, true))
+            return;
+
+        try {
+            compactionExecutor.execute(() -> {
+                try {
+                    compact();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.error("Compacting file cache {} failed", file, e);
+                } finally {
+                    compactionScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            compactionScheduled.set(false);
+            LOGGER.warn("Compaction of file cache {} has been rejected", file);
+        }
+    }
+
+    @NotNull
+    private IndexEntry copyRecord(@NotNull IndexEntry indexEntry, @NotNull FileChannel targetChannel, long targetPosition) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + indexEntry.length);
+        readFully(fileChannel, buffer, indexEntry.position);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            targetChannel.write(buffer, targetPosition + buffer.position());
+        }
+        return new IndexEntry(targetPosition, indexEntry.length, indexEntry.timestamp);
+    }
+
+    private void openAndLoad() throws IOException {
+        fileChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        long now = System.currentTimeMillis();
+        long position = 0;
+        long fileSize = fileChannel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        while (position + HEADER_SIZE <= fileSize) {
+            header.clear();
+            readFully(fileChannel, header, position);
+            header.flip();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            long timestamp = header.getLong();
+
+            if (length < 0 || position + HEADER_SIZE + length > fileSize)
+                break;
+
+            ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + length);
+            readFully(fileChannel, record, position);
+            if (checksum != computeChecksum(record.array(), 8, HEADER_SIZE - 8 + length)) {
+                LOGGER.warn("Skipping corrupted record at position {} in file cache {}", position, file);
+                position += HEADER_SIZE + length;
+                continue;
+            }
+
+            try {
+                QueryStepCacheKey cacheKey = EngineQueryResultCodec.decodeCacheKey(new DataInputStream(new ByteArrayInputStream(record.array(), HEADER_SIZE, length)));
+                if (timestamp == TOMBSTONE_TIMESTAMP || isExpired(timestamp, now)) {
+                    index.remove(cacheKey);
+                } else {
+                    index.put(cacheKey, new IndexEntry(position, length, timestamp));
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Skipping unreadable record at position {} in file cache {}: {}", position, file, e.getMessage());
+            }
+            position += HEADER_SIZE + length;
+        }
+
+        if (position < fileSize) {
+            LOGGER.warn("Discarding {} bytes of incomplete data at the end of file cache {}", fileSize - position, file);
+            fileChannel.truncate(position);
+        }
+
+        LOGGER.info("Loaded {} records from file cache {}", index.size(), file);
+    }
+
+    private void writeRecord(@NotNull FileChannel channel, long position, @NotNull byte[] payload, long timestamp) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt(0);
+        buffer.putLong(timestamp);
+        buffer.put(payload);
+        buffer.putInt(4, computeChecksum(buffer.array(), 8, HEADER_SIZE - 8 + payload.length));
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    private void readFully(@NotNull FileChannel channel, @NotNull ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of file " + file);
+            }
+        }
+    }
+
+    private void closeQuietly(@NotNull FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.warn("Closing channel of file cache {} failed", file, e);
+        }
+    }
+
+    private int computeChecksum(@NotNull byte[] bytes, int offset, int length) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, offset, length);
+        return (int) crc32.getValue();
+    }
+
+    private boolean isExpired(long timestamp, long now) {
+        return expireAfterWriteMillis > 0 && now - timestamp > expireAfterWriteMillis;
+    }
+
+    private static class IndexEntry {
+
+        private final long position;
+
+        private final int length;
+
+        private final long timestamp;
+
+        IndexEntry(long position, int length, long timestamp) {
+            this.position = position;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+    }
+}
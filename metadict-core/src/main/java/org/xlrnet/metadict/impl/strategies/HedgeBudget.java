@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import com.google.common.base.MoreObjects;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Token bucket that limits hedged requests to a fraction of all requests. Every request adds the configured ratio of a
+ * token to the bucket and every hedge consumes a full token. The bucket holds at most the configured capacity, so
+ * that only short bursts of hedges are possible after a quiet period.
+ * <p>
+ * All methods of this class are thread-safe.
+ */
+class HedgeBudget {
+
+    private final double maxRatio;
+
+    private final double capacity;
+
+    private double tokens;
+
+    private long hedgeCount;
+
+    /**
+     * Create a new budget.
+     *
+     * @param maxRatio
+     *         Maximum ratio of hedges to requests between 0 and 1.
+     * @param capacity
+     *         Maximum number of hedges that can be saved up.
+     */
+    HedgeBudget(double maxRatio, double capacity) {
+        checkArgument(maxRatio >= 0 && maxRatio <= 1, "Ratio must be in [0, 1]");
+        checkArgument(capacity >= 1, "Capacity must be at least 1");
+        this.maxRatio = maxRatio;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Record a new (non-hedged) request.
+     */
+    synchronized void recordRequest() {
+        tokens = Math.min(capacity, tokens + maxRatio);
+    }
+
+    /**
+     * Try to acquire the permission for a hedge.
+     *
+     * @return true, if a hedge may be sent.
+     */
+    synchronized boolean tryAcquire() {
+        if (tokens < 1)
+            return false;
+        tokens -= 1;
+        hedgeCount++;
+        return true;
+    }
+
+    synchronized long getHedgeCount() {
+        return hedgeCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("maxRatio", maxRatio)
+                .add("tokens", tokens)
+                .add("hedgeCount", hedgeCount)
+                .toString();
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.engine.AsyncSearchEngine;
+import org.xlrnet.metadict.impl.query.QueryStep;
+import org.xlrnet.metadict.impl.query.QueryStepResult;
+import org.xlrnet.metadict.impl.query.QueryUtil;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToLongFunction;
+
+/**
+ * Executes {@link QueryStep}s with hedged requests: if a step didn't complete within its hedge delay (e.g. the p95
+ * latency of its engine), an identical second request will be sent and the first successful result of both requests
+ * will be used. The other request will be cancelled. A failed result will only be used if both requests failed.
+ * <p>
+ * Hedges are limited by a {@link HedgeBudget}, so that they never exceed a fixed fraction of all requests. Cancelling a
+ * request removes it from the thread pool if it didn't start yet. Running requests won't be interrupted, since an
+ * interrupted engine call would look like a failure of the engine. Their late results will simply be discarded.
+ */
+class HedgedQueryStepExecutor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HedgedQueryStepExecutor.class);
+
+    private final ExecutorService executorService;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final HedgeBudget hedgeBudget;
+
+    private final ToLongFunction<QueryStep> hedgeDelayFunction;
+
+    /**
+     * Create a new executor.
+     *
+     * @param executorService
+     *         The executor for blocking engines.
+     * @param scheduler
+     *         The scheduler for triggering hedges.
+     * @param hedgeBudget
+     *         The budget that limits the number of hedges.
+     * @param hedgeDelayFunction
+     *         Function that returns the delay in milliseconds after which a step should be hedged or a negative value,
+     *         if the step should not be hedged.
+     */
+    HedgedQueryStepExecutor(@NotNull ExecutorService executorService, @NotNull ScheduledExecutorService scheduler, @NotNull HedgeBudget hedgeBudget, @NotNull ToLongFunction<QueryStep> hedgeDelayFunction) {
+        this.executorService = executorService;
+        this.scheduler = scheduler;
+        this.hedgeBudget = hedgeBudget;
+        this.hedgeDelayFunction = hedgeDelayFunction;
+    }
+
+    /**
+     * Execute the given step and hedge it if it doesn't complete in time. The returned future never completes
+     * exceptionally unless it is cancelled. Cancelling it will also cancel all outstanding requests of the step.
+     *
+     * @param step
+     *         The query step to execute.
+     * @return a future with the first successful result or a failed result, if all requests failed.
+     * @throws RejectedExecutionException
+     *         if the first request couldn't be scheduled on the executor.
+     */
+    @NotNull
+    CompletableFuture<QueryStepResult> execute(@NotNull QueryStep step) {
+        hedgeBudget.recordRequest();
+        CompletableFuture<QueryStepResult> primary = submitQueryStep(step);
+
+        long hedgeDelay;
+        try {
+            hedgeDelay = hedgeDelayFunction.applyAsLong(step);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Calculating hedge delay for step {} failed - executing step without hedging", step, e);
+            return primary;
+        }
+        if (hedgeDelay < 0)
+            return primary;
+
+        HedgedExecution hedgedExecution = new HedgedExecution(step);
+        hedgedExecution.addAttempt(primary);
+        ScheduledFuture<?> hedgeTimer = scheduler.schedule(hedgedExecution::hedge, hedgeDelay, TimeUnit.MILLISECONDS);
+        hedgedExecution.result.whenComplete((queryStepResult, throwable) -> hedgeTimer.cancel(false));
+        return hedgedExecution.result;
+    }
+
+    @NotNull
+    private CompletableFuture<QueryStepResult> submitQueryStep(@NotNull QueryStep step) {
+        if (step.getSearchEngine() instanceof AsyncSearchEngine)
+            return QueryUtil.executeQueryStepAsync(step, executorService);
+
+        CompletableFuture<QueryStepResult> future = new CompletableFuture<>();
+        Future<?> task = executorService.submit(() -> {
+            try {
+                future.complete(QueryUtil.executeQueryStep(step));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        future.whenComplete((queryStepResult, throwable) -> {
+            if (future.isCancelled())
+                task.cancel(false);
+        });
+        return future;
+    }
+
+    /**
+     * State of a single step with up to two outstanding requests.
+     */
+    private class HedgedExecution {
+
+        private final QueryStep step;
+
+        private final CompletableFuture<QueryStepResult> result = new CompletableFuture<>();
+
+        /** Number of requests that haven't finished yet. A new request may only be added while this is positive. */
+        private final AtomicInteger outstandingAttempts = new AtomicInteger(1);
+
+        private final AtomicReference<QueryStepResult> firstFailure = new AtomicReference<>();
+
+        HedgedExecution(@NotNull QueryStep step) {
+            this.step = step;
+        }
+
+        void addAttempt(@NotNull CompletableFuture<QueryStepResult> attempt) {
+            attempt.whenComplete((queryStepResult, throwable) -> {
+                if (throwable != null) {
+                    if (attempt.isCancelled())
+                        return;
+                    queryStepResult = QueryUtil.buildFailedQueryStepResult(step, throwable.getMessage(), 0);
+                }
+                finishAttempt(queryStepResult);
+            });
+            result.whenComplete((queryStepResult, throwable) -> attempt.cancel(false));
+        }
+
+        void hedge() {
+            if (result.isDone() || outstandingAttempts.getAndUpdate(n -> n == 0 ? 0 : n + 1) == 0)
+                return;
+            if (!hedgeBudget.tryAcquire()) {
+                finishAttempt(null);
+                return;
+            }
+
+            LOGGER.debug("Hedging query step {}", step);
+            try {
+                addAttempt(submitQueryStep(step));
+            } catch (RejectedExecutionException e) {
+                LOGGER.debug("Hedge for query step {} was rejected by executor", step);
+                finishAttempt(null);
+            }
+        }
+
+        /**
+         * Finish a single request. A successful result completes the step immediately, a failed result only if no
+         * other request is outstanding. A null result marks a hedge that was not sent.
+         */
+        private void finishAttempt(QueryStepResult queryStepResult) {
+            if (queryStepResult != null && !queryStepResult.isFailedStep()) {
+                result.complete(queryStepResult);
+                return;
+            }
+            if (queryStepResult != null)
+                firstFailure.compareAndSet(null, queryStepResult);
+            if (outstandingAttempts.decrementAndGet() == 0 && firstFailure.get() != null)
+                result.complete(firstFailure.get());
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.impl.query.QueryStepCacheKey;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Cache tier that stores {@link EngineQueryResult} objects outside of the Java heap. Results are encoded with {@link
+ * EngineQueryResultCodec}, optionally deflate-compressed and appended to a ring of direct {@link ByteBuffer} slabs. Only
+ * a small index entry per key stays on the heap; the result objects will be materialized again on each hit.
+ * <p>
+ * Once all slabs are full, the oldest slab will be cleared and reused, i.e. eviction happens in insertion order with
+ * the granularity of a slab. Records that are larger than a single slab will not be stored.
+ * <p>
+ * This class is thread-safe.
+ */
+public class OffHeapQueryStepResultStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OffHeapQueryStepResultStore.class);
+
+    /** Size of a record header: uncompressed payload length (int). */
+    private static final int HEADER_SIZE = 4;
+
+    private final ByteBuffer[] slabs;
+
+    private final long[] slabGenerations;
+
+    private final List<List<QueryStepCacheKey>> slabKeys;
+
+    private final boolean compress;
+
+    private final long expireAfterWriteMillis;
+
+    private final Map<QueryStepCacheKey, Location> index = new ConcurrentHashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int currentSlab = 0;
+
+    /**
+     * Allocate a new off-heap store.
+     *
+     * @param totalSize
+     *         Total number of bytes to allocate outside the heap.
+     * @param slabSize
+     *         Size of a single slab in bytes. This is also the maximum size of a stored record.
+     * @param compress
+     *         True, if the records should be deflate-compressed.
+     * @param expireAfterWriteMillis
+     *         Time in milliseconds after which a record expires. Use 0 to disable expiration.
+     */
+    public OffHeapQueryStepResultStore(long totalSize, int slabSize, boolean compress, long expireAfterWriteMillis) {
+        int slabCount = (int) Math.max(2, totalSize / slabSize);
+
+        this.slabs = new ByteBuffer[slabCount];
+        this.slabGenerations = new long[slabCount];
+        this.slabKeys = new ArrayList<>(slabCount);
+        this.compress = compress;
+        this.expireAfterWriteMillis = expireAfterWriteMillis;
+
+        for (int i = 0; i < slabCount; i++) {
+            slabs[i] = ByteBuffer.allocateDirect(slabSize);
+            slabKeys.add(new ArrayList<>());
+        }
+
+        LOGGER.info("Allocated {} off-heap slabs with {} bytes each", slabCount, slabSize);
+    }
+
+    /**
+     * Returns the stored result for the given key or null if no unexpired result is stored.
+     *
+     * @param cacheKey
+     *         The key to look up.
+     * @return the stored result or null.
+     */
+    @Nullable
+    public EngineQueryResult get(@NotNull QueryStepCacheKey cacheKey) {
+        StoredEngineQueryResult storedResult = lookup(cacheKey);
+        return storedResult != null ? storedResult.getEngineQueryResult() : null;
+    }
+
+    /**
+     * Returns the stored result for the given key together with the time when it was originally produced or null if
+     * no unexpired result is stored.
+     *
+     * @param cacheKey
+     *         The key to look up.
+     * @return the stored result or null.
+     */
+    @Nullable
+    public StoredEngineQueryResult lookup(@NotNull QueryStepCacheKey cacheKey) {
+        Location location = index.get(cacheKey);
+        if (location == null)
+            return null;
+
+        if (isExpired(location.timestamp)) {
+            index.remove(cacheKey, location);
+            return null;
+        }
+
+        byte[] data = new byte[location.length];
+        int uncompressedLength;
+
+        lock.readLock().lock();
+        try {
+            if (slabGenerations[location.slab] != location.generation) {
+                return null;    // Slab has been reused in the meantime
+            }
+            ByteBuffer slab = slabs[location.slab].duplicate();
+            slab.position(location.offset);
+            uncompressedLength = slab.getInt();
+            slab.get(data);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try {
+            byte[] payload = compress ? inflate(data, uncompressedLength) : data;
+            EngineQueryResult engineQueryResult = EngineQueryResultCodec.decodeEngineQueryResult(new DataInputStream(new ByteArrayInputStream(payload)));
+            return new StoredEngineQueryResult(engineQueryResult, location.timestamp);
+        } catch (IOException | DataFormatException | RuntimeException e) {
+            LOGGER.error("Reading {} from off-heap cache failed", cacheKey, e);
+            index.remove(cacheKey, location);
+            return null;
+        }
+    }
+
+    /**
+     * Store the given result under the given key. A previously stored result for the same key will be replaced.
+     *
+     * @param cacheKey
+     *         The key of the result.
+     * @param engineQueryResult
+     *         The result to store.
+     */
+    public void put(@NotNull QueryStepCacheKey cacheKey, @NotNull EngineQueryResult engineQueryResult) {
+        put(cacheKey, engineQueryResult, System.currentTimeMillis());
+    }
+
+    /**
+     * Store the given result under the given key with the time when it was originally produced. The result expires
+     * relative to that time, i.e. moving a result between tiers doesn't extend its lifetime. A previously stored result
+     * for the same key will be replaced.
+     *
+     * @param cacheKey
+     *         The key of the result.
+     * @param engineQueryResult
+     *         The result to store.
+     * @param timestamp
+     *         Time in milliseconds since the epoch when the result was produced.
+     */
+    public void put(@NotNull QueryStepCacheKey cacheKey, @NotNull EngineQueryResult engineQueryResult, long timestamp) {
+        if (isExpired(timestamp))
+            return;
+
+        byte[] payload = EngineQueryResultCodec.encode(cacheKey, engineQueryResult);
+        byte[] data = compress ? deflate(payload) : payload;
+        int recordSize = HEADER_SIZE + data.length;
+
+        if (recordSize > slabs[0].capacity()) {
+            LOGGER.debug("Result for {} is too large for off-heap cache ({} bytes)", cacheKey, recordSize);
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (slabs[currentSlab].remaining() < recordSize) {
+                advanceSlab();
+            }
+            ByteBuffer slab = slabs[currentSlab];
+            int offset = slab.position();
+            slab.putInt(payload.length);
+            slab.put(data);
+
+            index.put(cacheKey, new Location(currentSlab, slabGenerations[currentSlab], offset, data.length, timestamp));
+            slabKeys.get(currentSlab).add(cacheKey);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove the result for the given key from the store, e.g. after it has been promoted to a higher tier.
+     *
+     * @param cacheKey
+     *         The key of the result to remove.
+     */
+    public void remove(@NotNull QueryStepCacheKey cacheKey) {
+        index.remove(cacheKey);
+    }
+
+    /**
+     * Remove all results whose key matches the given predicate from the store.
+     *
+     * @param predicate
+     *         The predicate for the keys to remove.
+     */
+    public void invalidateIf(@NotNull Predicate<QueryStepCacheKey> predicate) {
+        index.keySet().removeIf(predicate);
+    }
+
+    /**
+     * Returns the number of results that are currently reachable through the index.
+     *
+     * @return the number of results that are currently reachable through the index.
+     */
+    public int count() {
+        return index.size();
+    }
+
+    /**
+     * Returns the number of bytes that are currently used in all slabs (including overwritten records).
+     *
+     * @return the number of bytes that are currently used in all slabs.
+     */
+    public long getUsedBytes() {
+        lock.readLock().lock();
+        try {
+            long usedBytes = 0;
+            for (ByteBuffer slab : slabs) {
+                usedBytes += slab.position();
+            }
+            return usedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isExpired(long timestamp) {
+        return expireAfterWriteMillis > 0 && System.currentTimeMillis() - timestamp > expireAfterWriteMillis;
+    }
+
+    private void advanceSlab() {
+        currentSlab = (currentSlab + 1) % slabs.length;
+
+        // Evict all records of the reused slab
+        slabGenerations[currentSlab]++;
+        for (QueryStepCacheKey evictedKey : slabKeys.get(currentSlab)) {
+            Location location = index.get(evictedKey);
+            if (location != null && location.slab == currentSlab) {
+                index.remove(evictedKey, location);
+            }
+        }
+        slabKeys.get(currentSlab).clear();
+        slabs[currentSlab].clear();
+    }
+
+    @NotNull
+    private static byte[] deflate(@NotNull byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[data.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @NotNull
+    private static byte[] inflate(@NotNull byte[] data, int uncompressedLength) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[uncompressedLength];
+            int length = 0;
+            while (length < uncompressedLength && !inflater.finished()) {
+                int inflated = inflater.inflate(result, length, uncompressedLength - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("Truncated compressed data");
+                }
+                length += inflated;
+            }
+            return result;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static class Location {
+
+        private final int slab;
+
+        private final long generation;
+
+        private final int offset;
+
+        private final int length;
+
+        private final long timestamp;
+
+        Location(int slab, long generation, int offset, int length, long timestamp) {
+            this.slab = slab;
+            this.generation = generation;
+            this.offset = offset;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.engine.AsyncSearchEngine;
+import org.xlrnet.metadict.impl.core.EngineRegistry;
+import org.xlrnet.metadict.impl.core.EngineStatistics;
+import org.xlrnet.metadict.impl.exception.UnknownSearchEngineException;
+import org.xlrnet.metadict.impl.query.*;
+import org.xlrnet.metadict.impl.util.CommonUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Execution strategy that dispatches all steps of a {@link QueryPlan} concurrently. The latency of a query plan is
+ * therefore determined by its slowest step instead of the sum of all steps. The results are always returned in the
+ * same order as the steps in the query plan.
+ * <p>
+ * Results are shared with the other strategies through the application-wide {@link QueryStepCache}: cached steps will
+ * be answered directly and only the remaining steps will be dispatched. Their results will be stored in the cache
+ * afterwards.
+ * <p>
+ * Engines that implement {@link AsyncSearchEngine} will be called without occupying a
+ * thread while their query is running. Blocking engines will be executed on a bounded thread pool. Unless a deadline or
+ * hedging is configured, the first uncached step of a blocking engine runs on the calling thread after all other steps
+ * have been dispatched, so that a plan with a single step doesn't pay for the hand-off to the pool.
+ * <p>
+ * The size of the thread pool can be configured with the property {@code metadict.execution.parallel.threads}. An
+ * optional global deadline in milliseconds can be configured with {@code metadict.execution.parallel.deadline}: steps
+ * that haven't finished when the deadline is reached will be cancelled and returned as failed steps, so that a single
+ * slow engine can't hold back the whole query.
+ * <p>
+ * Hedged requests can be enabled with {@code metadict.execution.parallel.hedging.enabled}: if a step didn't complete
+ * within the configured latency percentile of its engine, an identical second request will be sent and the first
+ * successful result will be used (see {@link HedgedQueryStepExecutor}). Hedges never exceed the fraction of requests
+ * that is configured with {@code metadict.execution.parallel.hedging.maxRatio}.
+ */
+@ApplicationScoped
+public class ParallelExecutionStrategy implements QueryPlanExecutionStrategy {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ParallelExecutionStrategy.class);
+
+    private static final int THREAD_COUNT = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.execution.parallel.threads", 16);
+
+    private static final long DEADLINE = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.execution.parallel.deadline", 0);
+
+    private static final boolean HEDGING_ENABLED = CommonUtils.getBooleanProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.execution.parallel.hedging.enabled", false);
+
+    private static final double HEDGING_PERCENTILE = CommonUtils.getDoubleProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.execution.parallel.hedging.percentile", 0.95);
+
+    private static final double HEDGING_MAX_RATIO = CommonUtils.getDoubleProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.execution.parallel.hedging.maxRatio", 0.05);
+
+    private static final int HEDGING_MIN_SAMPLES = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.execution.parallel.hedging.minSamples", 20);
+
+    /** Maximum number of hedges that can be saved up during a quiet period. */
+    private static final double HEDGING_BUDGET_CAPACITY = 10;
+
+    @Inject
+    private EngineRegistry engineRegistry;
+
+    @Inject
+    QueryStepCache queryStepCache;
+
+    private ExecutorService executorService;
+
+    private ScheduledExecutorService hedgingScheduler;
+
+    private HedgedQueryStepExecutor hedgedQueryStepExecutor;
+
+    /**
+     * Execute the given {@link QueryPlan} with the internally provided strategy. The results of each executed {@link
+     * QueryStep} have to be aggregated to a {@link Iterable} of {@link QueryStepResult} objects that contains the
+     * results of each single step.
+     * <p>
+     * If a deadline is configured, every step that didn't finish in time will be cancelled and returned as a failed
+     * {@link QueryStepResult}.
+     *
+     * @param queryPlan
+     *         The query plan that should be executed.
+     * @return an iterable with the results of each step in plan order
+     */
+    @NotNull
+    @Override
+    public Iterable<QueryStepResult> executeQueryPlan(@NotNull QueryPlan queryPlan) {
+        long startTime = System.nanoTime();
+        List<QueryStep> queryStepList = queryPlan.getQueryStepList();
+        List<Future<QueryStepResult>> futures = new ArrayList<>(queryStepList.size());
+
+        List<QueryStepResult> cachedResults = new ArrayList<>(queryStepList.size());
+        int callingThreadIndex = -1;
+
+        for (QueryStep step : queryStepList) {
+            QueryStepResult cachedResult = queryStepCache != null ? queryStepCache.getIfPresent(step) : null;
+            cachedResults.add(cachedResult);
+            if (cachedResult != null) {
+                futures.add(CompletableFuture.completedFuture(cachedResult));
+            } else if (callingThreadIndex < 0 && canExecuteOnCallingThread(step)) {
+                // Executed after all other steps have been dispatched
+                callingThreadIndex = futures.size();
+                futures.add(null);
+            } else {
+                futures.add(submitQueryStep(step));
+            }
+        }
+        if (callingThreadIndex >= 0) {
+            futures.set(callingThreadIndex, CompletableFuture.completedFuture(QueryUtil.executeQueryStep(queryStepList.get(callingThreadIndex))));
+        }
+
+        List<QueryStepResult> queryResults = new ArrayList<>(queryStepList.size());
+        for (int i = 0; i < futures.size(); i++) {
+            QueryStepResult queryStepResult = awaitQueryStepResult(queryStepList.get(i), futures.get(i), startTime);
+            if (queryStepCache != null && cachedResults.get(i) == null) {
+                queryStepCache.put(queryStepList.get(i), queryStepResult);
+            }
+            queryResults.add(queryStepResult);
+        }
+
+        return queryResults;
+    }
+
+    @NotNull
+    private QueryStepResult awaitQueryStepResult(@NotNull QueryStep step, @NotNull Future<QueryStepResult> future, long startTime) {
+        try {
+            if (DEADLINE <= 0)
+                return future.get();
+
+            long remainingTime = TimeUnit.MILLISECONDS.toNanos(DEADLINE) - (System.nanoTime() - startTime);
+            return future.get(remainingTime, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            LOGGER.warn("Query step {} exceeded deadline of {} ms", step, DEADLINE);
+            future.cancel(true);
+            return QueryUtil.buildFailedQueryStepResult(step, "Query step exceeded deadline of " + DEADLINE + " ms", DEADLINE);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for query step {}", step);
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return QueryUtil.buildFailedQueryStepResult(step, "Interrupted while waiting for result", 0);
+        } catch (ExecutionException e) {
+            LOGGER.error("Query step {} failed", step, e);
+            return QueryUtil.buildFailedQueryStepResult(step, e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Check if the given step may be executed on the calling thread. This is only possible for blocking engines if
+     * neither a deadline nor hedging is configured, since both require the step to run on the thread pool.
+     */
+    private boolean canExecuteOnCallingThread(@NotNull QueryStep step) {
+        return DEADLINE <= 0 && hedgedQueryStepExecutor == null && !(step.getSearchEngine() instanceof AsyncSearchEngine);
+    }
+
+    @NotNull
+    private Future<QueryStepResult> submitQueryStep(@NotNull QueryStep step) {
+        try {
+            if (hedgedQueryStepExecutor != null)
+                return hedgedQueryStepExecutor.execute(step);
+            if (step.getSearchEngine() instanceof AsyncSearchEngine)
+                return QueryUtil.executeQueryStepAsync(step, executorService);
+            // Blocking engines are submitted directly, so that they can be interrupted when the deadline is exceeded
+            return executorService.submit(() -> QueryUtil.executeQueryStep(step));
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Query step {} was rejected by executor - executing on calling thread", step);
+            return CompletableFuture.completedFuture(QueryUtil.executeQueryStep(step));
+        }
+    }
+
+    /**
+     * Returns the delay after which the given step should be hedged, i.e. the configured latency percentile of its
+     * engine. Steps won't be hedged until enough samples of their engine have been recorded.
+     *
+     * @param step
+     *         The step to hedge.
+     * @return the delay in milliseconds or -1, if the step should not be hedged.
+     */
+    private long calculateHedgeDelay(@NotNull QueryStep step) {
+        EngineStatistics engineStatistics;
+        try {
+            engineStatistics = engineRegistry.getEngineStatisticsByName(step.getSearchEngineName());
+        } catch (UnknownSearchEngineException e) {
+            return -1;
+        }
+        if (engineStatistics.getSampleCount() < HEDGING_MIN_SAMPLES)
+            return -1;
+        return engineStatistics.getLatencyPercentile(HEDGING_PERCENTILE);
+    }
+
+    @PostConstruct
+    void initialize() {
+        LOGGER.info("Starting parallel execution strategy with {} threads and deadline {} ms", THREAD_COUNT, DEADLINE);
+        executorService = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactoryBuilder()
+                .setNameFormat("metadict-query-%d")
+                .setDaemon(true)
+                .build());
+
+        if (HEDGING_ENABLED && engineRegistry != null && !isValidHedgingConfiguration(HEDGING_PERCENTILE, HEDGING_MAX_RATIO)) {
+            LOGGER.error("Invalid hedging configuration (percentile {} must be in (0, 1], maxRatio {} must be in [0, 1]) - hedging will be disabled", HEDGING_PERCENTILE, HEDGING_MAX_RATIO);
+        } else if (HEDGING_ENABLED && engineRegistry != null) {
+            LOGGER.info("Hedging query steps at latency percentile {} for at most {} of all requests", HEDGING_PERCENTILE, HEDGING_MAX_RATIO);
+            hedgingScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                    .setNameFormat("metadict-hedge-%d")
+                    .setDaemon(true)
+                    .build());
+            hedgedQueryStepExecutor = new HedgedQueryStepExecutor(executorService, hedgingScheduler,
+                    new HedgeBudget(HEDGING_MAX_RATIO, HEDGING_BUDGET_CAPACITY), this::calculateHedgeDelay);
+        }
+    }
+
+    /**
+     * Check if the given hedging configuration can be used for calculating hedge delays and budgets.
+     *
+     * @param percentile
+     *         The latency percentile after which a step will be hedged.
+     * @param maxRatio
+     *         The maximum ratio of hedges to all requests.
+     * @return true, if the percentile is in (0, 1] and the ratio in [0, 1].
+     */
+    static boolean isValidHedgingConfiguration(double percentile, double maxRatio) {
+        return percentile > 0 && percentile <= 1 && maxRatio >= 0 && maxRatio <= 1;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executorService.shutdownNow();
+        if (hedgingScheduler != null)
+            hedgingScheduler.shutdownNow();
+    }
+}
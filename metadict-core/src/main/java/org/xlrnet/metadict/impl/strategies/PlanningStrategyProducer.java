@@ -0,0 +1,65 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.impl.query.QueryPlanningStrategy;
+import org.xlrnet.metadict.impl.util.CommonUtils;
+
+import javax.enterprise.inject.Instance;
+import javax.enterprise.inject.Produces;
+
+/**
+ * CDI producer for the {@link QueryPlanningStrategy} that is injected with the {@link DefaultPlanningStrategy}
+ * qualifier. The concrete strategy can be selected with the property {@code metadict.planning.strategy}:
+ * <ul>
+ * <li>simple: {@link SimpleQueryPlanningStrategy} (default)</li>
+ * <li>costBased: {@link CostBasedQueryPlanningStrategy}</li>
+ * </ul>
+ */
+public class PlanningStrategyProducer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlanningStrategyProducer.class);
+
+    private static final String PLANNING_STRATEGY = CommonUtils.getProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.planning.strategy", "simple");
+
+    @NotNull
+    @Produces
+    @DefaultPlanningStrategy
+    public QueryPlanningStrategy produceDefaultPlanningStrategy(Instance<SimpleQueryPlanningStrategy> simpleStrategy,
+                                                                Instance<CostBasedQueryPlanningStrategy> costBasedStrategy) {
+        switch (PLANNING_STRATEGY) {
+            case "costBased":
+                return costBasedStrategy.get();
+            case "simple":
+                return simpleStrategy.get();
+            default:
+                LOGGER.warn("Unknown planning strategy {} - falling back to simple planning", PLANNING_STRATEGY);
+                return simpleStrategy.get();
+        }
+    }
+}
@@ -0,0 +1,876 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.util.concurrent.AtomicLongMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.StringUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.impl.core.EngineRegistry;
+import org.xlrnet.metadict.impl.exception.UnknownSearchEngineException;
+import org.xlrnet.metadict.impl.query.QueryStep;
+import org.xlrnet.metadict.impl.query.QueryStepCacheKey;
+import org.xlrnet.metadict.impl.query.QueryStepResult;
+import org.xlrnet.metadict.impl.query.QueryStepResultBuilder;
+import org.xlrnet.metadict.impl.query.QueryUtil;
+import org.xlrnet.metadict.impl.util.CommonUtils;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Application-wide cache for the results of {@link QueryStep} objects. Results are stored by {@link
+ * QueryStepCacheKey}, so that equivalent queries share the same entry independent of the concrete engine instance and
+ * the exact spelling of the query string.
+ * <p>
+ * Failed query steps will never be cached. Results without any content will only be cached for a short time in a
+ * separate negative cache, so that a temporarily unavailable engine won't be pinned as empty. Size and expiration of
+ * both caches can be configured in the core properties. By default, the main cache is bounded by the estimated heap size
+ * of its entries (see {@link QueryStepResultWeigher}) instead of the number of entries.
+ * <p>
+ * If {@code metadict.cache.refreshAfterWrite} is set, entries older than the refresh time will be returned immediately
+ * while a new result is loaded in the background (stale-while-revalidate). Background refreshes run on a small bounded
+ * thread pool, so that they can't starve live queries. If the pool is saturated or the refresh doesn't return a
+ * cacheable result, the stale result will be kept until the next refresh. Only a successful refresh resets the age of
+ * an entry, so the maximum age of a stale result is limited by {@code metadict.cache.expireAfterWrite}.
+ * <p>
+ * Optionally, entries that are evicted from the heap because of its size limit can be moved to an {@link
+ * OffHeapQueryStepResultStore} that keeps them in a compressed form outside of the Java heap. The off-heap tier is
+ * disabled by default and can be enabled with {@code metadict.cache.offHeap.enabled}.
+ * <p>
+ * Optionally, successful results can also be persisted in a {@link FileQueryStepResultStore} that acts as the last
+ * level behind the in-memory tiers. This allows a restarted application to serve most lookups without calling any
+ * engine. The file cache is disabled by default and can be enabled with {@code metadict.cache.file.enabled}.
+ * <p>
+ * The cache also counts how often each entry was requested. If snapshots are enabled with {@code
+ * metadict.cache.snapshot.enabled}, the most requested entries will be written to a compressed snapshot file when the
+ * cache is destroyed and can be restored with {@link #restoreSnapshot()} on the next start.
+ * <p>
+ * Hit and miss counts are recorded per engine and can be queried together with further metrics through {@link
+ * #getStatistics()}. Cached results can be invalidated by engine or by query.
+ */
+@ApplicationScoped
+public class QueryStepCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueryStepCache.class);
+
+    private static final QueryStepResultWeigher WEIGHER = new QueryStepResultWeigher();
+
+    /** Version of the snapshot file format. Has to be incremented whenever the format changes. */
+    private static final int SNAPSHOT_FORMAT_VERSION = 2;
+
+    private static final long MAXIMUM_SIZE = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.maximumSize", 8192);
+
+    private static final long MAXIMUM_WEIGHT = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.maximumWeight", 64 * 1024 * 1024);
+
+    private static final long EXPIRE_AFTER_WRITE = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.expireAfterWrite", 86400);
+
+    private static final long REFRESH_AFTER_WRITE = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.refreshAfterWrite", 0);
+
+    private static final boolean REFRESH_ASYNC = CommonUtils.getBooleanProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.refresh.async", true);
+
+    private static final int REFRESH_THREADS = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.refresh.threads", 2);
+
+    private static final int REFRESH_QUEUE_SIZE = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.refresh.queueSize", 64);
+
+    private static final long NEGATIVE_EXPIRE_AFTER_WRITE = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.negative.expireAfterWrite", 300);
+
+    private static final boolean FILE_CACHE_ENABLED = CommonUtils.getBooleanProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.file.enabled", false);
+
+    private static final String FILE_CACHE_PATH = CommonUtils.getProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.file.path", "");
+
+    private static final long FILE_CACHE_MAXIMUM_SIZE = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.file.maximumSize", 64 * 1024 * 1024);
+
+    private static final boolean OFF_HEAP_CACHE_ENABLED = CommonUtils.getBooleanProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.offHeap.enabled", false);
+
+    private static final long OFF_HEAP_CACHE_SIZE = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.offHeap.size", 256 * 1024 * 1024);
+
+    private static final int OFF_HEAP_CACHE_SLAB_SIZE = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.offHeap.slabSize", 16 * 1024 * 1024);
+
+    private static final boolean OFF_HEAP_CACHE_COMPRESS = CommonUtils.getBooleanProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.offHeap.compress", true);
+
+    private static final boolean SNAPSHOT_ENABLED = CommonUtils.getBooleanProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.snapshot.enabled", false);
+
+    private static final String SNAPSHOT_FILE = CommonUtils.getProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.snapshot.path", "");
+
+    private static final int SNAPSHOT_SIZE = CommonUtils.getIntProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.cache.snapshot.size", 1000);
+
+    private long maximumSize = MAXIMUM_SIZE;
+
+    private long maximumWeight = MAXIMUM_WEIGHT;
+
+    private long expireAfterWrite = EXPIRE_AFTER_WRITE;
+
+    private long refreshAfterWrite = REFRESH_AFTER_WRITE;
+
+    private boolean refreshAsync = REFRESH_ASYNC;
+
+    private boolean fileCacheEnabled = FILE_CACHE_ENABLED;
+
+    private boolean offHeapCacheEnabled = OFF_HEAP_CACHE_ENABLED;
+
+    private long offHeapCacheSize = OFF_HEAP_CACHE_SIZE;
+
+    private int offHeapCacheSlabSize = OFF_HEAP_CACHE_SLAB_SIZE;
+
+    private boolean snapshotEnabled = SNAPSHOT_ENABLED;
+
+    private String snapshotFile = SNAPSHOT_FILE;
+
+    private int snapshotSize = SNAPSHOT_SIZE;
+
+    @Inject
+    EngineRegistry engineRegistry;
+
+    /** Source of the current time in milliseconds for checking the age of results. */
+    LongSupplier clock = System::currentTimeMillis;
+
+    /** Number of requests per cached entry - used for determining the hottest entries. */
+    private final AtomicLongMap<QueryStepCacheKey> requestCounts = AtomicLongMap.create();
+
+    /** Hit and miss counters per engine name. */
+    private final Map<String, EngineCounters> engineCounters = new ConcurrentHashMap<>();
+
+    /** Executor for background refreshes - null if refreshes are disabled or synchronous. */
+    ExecutorService refreshExecutorService;
+
+    /** Estimated heap size of all entries in the main cache - see {@link #recordInsertion(QueryStepCacheKey, QueryStepResult)}. */
+    private final LongAdder estimatedWeight = new LongAdder();
+
+    /** Keys whose entries are currently being refreshed - used for starting only one refresh per entry. */
+    private final Set<QueryStepCacheKey> refreshingKeys = ConcurrentHashMap.newKeySet();
+
+    /** Off-heap tier for entries that were evicted from the heap - null if disabled. */
+    private OffHeapQueryStepResultStore offHeapStore;
+
+    /** Persistent tier - null if disabled. */
+    private FileQueryStepResultStore fileStore;
+
+    private Cache<QueryStepCacheKey, QueryStepResult> queryStepResultCache;
+
+    private Cache<QueryStepCacheKey, QueryStepResult> emptyQueryStepResultCache;
+
+    /**
+     * Returns the result of the given {@link QueryStep}. If no result is cached, the step will be executed. Concurrent
+     * calls for an equivalent query step will wait for the same execution, i.e. only one call to the backend will be
+     * made. This method will never throw an exception but return a failed {@link QueryStepResult} instead.
+     *
+     * @param queryStep
+     *         The query step whose result should be returned.
+     * @return the (possibly cached) result of the query step.
+     */
+    @NotNull
+    public QueryStepResult get(@NotNull QueryStep queryStep) {
+        QueryStepCacheKey cacheKey = QueryStepCacheKey.fromQueryStep(queryStep);
+
+        EngineCounters counters = engineCounters.computeIfAbsent(cacheKey.getSearchEngineName(), name -> new EngineCounters());
+
+        QueryStepResult queryStepResult = emptyQueryStepResultCache.getIfPresent(cacheKey);
+        if (queryStepResult != null) {
+            LOGGER.debug("Negative cache hit on query step {}", queryStep);
+            counters.negativeHitCount.increment();
+            return queryStepResult;
+        }
+
+        try {
+            queryStepResult = getFromHeap(cacheKey);
+            if (queryStepResult == null) {
+                counters.missCount.increment();
+                // Misses will be executed with the original query step and not the one reconstructed from the key
+                queryStepResult = queryStepResultCache.get(cacheKey, () -> recordInsertion(cacheKey, loadQueryStep(cacheKey, queryStep, true)));
+            } else {
+                counters.hitCount.increment();
+            }
+            recordRequest(cacheKey);
+            return queryStepResult;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UncacheableResultException) {
+                queryStepResult = ((UncacheableResultException) e.getCause()).getQueryStepResult();
+                if (!queryStepResult.isFailedStep()) {
+                    emptyQueryStepResultCache.put(cacheKey, queryStepResult);
+                }
+                return queryStepResult;
+            }
+            LOGGER.error("Query step {} failed", queryStep, e);
+            return QueryUtil.buildFailedQueryStepResult(queryStep, e.getMessage(), 0);
+        }
+    }
+
+    /**
+     * Returns the cached result of the given {@link QueryStep} from any tier or null if no result is cached. Unlike
+     * {@link #get(QueryStep)}, the step will never be executed. Callers that execute the step themselves should pass
+     * the result to {@link #put(QueryStep, QueryStepResult)} afterwards.
+     *
+     * @param queryStep
+     *         The query step whose result should be returned.
+     * @return the cached result of the query step or null.
+     */
+    @Nullable
+    public QueryStepResult getIfPresent(@NotNull QueryStep queryStep) {
+        QueryStepCacheKey cacheKey = QueryStepCacheKey.fromQueryStep(queryStep);
+
+        EngineCounters counters = engineCounters.computeIfAbsent(cacheKey.getSearchEngineName(), name -> new EngineCounters());
+
+        QueryStepResult queryStepResult = emptyQueryStepResultCache.getIfPresent(cacheKey);
+        if (queryStepResult != null) {
+            counters.negativeHitCount.increment();
+            return queryStepResult;
+        }
+
+        queryStepResult = getFromHeap(cacheKey);
+        if (queryStepResult == null) {
+            counters.missCount.increment();
+            queryStepResult = loadFromLowerTiers(cacheKey, queryStep);
+            if (queryStepResult == null)
+                return null;
+            queryStepResultCache.put(cacheKey, recordInsertion(cacheKey, queryStepResult));
+        } else {
+            counters.hitCount.increment();
+        }
+        recordRequest(cacheKey);
+        return queryStepResult;
+    }
+
+    /**
+     * Returns true, if a result of the given {@link QueryStep} is cached in any tier and can be returned without
+     * calling the engine, i.e. it is neither expired nor due for a refresh. Unlike {@link #getIfPresent(QueryStep)},
+     * this method neither updates the statistics nor moves results between tiers.
+     *
+     * @param queryStep
+     *         The query step to check.
+     * @return true, if the query step can be answered from the cache.
+     */
+    public boolean isCached(@NotNull QueryStep queryStep) {
+        QueryStepCacheKey cacheKey = QueryStepCacheKey.fromQueryStep(queryStep);
+
+        if (emptyQueryStepResultCache.getIfPresent(cacheKey) != null)
+            return true;
+
+        QueryStepResult queryStepResult = queryStepResultCache.getIfPresent(cacheKey);
+        if (queryStepResult != null)
+            return isFresh(queryStepResult.getTimestamp());
+
+        StoredEngineQueryResult storedResult = offHeapStore != null ? offHeapStore.lookup(cacheKey) : null;
+        if (storedResult == null && fileStore != null) {
+            storedResult = fileStore.lookup(cacheKey);
+        }
+        return storedResult != null && isFresh(storedResult.getTimestamp());
+    }
+
+    /**
+     * Store the result of a {@link QueryStep} that has been executed outside of this cache. The same rules as for
+     * results that were loaded by {@link #get(QueryStep)} apply: failed results will be ignored and results without
+     * any content will only be stored in the negative cache.
+     *
+     * @param queryStep
+     *         The executed query step.
+     * @param queryStepResult
+     *         The result of the query step.
+     */
+    public void put(@NotNull QueryStep queryStep, @NotNull QueryStepResult queryStepResult) {
+        if (queryStepResult.isFailedStep())
+            return;
+
+        QueryStepCacheKey cacheKey = QueryStepCacheKey.fromQueryStep(queryStep);
+        if (isEmptyResult(queryStepResult.getEngineQueryResult())) {
+            emptyQueryStepResultCache.put(cacheKey, queryStepResult);
+            return;
+        }
+        queryStepResultCache.put(cacheKey, recordInsertion(cacheKey, queryStepResult));
+        if (fileStore != null) {
+            fileStore.put(cacheKey, queryStepResult.getEngineQueryResult(), queryStepResult.getTimestamp());
+        }
+    }
+
+    /**
+     * Returns the current statistics of this cache. Per-engine sizes will be calculated on each call.
+     *
+     * @return the current statistics of this cache.
+     */
+    @NotNull
+    public QueryStepCacheStatistics getStatistics() {
+        QueryStepCacheStatistics statistics = new QueryStepCacheStatistics();
+        CacheStats cacheStats = queryStepResultCache.stats();
+
+        for (Map.Entry<String, EngineCounters> entry : engineCounters.entrySet()) {
+            QueryStepCacheStatistics.EngineCacheStatistics engineStatistics = new QueryStepCacheStatistics.EngineCacheStatistics();
+            engineStatistics.hitCount = entry.getValue().hitCount.sum();
+            engineStatistics.negativeHitCount = entry.getValue().negativeHitCount.sum();
+            engineStatistics.missCount = entry.getValue().missCount.sum();
+            statistics.engines.put(entry.getKey(), engineStatistics);
+
+            statistics.hitCount += engineStatistics.hitCount;
+            statistics.negativeHitCount += engineStatistics.negativeHitCount;
+            statistics.missCount += engineStatistics.missCount;
+        }
+        for (QueryStepCacheKey cacheKey : queryStepResultCache.asMap().keySet()) {
+            QueryStepCacheStatistics.EngineCacheStatistics engineStatistics = statistics.engines.get(cacheKey.getSearchEngineName());
+            if (engineStatistics != null) {
+                engineStatistics.size++;
+            }
+        }
+
+        statistics.loadCount = cacheStats.loadCount();
+        statistics.loadExceptionCount = cacheStats.loadExceptionCount();
+        statistics.averageLoadTime = cacheStats.averageLoadPenalty() / TimeUnit.MILLISECONDS.toNanos(1);
+        statistics.evictionCount = cacheStats.evictionCount();
+        statistics.size = queryStepResultCache.size();
+        statistics.negativeSize = emptyQueryStepResultCache.size();
+        statistics.estimatedWeight = getEstimatedWeight();
+        statistics.maximumWeight = getMaximumWeight();
+
+        if (offHeapStore != null) {
+            statistics.offHeapSize = offHeapStore.count();
+            statistics.offHeapUsedBytes = offHeapStore.getUsedBytes();
+        }
+        if (fileStore != null) {
+            statistics.fileSize = fileStore.count();
+        }
+
+        return statistics;
+    }
+
+    /**
+     * Remove all cached results of the engine with the given name from all tiers.
+     *
+     * @param engineName
+     *         The name of the engine.
+     * @return the number of removed entries from the in-memory caches.
+     */
+    public int invalidateEngine(@NotNull String engineName) {
+        LOGGER.info("Invalidating cached results of engine {}", engineName);
+        return invalidateIf(cacheKey -> engineName.equals(cacheKey.getSearchEngineName()));
+    }
+
+    /**
+     * Remove all cached results for the given query string from all tiers. The query string will be normalized before
+     * matching, i.e. results of all engines and languages for the same normalized query will be removed.
+     *
+     * @param queryString
+     *         The query string.
+     * @return the number of removed entries from the in-memory caches.
+     */
+    public int invalidateQuery(@NotNull String queryString) {
+        String normalizedQueryString = QueryStepCacheKey.normalizeQueryString(queryString);
+        LOGGER.info("Invalidating cached results of query {}", normalizedQueryString);
+        return invalidateIf(cacheKey -> normalizedQueryString.equals(cacheKey.getQueryString()));
+    }
+
+    /**
+     * Remove all cached results from all tiers.
+     *
+     * @return the number of removed entries from the in-memory caches.
+     */
+    public int invalidateAll() {
+        LOGGER.info("Invalidating all cached results");
+        return invalidateIf(cacheKey -> true);
+    }
+
+    /**
+     * Returns the estimated heap size of all entries in the main cache in bytes. The size is tracked incrementally
+     * whenever an entry is inserted or removed.
+     *
+     * @return the estimated heap size of all entries in the main cache in bytes.
+     */
+    public long getEstimatedWeight() {
+        return estimatedWeight.sum();
+    }
+
+    /**
+     * Returns the maximum estimated heap size of the main cache in bytes or zero if the cache is bounded by the number
+     * of entries instead.
+     *
+     * @return the maximum estimated heap size of the main cache in bytes or zero.
+     */
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    /**
+     * Restore the entries from the snapshot that was written when the cache was destroyed the last time. Restored
+     * entries keep their original write time. Expired entries and entries of engines that are no longer registered will
+     * be skipped. This method does nothing if snapshots are disabled.
+     *
+     * @return the number of restored entries.
+     */
+    public int restoreSnapshot() {
+        if (!snapshotEnabled)
+            return 0;
+
+        Path snapshotPath = getSnapshotPath();
+        if (!Files.exists(snapshotPath)) {
+            LOGGER.info("No cache snapshot found in {}", snapshotPath);
+            return 0;
+        }
+
+        int restoredEntries = 0;
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath))))) {
+            int formatVersion = in.readInt();
+            if (formatVersion != SNAPSHOT_FORMAT_VERSION) {
+                LOGGER.warn("Ignoring cache snapshot {} with unsupported format version {}", snapshotPath, formatVersion);
+                return 0;
+            }
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                long requestCount = in.readLong();
+                long timestamp = in.readLong();
+                byte[] data = new byte[in.readInt()];
+                in.readFully(data);
+                if (restoreSnapshotEntry(data, requestCount, timestamp)) {
+                    restoredEntries++;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Restoring cache snapshot from {} failed", snapshotPath, e);
+        }
+
+        LOGGER.info("Restored {} entries from cache snapshot {}", restoredEntries, snapshotPath);
+        return restoredEntries;
+    }
+
+    /**
+     * Write the most requested entries of the cache to the snapshot file. The number of entries can be configured with
+     * {@code metadict.cache.snapshot.size}. This method does nothing if snapshots are disabled.
+     *
+     * @return the number of written entries.
+     */
+    public int writeSnapshot() {
+        if (!snapshotEnabled)
+            return 0;
+
+        Path snapshotPath = getSnapshotPath();
+        Path temporaryPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        List<Map.Entry<QueryStepCacheKey, QueryStepResult>> hottestEntries = queryStepResultCache.asMap().entrySet()
+                .stream()
+                .sorted((a, b) -> Long.compare(requestCounts.get(b.getKey()), requestCounts.get(a.getKey())))
+                .limit(snapshotSize)
+                .collect(Collectors.toList());
+
+        try {
+            if (snapshotPath.getParent() != null) {
+                Files.createDirectories(snapshotPath.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryPath))))) {
+                out.writeInt(SNAPSHOT_FORMAT_VERSION);
+                out.writeInt(hottestEntries.size());
+                for (Map.Entry<QueryStepCacheKey, QueryStepResult> entry : hottestEntries) {
+                    byte[] data = EngineQueryResultCodec.encode(entry.getKey(), entry.getValue().getEngineQueryResult());
+                    out.writeLong(requestCounts.get(entry.getKey()));
+                    out.writeLong(entry.getValue().getTimestamp());
+                    out.writeInt(data.length);
+                    out.write(data);
+                }
+            }
+            Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error("Writing cache snapshot to {} failed", snapshotPath, e);
+            return 0;
+        }
+
+        LOGGER.info("Wrote {} entries to cache snapshot {}", hottestEntries.size(), snapshotPath);
+        return hottestEntries.size();
+    }
+
+    // Setters for overriding the configuration in tests - they have to be called before initialize()
+
+    void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    void setMaximumWeight(long maximumWeight) {
+        this.maximumWeight = maximumWeight;
+    }
+
+    void setExpireAfterWrite(long expireAfterWrite) {
+        this.expireAfterWrite = expireAfterWrite;
+    }
+
+    void setRefreshAfterWrite(long refreshAfterWrite) {
+        this.refreshAfterWrite = refreshAfterWrite;
+    }
+
+    void setRefreshAsync(boolean refreshAsync) {
+        this.refreshAsync = refreshAsync;
+    }
+
+    void setFileCacheEnabled(boolean fileCacheEnabled) {
+        this.fileCacheEnabled = fileCacheEnabled;
+    }
+
+    void setOffHeapCacheEnabled(boolean offHeapCacheEnabled) {
+        this.offHeapCacheEnabled = offHeapCacheEnabled;
+    }
+
+    void setOffHeapCacheSize(long offHeapCacheSize) {
+        this.offHeapCacheSize = offHeapCacheSize;
+    }
+
+    void setOffHeapCacheSlabSize(int offHeapCacheSlabSize) {
+        this.offHeapCacheSlabSize = offHeapCacheSlabSize;
+    }
+
+    void setSnapshotEnabled(boolean snapshotEnabled) {
+        this.snapshotEnabled = snapshotEnabled;
+    }
+
+    void setSnapshotFile(String snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    void setSnapshotSize(int snapshotSize) {
+        this.snapshotSize = snapshotSize;
+    }
+
+    @PostConstruct
+    void initialize() {
+        CacheBuilder<QueryStepCacheKey, QueryStepResult> cacheBuilder = CacheBuilder
+                .newBuilder()
+                .concurrencyLevel(8)
+                .initialCapacity(512)
+                .recordStats()
+                .removalListener(notification -> {
+                    estimatedWeight.add(-WEIGHER.weigh(notification.getKey(), notification.getValue()));
+                    if (notification.getCause() != RemovalCause.REPLACED) {
+                        requestCounts.remove(notification.getKey());
+                    }
+                    if (notification.getCause() == RemovalCause.SIZE && offHeapStore != null) {
+                        // Demote evicted entries to the off-heap tier - they keep their original write time
+                        offHeapStore.put(notification.getKey(), notification.getValue().getEngineQueryResult(), notification.getValue().getTimestamp());
+                    }
+                });
+
+        if (maximumWeight > 0) {
+            cacheBuilder.maximumWeight(maximumWeight).weigher(WEIGHER);
+        } else {
+            cacheBuilder.maximumSize(maximumSize);
+        }
+        if (expireAfterWrite > 0) {
+            cacheBuilder.expireAfterWrite(expireAfterWrite, TimeUnit.SECONDS);
+        }
+        if (refreshAfterWrite > 0 && refreshAsync) {
+            refreshExecutorService = new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS,
+                    0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE), new ThreadFactoryBuilder()
+                    .setNameFormat("metadict-cache-refresh-%d")
+                    .setDaemon(true)
+                    .setPriority(Thread.MIN_PRIORITY)
+                    .build());
+        }
+
+        queryStepResultCache = cacheBuilder.build();
+
+        emptyQueryStepResultCache = CacheBuilder
+                .newBuilder()
+                .concurrencyLevel(8)
+                .maximumSize(maximumSize)
+                .expireAfterWrite(NEGATIVE_EXPIRE_AFTER_WRITE, TimeUnit.SECONDS)
+                .build();
+
+        if (offHeapCacheEnabled) {
+            offHeapStore = new OffHeapQueryStepResultStore(offHeapCacheSize, offHeapCacheSlabSize, OFF_HEAP_CACHE_COMPRESS, TimeUnit.SECONDS.toMillis(expireAfterWrite));
+        }
+        if (fileCacheEnabled) {
+            fileStore = openFileStore();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (refreshExecutorService != null) {
+            refreshExecutorService.shutdownNow();
+        }
+        writeSnapshot();
+        if (fileStore != null) {
+            try {
+                fileStore.close();
+            } catch (IOException e) {
+                LOGGER.error("Closing file cache failed", e);
+            }
+        }
+    }
+
+    @Nullable
+    private FileQueryStepResultStore openFileStore() {
+        Path path = StringUtils.isNotEmpty(FILE_CACHE_PATH)
+                ? Paths.get(FILE_CACHE_PATH)
+                : Paths.get(System.getProperty("java.io.tmpdir"), "metadict", "query-step-cache.dat");
+        try {
+            return new FileQueryStepResultStore(path, FILE_CACHE_MAXIMUM_SIZE, TimeUnit.SECONDS.toMillis(expireAfterWrite));
+        } catch (IOException e) {
+            LOGGER.error("Opening file cache {} failed - continuing without file cache", path, e);
+            return null;
+        }
+    }
+
+    private int invalidateIf(@NotNull Predicate<QueryStepCacheKey> predicate) {
+        List<QueryStepCacheKey> invalidatedKeys = queryStepResultCache.asMap().keySet().stream().filter(predicate).collect(Collectors.toList());
+        List<QueryStepCacheKey> invalidatedEmptyKeys = emptyQueryStepResultCache.asMap().keySet().stream().filter(predicate).collect(Collectors.toList());
+
+        queryStepResultCache.invalidateAll(invalidatedKeys);
+        emptyQueryStepResultCache.invalidateAll(invalidatedEmptyKeys);
+        if (offHeapStore != null) {
+            offHeapStore.invalidateIf(predicate);
+        }
+        if (fileStore != null) {
+            fileStore.invalidateIf(predicate);
+        }
+
+        return invalidatedKeys.size() + invalidatedEmptyKeys.size();
+    }
+
+    @NotNull
+    private Path getSnapshotPath() {
+        return StringUtils.isNotEmpty(snapshotFile)
+                ? Paths.get(snapshotFile)
+                : Paths.get(System.getProperty("java.io.tmpdir"), "metadict", "query-step-cache.snapshot");
+    }
+
+    private boolean restoreSnapshotEntry(@NotNull byte[] data, long requestCount, long timestamp) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        QueryStepCacheKey cacheKey = EngineQueryResultCodec.decodeCacheKey(in);
+
+        SearchEngine searchEngine;
+        try {
+            searchEngine = engineRegistry.getEngineByName(cacheKey.getSearchEngineName());
+        } catch (UnknownSearchEngineException e) {
+            LOGGER.debug("Skipping snapshot entry {} of unknown engine", cacheKey);
+            return false;
+        }
+
+        QueryStepResult queryStepResult = new QueryStepResultBuilder()
+                .setQueryStep(cacheKey.toQueryStep(searchEngine))
+                .setEngineQueryResult(EngineQueryResultCodec.decodeEngineQueryResultAfterKey(in))
+                .setTimestamp(timestamp)
+                .build();
+        if (isExpired(queryStepResult)) {
+            LOGGER.debug("Skipping expired snapshot entry {}", cacheKey);
+            return false;
+        }
+        queryStepResultCache.put(cacheKey, recordInsertion(cacheKey, queryStepResult));
+        requestCounts.put(cacheKey, requestCount);
+        return true;
+    }
+
+    /**
+     * Add the weight of a value that is inserted into the main cache. Every insertion has to go through this method;
+     * the weight will be subtracted again by the removal listener, which also sees values that are replaced or that
+     * lost a race against a concurrent load.
+     */
+    @NotNull
+    private QueryStepResult recordInsertion(@NotNull QueryStepCacheKey cacheKey, @NotNull QueryStepResult queryStepResult) {
+        estimatedWeight.add(WEIGHER.weigh(cacheKey, queryStepResult));
+        return queryStepResult;
+    }
+
+    private void recordRequest(@NotNull QueryStepCacheKey cacheKey) {
+        requestCounts.incrementAndGet(cacheKey);
+        // The entry might have been removed before the increment - its removal listener won't run again
+        if (!queryStepResultCache.asMap().containsKey(cacheKey)) {
+            requestCounts.remove(cacheKey);
+        }
+    }
+
+    @Nullable
+    private QueryStepResult getFromHeap(@NotNull QueryStepCacheKey cacheKey) {
+        QueryStepResult queryStepResult = queryStepResultCache.getIfPresent(cacheKey);
+        if (queryStepResult == null)
+            return null;
+        if (isExpired(queryStepResult)) {
+            // Results promoted from a lower tier keep their original age, which the heap doesn't know about
+            queryStepResultCache.asMap().remove(cacheKey, queryStepResult);
+            return null;
+        }
+        return refreshIfStale(cacheKey, queryStepResult);
+    }
+
+    /**
+     * Start a refresh of the given result if it is older than the refresh time. Asynchronous refreshes return the
+     * stale result immediately. If the refresh fails, returns no content or is rejected, the stale result stays in the
+     * cache with its original write time, i.e. it will still expire on time.
+     */
+    @NotNull
+    private QueryStepResult refreshIfStale(@NotNull QueryStepCacheKey cacheKey, @NotNull QueryStepResult staleResult) {
+        if (refreshAfterWrite <= 0 || clock.getAsLong() - staleResult.getTimestamp() <= TimeUnit.SECONDS.toMillis(refreshAfterWrite))
+            return staleResult;
+        if (!refreshingKeys.add(cacheKey))
+            return staleResult;     // Already being refreshed by another request
+
+        if (refreshExecutorService == null) {
+            try {
+                return refresh(cacheKey, staleResult);
+            } finally {
+                refreshingKeys.remove(cacheKey);
+            }
+        }
+
+        try {
+            refreshExecutorService.execute(() -> {
+                try {
+                    refresh(cacheKey, staleResult);
+                } finally {
+                    refreshingKeys.remove(cacheKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshingKeys.remove(cacheKey);
+            LOGGER.debug("Refresh of query step {} was rejected - keeping stale result", cacheKey);
+        }
+        return staleResult;
+    }
+
+    @NotNull
+    private QueryStepResult refresh(@NotNull QueryStepCacheKey cacheKey, @NotNull QueryStepResult staleResult) {
+        try {
+            // Refreshing must bypass the lower tiers, since they would only return the same old result
+            QueryStepResult refreshedResult = loadQueryStep(cacheKey, staleResult.getQueryStep(), false);
+            // Don't resurrect entries that have been invalidated in the meantime
+            if (queryStepResultCache.asMap().replace(cacheKey, staleResult, refreshedResult)) {
+                recordInsertion(cacheKey, refreshedResult);
+            }
+            return refreshedResult;
+        } catch (UncacheableResultException e) {
+            LOGGER.debug("Refresh of query step {} returned no cacheable result - keeping stale result", cacheKey);
+            return staleResult;
+        } catch (RuntimeException e) {
+            LOGGER.error("Refresh of query step {} failed - keeping stale result", cacheKey, e);
+            return staleResult;
+        }
+    }
+
+    @Nullable
+    private QueryStepResult loadFromLowerTiers(@NotNull QueryStepCacheKey cacheKey, @NotNull QueryStep queryStep) {
+        StoredEngineQueryResult storedResult = null;
+        if (offHeapStore != null) {
+            storedResult = offHeapStore.lookup(cacheKey);
+            if (storedResult != null) {
+                // The promoted entry lives on the heap now and will be demoted again on eviction
+                offHeapStore.remove(cacheKey);
+            }
+        }
+        if (storedResult == null && fileStore != null) {
+            storedResult = fileStore.lookup(cacheKey);
+        }
+        if (storedResult == null)
+            return null;
+
+        LOGGER.debug("Lower tier cache hit on query step {}", queryStep);
+        return new QueryStepResultBuilder()
+                .setQueryStep(queryStep)
+                .setEngineQueryResult(storedResult.getEngineQueryResult())
+                .setTimestamp(storedResult.getTimestamp())
+                .build();
+    }
+
+    @NotNull
+    private QueryStepResult loadQueryStep(@NotNull QueryStepCacheKey cacheKey, @NotNull QueryStep queryStep, boolean useLowerTiers) throws UncacheableResultException {
+        if (useLowerTiers) {
+            QueryStepResult storedResult = loadFromLowerTiers(cacheKey, queryStep);
+            if (storedResult != null)
+                return storedResult;
+        }
+
+        LOGGER.debug("Cache miss on query step {}", queryStep);
+        QueryStepResult queryStepResult = QueryUtil.executeQueryStep(queryStep);
+        // Throwing from the loader keeps the result out of the cache (and keeps the old value on refresh)
+        if (queryStepResult.isFailedStep() || isEmptyResult(queryStepResult.getEngineQueryResult())) {
+            throw new UncacheableResultException(queryStepResult);
+        }
+        if (fileStore != null) {
+            fileStore.put(cacheKey, queryStepResult.getEngineQueryResult(), queryStepResult.getTimestamp());
+        }
+        return queryStepResult;
+    }
+
+    private boolean isExpired(@NotNull QueryStepResult queryStepResult) {
+        return expireAfterWrite > 0 && clock.getAsLong() - queryStepResult.getTimestamp() > TimeUnit.SECONDS.toMillis(expireAfterWrite);
+    }
+
+    private boolean isFresh(long timestamp) {
+        long age = clock.getAsLong() - timestamp;
+        return (expireAfterWrite <= 0 || age <= TimeUnit.SECONDS.toMillis(expireAfterWrite))
+                && (refreshAfterWrite <= 0 || age <= TimeUnit.SECONDS.toMillis(refreshAfterWrite));
+    }
+
+    private static boolean isEmptyResult(@NotNull EngineQueryResult engineQueryResult) {
+        return engineQueryResult.getEntries().isEmpty()
+                && engineQueryResult.getExternalContents().isEmpty()
+                && engineQueryResult.getSimilarRecommendations().isEmpty();
+    }
+
+    /**
+     * Hit and miss counters of a single engine.
+     */
+    private static class EngineCounters {
+
+        private final LongAdder hitCount = new LongAdder();
+
+        private final LongAdder negativeHitCount = new LongAdder();
+
+        private final LongAdder missCount = new LongAdder();
+    }
+
+    /**
+     * Signals that a loaded {@link QueryStepResult} must not be stored in the main cache.
+     */
+    private static class UncacheableResultException extends Exception {
+
+        private final QueryStepResult queryStepResult;
+
+        UncacheableResultException(@NotNull QueryStepResult queryStepResult) {
+            super(null, null, false, false);
+            this.queryStepResult = queryStepResult;
+        }
+
+        @NotNull
+        QueryStepResult getQueryStepResult() {
+            return queryStepResult;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import com.google.common.base.MoreObjects;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The class {@link QueryStepCacheStatistics} provides a snapshot of the metrics of the {@link QueryStepCache}. Hits and
+ * misses refer to the in-memory cache, i.e. a hit in one of the lower tiers counts as a miss. All durations are given
+ * in milliseconds and all sizes of memory in bytes.
+ */
+public class QueryStepCacheStatistics {
+
+    long hitCount;
+
+    long negativeHitCount;
+
+    long missCount;
+
+    long loadCount;
+
+    long loadExceptionCount;
+
+    double averageLoadTime;
+
+    long evictionCount;
+
+    long size;
+
+    long negativeSize;
+
+    long estimatedWeight;
+
+    long maximumWeight;
+
+    long offHeapSize;
+
+    long offHeapUsedBytes;
+
+    long fileSize;
+
+    Map<String, EngineCacheStatistics> engines = new TreeMap<>();
+
+    /**
+     * Returns the average time for loading a new result (i.e. executing a query step or reading it from a lower tier).
+     *
+     * @return the average time for loading a new result.
+     */
+    public double getAverageLoadTime() {
+        return averageLoadTime;
+    }
+
+    /**
+     * Returns the statistics of each engine, mapped by the engine's name.
+     *
+     * @return the statistics of each engine, mapped by the engine's name.
+     */
+    public Map<String, EngineCacheStatistics> getEngines() {
+        return engines;
+    }
+
+    /**
+     * Returns the estimated heap size of all entries in the main cache.
+     *
+     * @return the estimated heap size of all entries in the main cache.
+     */
+    public long getEstimatedWeight() {
+        return estimatedWeight;
+    }
+
+    /**
+     * Returns the number of entries that were evicted because of the size limit or expiration.
+     *
+     * @return the number of entries that were evicted.
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Returns the number of entries in the file tier or zero if the file tier is disabled.
+     *
+     * @return the number of entries in the file tier.
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the ratio of hits (including negative hits) to all requests or 1.0 if there were no requests yet.
+     *
+     * @return the ratio of hits to all requests.
+     */
+    public double getHitRate() {
+        long requestCount = hitCount + negativeHitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) (hitCount + negativeHitCount) / requestCount;
+    }
+
+    public long getLoadCount() {
+        return loadCount;
+    }
+
+    /**
+     * Returns the number of loads that didn't produce a cacheable result, i.e. failed or empty results.
+     *
+     * @return the number of loads that didn't produce a cacheable result.
+     */
+    public long getLoadExceptionCount() {
+        return loadExceptionCount;
+    }
+
+    public long getMaximumWeight() {
+        return maximumWeight;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the ratio of misses to all requests or 0.0 if there were no requests yet.
+     *
+     * @return the ratio of misses to all requests.
+     */
+    public double getMissRate() {
+        return 1.0 - getHitRate();
+    }
+
+    public long getNegativeHitCount() {
+        return negativeHitCount;
+    }
+
+    public long getNegativeSize() {
+        return negativeSize;
+    }
+
+    public long getOffHeapSize() {
+        return offHeapSize;
+    }
+
+    public long getOffHeapUsedBytes() {
+        return offHeapUsedBytes;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("hitCount", hitCount)
+                .add("negativeHitCount", negativeHitCount)
+                .add("missCount", missCount)
+                .add("loadCount", loadCount)
+                .add("loadExceptionCount", loadExceptionCount)
+                .add("averageLoadTime", averageLoadTime)
+                .add("evictionCount", evictionCount)
+                .add("size", size)
+                .add("negativeSize", negativeSize)
+                .add("estimatedWeight", estimatedWeight)
+                .add("maximumWeight", maximumWeight)
+                .add("offHeapSize", offHeapSize)
+                .add("offHeapUsedBytes", offHeapUsedBytes)
+                .add("fileSize", fileSize)
+                .add("engines", engines)
+                .toString();
+    }
+
+    /**
+     * The cache statistics of a single engine.
+     */
+    public static class EngineCacheStatistics {
+
+        long hitCount;
+
+        long negativeHitCount;
+
+        long missCount;
+
+        long size;
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        /**
+         * Returns the ratio of hits (including negative hits) to all requests or 1.0 if there were no requests yet.
+         *
+         * @return the ratio of hits to all requests.
+         */
+        public double getHitRate() {
+            long requestCount = hitCount + negativeHitCount + missCount;
+            return requestCount == 0 ? 1.0 : (double) (hitCount + negativeHitCount) / requestCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public long getNegativeHitCount() {
+            return negativeHitCount;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("hitCount", hitCount)
+                    .add("negativeHitCount", negativeHitCount)
+                    .add("missCount", missCount)
+                    .add("size", size)
+                    .toString();
+        }
+    }
+}
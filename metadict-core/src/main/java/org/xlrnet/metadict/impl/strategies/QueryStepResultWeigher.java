@@ -0,0 +1,138 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import com.google.common.cache.Weigher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xlrnet.metadict.api.query.DictionaryEntry;
+import org.xlrnet.metadict.api.query.DictionaryObject;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.api.query.ExternalContent;
+import org.xlrnet.metadict.impl.query.QueryStepCacheKey;
+import org.xlrnet.metadict.impl.query.QueryStepResult;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link Weigher} that estimates the retained heap size of a cached {@link QueryStepResult} in bytes. The estimation
+ * assumes a 64-bit JVM with compressed references and counts all strings, lists and maps of the contained {@link
+ * EngineQueryResult}. Shared objects like languages are not counted. The result is only an approximation, but it is
+ * proportional to the real size, which is sufficient for bounding the cache.
+ */
+public class QueryStepResultWeigher implements Weigher<QueryStepCacheKey, QueryStepResult> {
+
+    private static final int OBJECT_HEADER_SIZE = 16;
+
+    private static final int REFERENCE_SIZE = 4;
+
+    /** Estimated size of an empty {@link java.util.Vector} or {@link java.util.ArrayList} with its backing array. */
+    private static final int LIST_SIZE = OBJECT_HEADER_SIZE * 2 + 16;
+
+    /** Estimated size of an empty {@link java.util.HashMap} with its table. */
+    private static final int MAP_SIZE = OBJECT_HEADER_SIZE * 2 + 32;
+
+    private static final int MAP_ENTRY_SIZE = OBJECT_HEADER_SIZE + 16;
+
+    /** Estimated size of the cache entry itself, the key and the {@link QueryStepResult} wrapper. */
+    private static final int CACHE_ENTRY_OVERHEAD = 256;
+
+    @Override
+    public int weigh(@NotNull QueryStepCacheKey key, @NotNull QueryStepResult value) {
+        long size = CACHE_ENTRY_OVERHEAD + estimateStringSize(key.getQueryString()) + estimateSize(value.getEngineQueryResult());
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Estimate the retained heap size of the given {@link EngineQueryResult} in bytes.
+     *
+     * @param engineQueryResult
+     *         The result to estimate.
+     * @return the estimated size in bytes.
+     */
+    public static long estimateSize(@NotNull EngineQueryResult engineQueryResult) {
+        long size = OBJECT_HEADER_SIZE + 3 * REFERENCE_SIZE;
+
+        List<DictionaryEntry> entries = engineQueryResult.getEntries();
+        size += estimateListSize(entries);
+        for (DictionaryEntry entry : entries) {
+            size += OBJECT_HEADER_SIZE + 3 * REFERENCE_SIZE;
+            size += estimateSize(entry.getInput());
+            size += estimateSize(entry.getOutput());
+        }
+
+        List<ExternalContent> externalContents = engineQueryResult.getExternalContents();
+        size += estimateListSize(externalContents);
+        for (ExternalContent externalContent : externalContents) {
+            size += OBJECT_HEADER_SIZE + 3 * REFERENCE_SIZE;
+            size += estimateStringSize(externalContent.getTitle());
+            size += estimateStringSize(externalContent.getDescription());
+            // URL objects keep several decomposed copies of the link
+            size += OBJECT_HEADER_SIZE + 3 * estimateStringSize(externalContent.getLink().toExternalForm());
+        }
+
+        List<DictionaryObject> similarRecommendations = engineQueryResult.getSimilarRecommendations();
+        size += estimateListSize(similarRecommendations);
+        for (DictionaryObject similarRecommendation : similarRecommendations) {
+            size += estimateSize(similarRecommendation);
+        }
+
+        return size;
+    }
+
+    private static long estimateSize(@Nullable DictionaryObject dictionaryObject) {
+        if (dictionaryObject == null)
+            return 0;
+
+        long size = OBJECT_HEADER_SIZE + 8 * REFERENCE_SIZE;
+        size += estimateStringSize(dictionaryObject.getGeneralForm());
+        size += estimateStringSize(dictionaryObject.getDescription());
+        size += estimateStringSize(dictionaryObject.getMeaning());
+        size += estimateStringSize(dictionaryObject.getAbbreviation());
+        size += estimateStringSize(dictionaryObject.getDomain());
+
+        Map<?, String> additionalForms = dictionaryObject.getAdditionalForms();
+        if (additionalForms != null) {
+            size += MAP_SIZE + additionalForms.size() * (MAP_ENTRY_SIZE + REFERENCE_SIZE);
+            for (String value : additionalForms.values()) {
+                size += estimateStringSize(value);
+            }
+        }
+
+        return size;
+    }
+
+    private static long estimateListSize(@NotNull List<?> list) {
+        return LIST_SIZE + list.size() * REFERENCE_SIZE;
+    }
+
+    private static long estimateStringSize(@Nullable String string) {
+        if (string == null)
+            return 0;
+        // String object with hash field and backing char array
+        return OBJECT_HEADER_SIZE + 8 + OBJECT_HEADER_SIZE + 2L * string.length();
+    }
+}
@@ -26,11 +26,7 @@ package org.xlrnet.metadict.impl.strategies;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.jetbrains.annotations.NotNull;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.xlrnet.metadict.api.language.Language;
 import org.xlrnet.metadict.api.query.EngineQueryResult;
-import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
 import org.xlrnet.metadict.impl.query.*;
 
 import java.util.ArrayList;
@@ -41,8 +37,6 @@ import java.util.List;
  */
 public class SimpleLinearExecutionStrategy implements QueryPlanExecutionStrategy {
 
-    private static final Logger LOGGER = LoggerFactory.getLogger(SimpleLinearExecutionStrategy.class);
-
     /**
      * Execute the given {@link QueryPlan} with the internally provided strategy. The results of each executed {@link
      * QueryStep} have to be aggregated to a {@link Iterable< Pair <QueryStep, EngineQueryResult >>} that
@@ -59,38 +53,7 @@ public class SimpleLinearExecutionStrategy implements QueryPlanExecutionStrategy
         List<QueryStepResult> queryResults = new ArrayList<>();      // TODO: Statistics?
 
         for (QueryStep step : queryPlan.getQueryStepList()) {
-            LOGGER.debug("Executing query step {}", step);
-
-            QueryStepResultBuilder stepResultBuilder = new QueryStepResultBuilder().setQueryStep(step);
-            long startTime = System.currentTimeMillis();
-
-            try {
-                String queryString = step.getQueryString();
-                Language inputLanguage = step.getInputLanguage();
-                Language outLanguage = step.getOutputLanguage();
-                boolean allowBothWay = step.isAllowBothWay();
-
-                EngineQueryResult queryResult = step.getSearchEngine().executeSearchQuery(queryString, inputLanguage, outLanguage, allowBothWay);
-
-                if (queryResult == null) {
-                    LOGGER.error("Query step {} failed: query result was null", step);
-                    stepResultBuilder.setFailedStep(true).setErrorMessage("query result was null")
-                            .setExecutionTime(System.currentTimeMillis() - startTime);
-                    queryResult = EngineQueryResultBuilder.EMPTY_QUERY_RESULT;
-                }
-                stepResultBuilder.setEngineQueryResult(queryResult);
-
-                long executionTime = System.currentTimeMillis() - startTime;
-                stepResultBuilder.setExecutionTime(executionTime);
-
-                LOGGER.debug("Executed query step {} in {} ms", step, executionTime);
-
-            } catch (Exception e) {
-                LOGGER.error("Query step {} failed: {}", step, e);
-                stepResultBuilder.setFailedStep(true).setErrorMessage(e.getMessage())
-                        .setExecutionTime(System.currentTimeMillis() - startTime);
-            }
-            queryResults.add(stepResultBuilder.build());
+            queryResults.add(QueryUtil.executeQueryStep(step));
         }
 
         return queryResults;
@@ -24,28 +24,42 @@
 
 package org.xlrnet.metadict.impl.strategies;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import org.jetbrains.annotations.NotNull;
 import org.xlrnet.metadict.api.engine.SearchEngine;
 import org.xlrnet.metadict.api.language.Dictionary;
 import org.xlrnet.metadict.impl.core.EngineRegistry;
 import org.xlrnet.metadict.impl.query.QueryPlan;
+import org.xlrnet.metadict.impl.query.QueryPlanBuilder;
 import org.xlrnet.metadict.impl.query.QueryPlanningStrategy;
 import org.xlrnet.metadict.impl.query.QueryRequest;
 import org.xlrnet.metadict.impl.query.QueryStep;
+import org.xlrnet.metadict.impl.util.CommonUtils;
 
-import javax.enterprise.inject.Default;
-import javax.inject.Inject;
+import javax.enterprise.context.ApplicationScoped;
+import java.util.List;
 
 /**
  * Simple planning strategy for creating query plans. This strategy creates unoptimized query plans by just passing all
- * requested {@link Dictionary} to the registry. Using this strategy should be
- * avoided, since it might cause a lot overhead while querying.
+ * requested {@link Dictionary} to the registry. Only steps that would result in the same backend call will be merged
+ * (see {@link QueryPlanBuilder}). Using this strategy should be avoided, since it might cause a lot overhead while
+ * querying.
+ * <p>
+ * Since the plan only depends on the requested dictionaries and the registered engines, the plan for each set of
+ * dictionaries will be calculated only once and cached as a template without query string. The templates will be
+ * recalculated whenever the version of the {@link EngineRegistry} changes. The maximum number of cached templates can
+ * be configured with {@code metadict.planning.cache.maximumSize} (0 disables the cache).
  */
-@Default
+@ApplicationScoped
 public class SimpleQueryPlanningStrategy implements QueryPlanningStrategy {
 
-    @Inject
-    private EngineRegistry engineRegistry;
+    private static final long PLAN_CACHE_MAXIMUM_SIZE = CommonUtils.getLongProperty(CommonUtils.CORE_PROPERTIES_FILE, "metadict.planning.cache.maximumSize", 256);
+
+    private final Cache<List<Dictionary>, QueryPlanTemplate> queryPlanTemplateCache = CacheBuilder.newBuilder()
+            .maximumSize(PLAN_CACHE_MAXIMUM_SIZE)
+            .build();
 
     /**
      * Calculate a query plan for the given {@link QueryRequest}. The provided {@link EngineRegistry} should be used
@@ -60,13 +74,26 @@ public class SimpleQueryPlanningStrategy implements QueryPlanningStrategy {
     @NotNull
     @Override
     public QueryPlan calculateQueryPlan(@NotNull QueryRequest queryRequest, @NotNull EngineRegistry engineRegistry) {
-        QueryPlan queryPlan = new QueryPlan();
+        List<Dictionary> dictionaries = ImmutableList.copyOf(queryRequest.getQueryDictionaries());
+        long registryVersion = engineRegistry.getRegistryVersion();
+
+        QueryPlanTemplate queryPlanTemplate = queryPlanTemplateCache.getIfPresent(dictionaries);
+        if (queryPlanTemplate == null || queryPlanTemplate.registryVersion != registryVersion || queryPlanTemplate.engineRegistry != engineRegistry) {
+            queryPlanTemplate = new QueryPlanTemplate(calculateQueryPlanTemplate(dictionaries, engineRegistry), engineRegistry, registryVersion);
+            queryPlanTemplateCache.put(dictionaries, queryPlanTemplate);
+        }
+
+        return bindQueryString(queryPlanTemplate.queryStepList, queryRequest.getQueryString());
+    }
+
+    @NotNull
+    private List<QueryStep> calculateQueryPlanTemplate(@NotNull List<Dictionary> dictionaries, @NotNull EngineRegistry engineRegistry) {
+        QueryPlanBuilder queryPlanBuilder = new QueryPlanBuilder(engineRegistry);
 
-        for (Dictionary dictionary : queryRequest.getQueryDictionaries()) {
+        for (Dictionary dictionary : dictionaries) {
             engineRegistry.getSearchEngineNamesByDictionary(dictionary).forEach(
-                    (s) -> queryPlan.addQueryStep(
+                    (s) -> queryPlanBuilder.addQueryStep(
                             new QueryStep()
-                                    .setQueryString(queryRequest.getQueryString())
                                     .setInputLanguage(dictionary.getInput())
                                     .setOutputLanguage(dictionary.getOutput())
                                     .setAllowBothWay(dictionary.isBidirectional())
@@ -75,6 +102,36 @@ public class SimpleQueryPlanningStrategy implements QueryPlanningStrategy {
                     ));
         }
 
+        return queryPlanBuilder.build().getQueryStepList();
+    }
+
+    @NotNull
+    private QueryPlan bindQueryString(@NotNull List<QueryStep> templateSteps, @NotNull String queryString) {
+        QueryPlan queryPlan = new QueryPlan();
+        for (QueryStep templateStep : templateSteps) {
+            queryPlan.addQueryStep(new QueryStep()
+                    .setInputLanguage(templateStep.getInputLanguage())
+                    .setOutputLanguage(templateStep.getOutputLanguage())
+                    .setAllowBothWay(templateStep.isAllowBothWay())
+                    .setSearchEngineName(templateStep.getSearchEngineName())
+                    .setSearchEngine(templateStep.getSearchEngine())
+                    .setQueryString(queryString));
+        }
         return queryPlan;
     }
+
+    private static class QueryPlanTemplate {
+
+        private final List<QueryStep> queryStepList;
+
+        private final EngineRegistry engineRegistry;
+
+        private final long registryVersion;
+
+        QueryPlanTemplate(List<QueryStep> queryStepList, EngineRegistry engineRegistry, long registryVersion) {
+            this.queryStepList = queryStepList;
+            this.engineRegistry = engineRegistry;
+            this.registryVersion = registryVersion;
+        }
+    }
 }
@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+
+/**
+ * An {@link EngineQueryResult} from a lower cache tier together with the time when it was originally produced. The
+ * timestamp is carried along when entries move between tiers, so that expiration is always based on the original
+ * execution.
+ */
+public final class StoredEngineQueryResult {
+
+    private final EngineQueryResult engineQueryResult;
+
+    private final long timestamp;
+
+    StoredEngineQueryResult(@NotNull EngineQueryResult engineQueryResult, long timestamp) {
+        this.engineQueryResult = engineQueryResult;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the stored result.
+     *
+     * @return the stored result.
+     */
+    @NotNull
+    public EngineQueryResult getEngineQueryResult() {
+        return engineQueryResult;
+    }
+
+    /**
+     * Returns the time in milliseconds since the epoch when the result was originally produced.
+     *
+     * @return the time when the result was originally produced.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+}
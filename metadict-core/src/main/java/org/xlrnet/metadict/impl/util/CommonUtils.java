@@ -24,22 +24,33 @@
 
 package org.xlrnet.metadict.impl.util;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Helper class with static utility methods.
  */
 public class CommonUtils {
 
+    /**
+     * Name of the properties file that contains the runtime configuration of the Metadict core.
+     */
+    public static final String CORE_PROPERTIES_FILE = "metadict.properties";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(CommonUtils.class);
 
+    /** Properties files that have already been loaded from the classpath. */
+    private static final Map<String, Properties> PROPERTIES_CACHE = new ConcurrentHashMap<>();
+
     /**
-     * Returns the value of a property in a given .properties-File
+     * Returns the value of a property in a given .properties-File. The file will only be read once.
      *
      * @param filename
      *         name of the properties file
@@ -48,19 +59,127 @@ public class CommonUtils {
      * @return the property value
      */
     public static String getProperty(String filename, String propertyName) {
-        String result = null;
+        return PROPERTIES_CACHE.computeIfAbsent(filename, CommonUtils::loadProperties).getProperty(propertyName);
+    }
+
+    /**
+     * Returns the value of a property in a given .properties-File. If a system property with the same name is set, the
+     * system property will be returned instead. If neither the system property nor the property in the file is set,
+     * the given default value will be returned.
+     *
+     * @param filename
+     *         name of the properties file
+     * @param propertyName
+     *         the property name whose value should be returned
+     * @param defaultValue
+     *         the value to return if the property is not set
+     * @return the property value
+     */
+    public static String getProperty(String filename, String propertyName, String defaultValue) {
+        String result = System.getProperty(propertyName);
+        if (result == null)
+            result = getProperty(filename, propertyName);
+        return result != null ? StringUtils.strip(result) : defaultValue;
+    }
+
+    /**
+     * Returns the boolean value of a property in a given .properties-File. See {@link #getProperty(String, String,
+     * String)} for more information.
+     *
+     * @param filename
+     *         name of the properties file
+     * @param propertyName
+     *         the property name whose value should be returned
+     * @param defaultValue
+     *         the value to return if the property is not set
+     * @return the property value
+     */
+    public static boolean getBooleanProperty(String filename, String propertyName, boolean defaultValue) {
+        return Boolean.parseBoolean(getProperty(filename, propertyName, Boolean.toString(defaultValue)));
+    }
+
+    /**
+     * Returns the integer value of a property in a given .properties-File. See {@link #getProperty(String, String,
+     * String)} for more information. If the property value is not a valid number or out of the range of an integer, the
+     * default value will be returned.
+     *
+     * @param filename
+     *         name of the properties file
+     * @param propertyName
+     *         the property name whose value should be returned
+     * @param defaultValue
+     *         the value to return if the property is not set or invalid
+     * @return the property value
+     */
+    public static int getIntProperty(String filename, String propertyName, int defaultValue) {
+        long value = getLongProperty(filename, propertyName, defaultValue);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            LOGGER.error("Value {} for property {} is out of range - using default {}", value, propertyName, defaultValue);
+            return defaultValue;
+        }
+        return (int) value;
+    }
+
+    /**
+     * Returns the long value of a property in a given .properties-File. See {@link #getProperty(String, String,
+     * String)} for more information. If the property value is not a valid number, the default value will be returned.
+     *
+     * @param filename
+     *         name of the properties file
+     * @param propertyName
+     *         the property name whose value should be returned
+     * @param defaultValue
+     *         the value to return if the property is not set or invalid
+     * @return the property value
+     */
+    public static long getLongProperty(String filename, String propertyName, long defaultValue) {
+        String value = getProperty(filename, propertyName, null);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            LOGGER.error("Invalid numeric value {} for property {} - using default {}", value, propertyName, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Returns the double value of a property in a given .properties-File. See {@link #getProperty(String, String,
+     * String)} for more information. If the property value is not a valid number, the default value will be returned.
+     *
+     * @param filename
+     *         name of the properties file
+     * @param propertyName
+     *         the property name whose value should be returned
+     * @param defaultValue
+     *         the value to return if the property is not set or invalid
+     * @return the property value
+     */
+    public static double getDoubleProperty(String filename, String propertyName, double defaultValue) {
+        String value = getProperty(filename, propertyName, null);
+        if (value == null)
+            return defaultValue;
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            LOGGER.error("Invalid numeric value {} for property {} - using default {}", value, propertyName, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    private static Properties loadProperties(String filename) {
         Properties properties = new Properties();
         try (InputStream propertiesStream = CommonUtils.class.getClassLoader().getResourceAsStream(filename)) {
             if (propertiesStream != null) {
                 properties.load(propertiesStream);
-                result = properties.getProperty(propertyName);
             } else {
                 LOGGER.error("File {} could not be found", filename);
             }
         } catch (IOException e) {
-            LOGGER.error("Unable to read property field {} ({}: {})", propertyName, e.getClass().getSimpleName(), e.getMessage());
+            LOGGER.error("Unable to read properties file {} ({}: {})", filename, e.getClass().getSimpleName(), e.getMessage());
         }
-        return result;
+        return properties;
     }
 
 }
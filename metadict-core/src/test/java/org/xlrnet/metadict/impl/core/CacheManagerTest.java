@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.impl.query.QueryManager;
+import org.xlrnet.metadict.impl.strategies.QueryStepCache;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link CacheManager} without CDI.
+ */
+public class CacheManagerTest {
+
+    private CacheManager cacheManager;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheManager = new CacheManager();
+        cacheManager.queryStepCache = Mockito.mock(QueryStepCache.class);
+        cacheManager.queryManager = Mockito.mock(QueryManager.class);
+    }
+
+    @Test
+    public void testInvalidateEngine_clearsAllResponses() throws Exception {
+        when(cacheManager.queryStepCache.invalidateEngine("engine")).thenReturn(3);
+        when(cacheManager.queryManager.invalidateAllResponses()).thenReturn(2);
+
+        assertEquals(5, cacheManager.invalidateEngine("engine"));
+        verify(cacheManager.queryManager).invalidateAllResponses();
+    }
+
+    @Test
+    public void testInvalidateQuery_clearsResponsesOfQuery() throws Exception {
+        when(cacheManager.queryStepCache.invalidateQuery("Haus")).thenReturn(3);
+        when(cacheManager.queryManager.invalidateResponses("Haus")).thenReturn(1);
+
+        assertEquals(4, cacheManager.invalidateQuery("Haus"));
+        verify(cacheManager.queryManager, never()).invalidateAllResponses();
+    }
+
+    @Test
+    public void testInvalidateAll_clearsBothCaches() throws Exception {
+        when(cacheManager.queryStepCache.invalidateAll()).thenReturn(3);
+        when(cacheManager.queryManager.invalidateAllResponses()).thenReturn(2);
+
+        assertEquals(5, cacheManager.invalidateAll());
+        verify(cacheManager.queryStepCache).invalidateAll();
+        verify(cacheManager.queryManager).invalidateAllResponses();
+    }
+}
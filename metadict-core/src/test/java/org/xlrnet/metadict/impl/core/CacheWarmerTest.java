@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.language.Dictionary;
+import org.xlrnet.metadict.impl.query.QueryRequest;
+import org.xlrnet.metadict.impl.query.QueryRequestBuilder;
+import org.xlrnet.metadict.impl.query.QueryStep;
+import org.xlrnet.metadict.impl.strategies.QueryStepCache;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link CacheWarmer}.
+ */
+public class CacheWarmerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MetadictCore metadictCore;
+
+    private EngineRegistry engineRegistry;
+
+    private QueryStepCache queryStepCache;
+
+    @Before
+    public void setUp() throws Exception {
+        metadictCore = Mockito.mock(MetadictCore.class);
+        when(metadictCore.createNewQueryRequestBuilder()).thenAnswer(invocation -> new QueryRequestBuilder(metadictCore) {
+        });
+
+        engineRegistry = Mockito.mock(EngineRegistry.class);
+        when(engineRegistry.getSearchEngineNamesByDictionary(any(Dictionary.class))).thenReturn(ImmutableList.of("engine"));
+
+        queryStepCache = Mockito.mock(QueryStepCache.class);
+    }
+
+    @Test
+    public void testWarmUp_parsesQueryLog() throws Exception {
+        Path queryLog = writeQueryLog("# comment", "", "de-en\tHaus", "malformed", "xx-yy\tFoo", "de-en,de-no_ny\t Maus ", "de-en\t ");
+        CacheWarmer cacheWarmer = new CacheWarmer(metadictCore, engineRegistry, queryStepCache, 1, 1000);
+
+        assertEquals(2, cacheWarmer.warmUp(queryLog, 100, 10));
+
+        ArgumentCaptor<QueryRequest> captor = ArgumentCaptor.forClass(QueryRequest.class);
+        verify(metadictCore, times(2)).executeRequest(captor.capture());
+        List<QueryRequest> queryRequests = captor.getAllValues();
+        assertEquals(Arrays.asList("Haus", "Maus"), queryRequests.stream().map(QueryRequest::getQueryString).sorted().collect(Collectors.toList()));
+        QueryRequest mausRequest = queryRequests.stream().filter(r -> "Maus".equals(r.getQueryString())).findFirst().get();
+        assertEquals(Arrays.asList(Dictionary.fromQueryString("de-en", true), Dictionary.fromQueryString("de-no_ny", true)), mausRequest.getQueryDictionaries());
+    }
+
+    @Test
+    public void testWarmUp_maxQueries() throws Exception {
+        Path queryLog = writeQueryLog("de-en\tHaus", "de-en\tMaus", "de-en\tLaus");
+        CacheWarmer cacheWarmer = new CacheWarmer(metadictCore, engineRegistry, queryStepCache, 1, 1000);
+
+        assertEquals(2, cacheWarmer.warmUp(queryLog, 2, 10));
+        verify(metadictCore, times(2)).executeRequest(any(QueryRequest.class));
+    }
+
+    @Test
+    public void testWarmUp_cachedEnginesAreNotThrottled() throws Exception {
+        when(engineRegistry.getSearchEngineNamesByDictionary(any(Dictionary.class))).thenReturn(ImmutableList.of("cached", "uncached"));
+        when(queryStepCache.isCached(any(QueryStep.class))).thenAnswer(invocation -> "cached".equals(((QueryStep) invocation.getArguments()[0]).getSearchEngineName()));
+        Path queryLog = writeQueryLog("de-en\tHaus", "de-en\tMaus");
+        CacheWarmer cacheWarmer = new CacheWarmer(metadictCore, engineRegistry, queryStepCache, 1, 1000);
+
+        assertEquals(2, cacheWarmer.warmUp(queryLog, 100, 10));
+        assertEquals(1, cacheWarmer.rateLimiters.size());
+        assertTrue(cacheWarmer.rateLimiters.containsKey("uncached"));
+    }
+
+    @Test
+    public void testWarmUp_rateLimit() throws Exception {
+        when(queryStepCache.isCached(any(QueryStep.class))).thenAnswer(invocation -> "Cached".equals(((QueryStep) invocation.getArguments()[0]).getQueryString()));
+        Path queryLog = writeQueryLog("de-en\tHaus", "de-en\tCached", "de-en\tMaus", "de-en\tLaus");
+        CacheWarmer cacheWarmer = new CacheWarmer(metadictCore, engineRegistry, queryStepCache, 1, 2);
+
+        long startTime = System.currentTimeMillis();
+        assertEquals(4, cacheWarmer.warmUp(queryLog, 100, 10));
+        long duration = System.currentTimeMillis() - startTime;
+
+        // 3 uncached queries with 2 permits per second: the first is immediate, each further one waits 500 ms - the
+        // cached query must not wait at all
+        assertTrue("Warm-up took only " + duration + " ms", duration >= 900);
+        assertTrue("Warm-up took " + duration + " ms", duration < 1400);
+    }
+
+    private Path writeQueryLog(String... lines) throws Exception {
+        Path queryLog = temporaryFolder.newFile().toPath();
+        Files.write(queryLog, Arrays.asList(lines), StandardCharsets.UTF_8);
+        return queryLog;
+    }
+}
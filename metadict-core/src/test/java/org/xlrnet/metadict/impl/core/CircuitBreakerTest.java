@@ -0,0 +1,176 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import com.google.common.base.Ticker;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
+import org.xlrnet.metadict.impl.exception.CircuitBreakerOpenException;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link CircuitBreaker} and {@link CircuitBreakerSearchEngine}.
+ */
+public class CircuitBreakerTest {
+
+    private static final int FAILURE_THRESHOLD = 3;
+
+    private static final long OPEN_DURATION = 1000;
+
+    private final FakeTicker ticker = new FakeTicker();
+
+    private CircuitBreaker circuitBreaker;
+
+    private SearchEngine searchEngineMock;
+
+    private SearchEngine protectedEngine;
+
+    @Before
+    public void setUp() throws Exception {
+        circuitBreaker = new CircuitBreaker("test", FAILURE_THRESHOLD, OPEN_DURATION, ticker);
+        searchEngineMock = Mockito.mock(SearchEngine.class);
+        protectedEngine = new CircuitBreakerSearchEngine(searchEngineMock, "test", circuitBreaker);
+    }
+
+    @Test
+    public void testOpensAfterConsecutiveFailures() throws Exception {
+        when(searchEngineMock.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean()))
+                .thenThrow(new IOException("timeout"));
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+            executeIgnoringFailure();
+        }
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+
+        try {
+            protectedEngine.executeSearchQuery("test", Language.GERMAN, Language.ENGLISH, false);
+            fail("Open circuit breaker should reject the call");
+        } catch (CircuitBreakerOpenException expected) {
+            // Expected
+        }
+        verify(searchEngineMock, times(FAILURE_THRESHOLD)).executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean());
+        assertEquals(1, circuitBreaker.getRejectedCalls());
+    }
+
+    @Test
+    public void testSuccessResetsFailures() throws Exception {
+        for (int i = 0; i < FAILURE_THRESHOLD - 1; i++) {
+            circuitBreaker.recordFailure();
+        }
+        circuitBreaker.recordSuccess();
+        circuitBreaker.recordFailure();
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testHalfOpenProbe() throws Exception {
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            circuitBreaker.recordFailure();
+        }
+        assertFalse(circuitBreaker.tryAcquirePermission());
+
+        ticker.advance(OPEN_DURATION);
+        assertTrue("Breaker should permit a probe after the open duration", circuitBreaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertFalse("Breaker should permit only one probe", circuitBreaker.tryAcquirePermission());
+
+        // Failed probe opens the breaker again
+        circuitBreaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, circuitBreaker.getState());
+        assertFalse(circuitBreaker.tryAcquirePermission());
+
+        // Successful probe closes the breaker
+        ticker.advance(OPEN_DURATION);
+        when(searchEngineMock.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean()))
+                .thenReturn(EngineQueryResultBuilder.EMPTY_QUERY_RESULT);
+        protectedEngine.executeSearchQuery("test", Language.GERMAN, Language.ENGLISH, false);
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testAbortedCallsAreNoFailures() throws Exception {
+        when(searchEngineMock.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean()))
+                .thenThrow(new InterruptedException())
+                .thenThrow(new CancellationException());
+
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            executeIgnoringFailure();
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    @Test
+    public void testAbortedProbeReleasesPermission() throws Exception {
+        for (int i = 0; i < FAILURE_THRESHOLD; i++) {
+            circuitBreaker.recordFailure();
+        }
+        ticker.advance(OPEN_DURATION);
+        when(searchEngineMock.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean()))
+                .thenThrow(new InterruptedException());
+
+        executeIgnoringFailure();
+
+        assertEquals(CircuitBreaker.State.HALF_OPEN, circuitBreaker.getState());
+        assertTrue("Aborted probe should allow another probe", circuitBreaker.tryAcquirePermission());
+    }
+
+    private void executeIgnoringFailure() {
+        try {
+            protectedEngine.executeSearchQuery("test", Language.GERMAN, Language.ENGLISH, false);
+        } catch (Exception e) {
+            // Expected
+        }
+    }
+
+    private static class FakeTicker extends Ticker {
+
+        private long nanos;
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long millis) {
+            nanos += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+}
@@ -27,6 +27,7 @@ package org.xlrnet.metadict.impl.core;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.xlrnet.metadict.api.engine.EngineStatusProvider;
 import org.xlrnet.metadict.api.engine.SearchEngine;
 import org.xlrnet.metadict.api.engine.SearchProvider;
 import org.xlrnet.metadict.api.language.Dictionary;
@@ -35,9 +36,12 @@ import org.xlrnet.metadict.api.metadata.EngineDescription;
 import org.xlrnet.metadict.api.metadata.FeatureSet;
 import org.xlrnet.metadict.api.metadata.FeatureSetBuilder;
 
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.RETURNS_SMART_NULLS;
 import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
 
 /**
  * Test logic for {@link EngineRegistry} without CDI.
@@ -95,4 +99,20 @@ public class EngineRegistryTest {
         engineRegistry.registerSearchProvider(searchProviderMock);
         assertEquals(1, engineRegistry.countRegisteredEngines());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGetEngineStatus() throws Exception {
+        FeatureSet featureSet = new FeatureSetBuilder().addSupportedDictionary(Dictionary.fromLanguages(Language.GERMAN, Language.ENGLISH, true)).build();
+        SearchEngine searchEngine = Mockito.mock(SearchEngine.class, withSettings().extraInterfaces(EngineStatusProvider.class));
+        when(((EngineStatusProvider) searchEngine).getEngineStatus()).thenReturn("status");
+        when(searchProviderMock.getEngineDescription()).thenReturn(Mockito.mock(EngineDescription.class, RETURNS_SMART_NULLS));
+        when(searchProviderMock.getFeatureSet()).thenReturn(featureSet);
+        when(searchProviderMock.newEngineInstance()).thenReturn(searchEngine);
+
+        engineRegistry.registerSearchProvider(searchProviderMock);
+        Map<String, Object> engineStatus = engineRegistry.getEngineStatus();
+
+        assertEquals(1, engineStatus.size());
+        assertEquals("status", engineStatus.get(searchEngine.getClass().getCanonicalName()));
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.core;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.engine.AsyncSearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link MonitoredAsyncSearchEngine}.
+ */
+public class MonitoredAsyncSearchEngineTest {
+
+    private AsyncSearchEngine searchEngineMock;
+
+    private EngineStatistics engineStatistics;
+
+    private MonitoredAsyncSearchEngine monitoredEngine;
+
+    @Before
+    public void setUp() throws Exception {
+        searchEngineMock = Mockito.mock(AsyncSearchEngine.class);
+        engineStatistics = new EngineStatistics(16, 60000);
+        monitoredEngine = new MonitoredAsyncSearchEngine(searchEngineMock, engineStatistics);
+    }
+
+    @Test
+    public void testExecuteSearchQueryAsync_recordsSuccess() throws Exception {
+        CompletableFuture<EngineQueryResult> future = new CompletableFuture<>();
+        when(searchEngineMock.executeSearchQueryAsync(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenReturn(future);
+
+        CompletionStage<EngineQueryResult> stage = monitoredEngine.executeSearchQueryAsync("test", Language.GERMAN, Language.ENGLISH, false);
+        assertEquals("Query must be recorded when it completed", 0, engineStatistics.getTotalQueries());
+
+        future.complete(new EngineQueryResultBuilder().build());
+        stage.toCompletableFuture().get();
+        assertEquals(1, engineStatistics.getTotalQueries());
+        assertEquals(0, engineStatistics.getTotalFailures());
+    }
+
+    @Test
+    public void testExecuteSearchQueryAsync_recordsSynchronousException() throws Exception {
+        when(searchEngineMock.executeSearchQueryAsync(anyString(), any(Language.class), any(Language.class), anyBoolean()))
+                .thenThrow(new IllegalStateException("broken"));
+
+        try {
+            monitoredEngine.executeSearchQueryAsync("test", Language.GERMAN, Language.ENGLISH, false);
+            fail("Exception of the engine should be propagated");
+        } catch (IllegalStateException expected) {
+            // Expected
+        }
+
+        assertEquals(1, engineStatistics.getTotalQueries());
+        assertEquals(1, engineStatistics.getTotalFailures());
+    }
+
+    @Test
+    public void testExecuteSearchQueryAsync_recordsNullStage() throws Exception {
+        when(searchEngineMock.executeSearchQueryAsync(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenReturn(null);
+
+        assertNull(monitoredEngine.executeSearchQueryAsync("test", Language.GERMAN, Language.ENGLISH, false));
+
+        assertEquals(1, engineStatistics.getTotalQueries());
+        assertEquals(1, engineStatistics.getTotalFailures());
+    }
+}
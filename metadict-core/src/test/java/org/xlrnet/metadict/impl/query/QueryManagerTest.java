@@ -0,0 +1,193 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.query;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.language.Dictionary;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
+import org.xlrnet.metadict.impl.core.EngineRegistry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link QueryManager} without CDI.
+ */
+public class QueryManagerTest {
+
+    private static final QueryStep QUERY_STEP = new QueryStep()
+            .setQueryString("Haus")
+            .setInputLanguage(Language.GERMAN)
+            .setOutputLanguage(Language.ENGLISH)
+            .setSearchEngineName("engine");
+
+    private QueryManager queryManager;
+
+    @Before
+    public void setUp() throws Exception {
+        queryManager = createQueryManager(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        queryManager.shutdown();
+    }
+
+    @Test
+    public void testExecuteQuery_responseCacheHitOnNormalizedQuery() throws Exception {
+        queryManager.executeQuery(createQueryRequest("Haus"));
+        queryManager.executeQuery(createQueryRequest("  haus "));
+
+        verify(queryManager.queryPlanExecutionStrategy, times(1)).executeQueryPlan(any(QueryPlan.class));
+    }
+
+    @Test
+    public void testExecuteQuery_responseCacheHitHasCurrentRequestString() throws Exception {
+        QueryResponse firstResponse = queryManager.executeQuery(createQueryRequest("Haus"));
+        QueryResponse cachedResponse = queryManager.executeQuery(createQueryRequest("HAUS"));
+
+        assertEquals("Haus", firstResponse.getRequestString());
+        assertEquals("HAUS", cachedResponse.getRequestString());
+        verify(queryManager.queryPlanExecutionStrategy, times(1)).executeQueryPlan(any(QueryPlan.class));
+    }
+
+    @Test
+    public void testExecuteQuery_responseWithFailedStepIsNotCached() throws Exception {
+        when(queryManager.queryPlanExecutionStrategy.executeQueryPlan(any(QueryPlan.class)))
+                .thenReturn(Collections.singletonList(QueryUtil.buildFailedQueryStepResult(QUERY_STEP, "failed", 0)));
+
+        queryManager.executeQuery(createQueryRequest("Haus"));
+        queryManager.executeQuery(createQueryRequest("Haus"));
+
+        verify(queryManager.queryPlanExecutionStrategy, times(2)).executeQueryPlan(any(QueryPlan.class));
+    }
+
+    @Test
+    public void testInvalidateResponses_matchesNormalizedQuery() throws Exception {
+        queryManager.executeQuery(createQueryRequest("Haus"));
+        queryManager.executeQuery(createQueryRequest("Maus"));
+
+        assertEquals(1, queryManager.invalidateResponses(" HAUS "));
+        queryManager.executeQuery(createQueryRequest("Haus"));
+        queryManager.executeQuery(createQueryRequest("Maus"));
+
+        verify(queryManager.queryPlanExecutionStrategy, times(3)).executeQueryPlan(any(QueryPlan.class));
+    }
+
+    @Test
+    public void testInvalidateAllResponses() throws Exception {
+        queryManager.executeQuery(createQueryRequest("Haus"));
+        queryManager.executeQuery(createQueryRequest("Maus"));
+
+        assertEquals(2, queryManager.invalidateAllResponses());
+        queryManager.executeQuery(createQueryRequest("Haus"));
+
+        verify(queryManager.queryPlanExecutionStrategy, times(3)).executeQueryPlan(any(QueryPlan.class));
+    }
+
+    @Test
+    public void testExecuteBatchQuery_deduplicatesRequests() throws Exception {
+        // Without the response cache, only the deduplication can prevent the second execution
+        queryManager.shutdown();
+        queryManager = createQueryManager(false);
+
+        List<CompletableFuture<QueryResponse>> queryResponses = queryManager.executeBatchQuery(Arrays.asList(
+                createQueryRequest("Haus"), createQueryRequest("Maus"), createQueryRequest(" HAUS ")));
+
+        assertEquals(3, queryResponses.size());
+        assertEquals("Haus", queryResponses.get(0).get().getRequestString());
+        assertEquals("Maus", queryResponses.get(1).get().getRequestString());
+        assertEquals(" HAUS ", queryResponses.get(2).get().getRequestString());
+        assertSame(queryResponses.get(0).get().getGroupedResults().iterator().next(), queryResponses.get(2).get().getGroupedResults().iterator().next());
+        verify(queryManager.queryPlanExecutionStrategy, times(2)).executeQueryPlan(any(QueryPlan.class));
+    }
+
+    @Test
+    public void testExecuteBatchQuery_propagatesFailure() throws Exception {
+        when(queryManager.queryPlanningStrategy.calculateQueryPlan(argThat(hasQueryString("Fail")), any(EngineRegistry.class)))
+                .thenThrow(new IllegalStateException("failed"));
+
+        List<CompletableFuture<QueryResponse>> queryResponses = queryManager.executeBatchQuery(Arrays.asList(
+                createQueryRequest("Fail"), createQueryRequest("Haus"), createQueryRequest("Fail")));
+
+        assertEquals("Haus", queryResponses.get(1).get().getRequestString());
+        assertFailed(queryResponses.get(0));
+        assertFailed(queryResponses.get(2));
+    }
+
+    private QueryManager createQueryManager(boolean responseCacheEnabled) {
+        QueryManager queryManager = new QueryManager();
+        queryManager.setResponseCacheEnabled(responseCacheEnabled);
+        queryManager.queryPlanningStrategy = Mockito.mock(QueryPlanningStrategy.class);
+        queryManager.queryPlanExecutionStrategy = Mockito.mock(QueryPlanExecutionStrategy.class);
+        when(queryManager.queryPlanningStrategy.calculateQueryPlan(any(QueryRequest.class), any(EngineRegistry.class)))
+                .thenAnswer(invocation -> new QueryPlan().addQueryStep(QUERY_STEP));
+        when(queryManager.queryPlanExecutionStrategy.executeQueryPlan(any(QueryPlan.class)))
+                .thenReturn(Collections.singletonList(new QueryStepResultBuilder()
+                        .setQueryStep(QUERY_STEP)
+                        .setEngineQueryResult(EngineQueryResultBuilder.EMPTY_QUERY_RESULT)
+                        .build()));
+        queryManager.initialize();
+        return queryManager;
+    }
+
+    private QueryRequest createQueryRequest(String queryString) {
+        return new QueryRequestBuilder(null)
+                .setQueryString(queryString)
+                .addQueryDictionary(Dictionary.fromLanguages(Language.GERMAN, Language.ENGLISH, true))
+                .build();
+    }
+
+    private void assertFailed(CompletableFuture<QueryResponse> queryResponse) throws Exception {
+        try {
+            queryResponse.get();
+            fail("Expected the query to fail");
+        } catch (ExecutionException e) {
+            assertTrue(queryResponse.isCompletedExceptionally());
+        }
+    }
+
+    private static ArgumentMatcher<QueryRequest> hasQueryString(String queryString) {
+        return new ArgumentMatcher<QueryRequest>() {
+            @Override
+            public boolean matches(Object argument) {
+                return argument != null && queryString.equals(((QueryRequest) argument).getQueryString());
+            }
+        };
+    }
+}
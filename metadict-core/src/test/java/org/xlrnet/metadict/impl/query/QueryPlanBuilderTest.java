@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.query;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.language.Dictionary;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.impl.core.EngineRegistry;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link QueryPlanBuilder}.
+ */
+public class QueryPlanBuilderTest {
+
+    private EngineRegistry engineRegistry;
+
+    @Before
+    public void setUp() throws Exception {
+        engineRegistry = Mockito.mock(EngineRegistry.class);
+        when(engineRegistry.getSearchEngineNamesByDictionary(Dictionary.fromLanguages(Language.GERMAN, Language.ENGLISH, true)))
+                .thenReturn(Lists.newArrayList("bidirectional"));
+        when(engineRegistry.getSearchEngineNamesByDictionary(Dictionary.fromLanguages(Language.ENGLISH, Language.GERMAN, true)))
+                .thenReturn(Lists.newArrayList("bidirectional"));
+    }
+
+    @Test
+    public void testAddQueryStep_mergeBidirectional() throws Exception {
+        List<QueryStep> queryStepList = new QueryPlanBuilder(engineRegistry)
+                .addQueryStep(createQueryStep("bidirectional", Language.GERMAN, Language.ENGLISH, false))
+                .addQueryStep(createQueryStep("bidirectional", Language.ENGLISH, Language.GERMAN, true))
+                .addQueryStep(createQueryStep("bidirectional", Language.GERMAN, Language.ENGLISH, true))
+                .build().getQueryStepList();
+
+        assertEquals(1, queryStepList.size());
+        assertEquals(Language.GERMAN, queryStepList.get(0).getInputLanguage());
+        assertTrue(queryStepList.get(0).isAllowBothWay());
+    }
+
+    @Test
+    public void testAddQueryStep_keepUnidirectional() throws Exception {
+        List<QueryStep> queryStepList = new QueryPlanBuilder(engineRegistry)
+                .addQueryStep(createQueryStep("unidirectional", Language.GERMAN, Language.ENGLISH, false))
+                .addQueryStep(createQueryStep("unidirectional", Language.ENGLISH, Language.GERMAN, false))
+                .addQueryStep(createQueryStep("unidirectional", Language.GERMAN, Language.ENGLISH, false))
+                .addQueryStep(createQueryStep("bidirectional", Language.GERMAN, Language.ENGLISH, false))
+                .build().getQueryStepList();
+
+        assertEquals(3, queryStepList.size());
+        assertEquals(Language.ENGLISH, queryStepList.get(1).getInputLanguage());
+        assertEquals("bidirectional", queryStepList.get(2).getSearchEngineName());
+    }
+
+    private QueryStep createQueryStep(String engineName, Language inputLanguage, Language outputLanguage, boolean allowBothWay) {
+        return new QueryStep()
+                .setInputLanguage(inputLanguage)
+                .setOutputLanguage(outputLanguage)
+                .setQueryString("Haus")
+                .setAllowBothWay(allowBothWay)
+                .setSearchEngineName(engineName);
+    }
+}
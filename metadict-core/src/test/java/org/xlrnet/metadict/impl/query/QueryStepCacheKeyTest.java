@@ -0,0 +1,68 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.query;
+
+import org.junit.Test;
+import org.xlrnet.metadict.api.language.Language;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+/**
+ * Tests for {@link QueryStepCacheKey}.
+ */
+public class QueryStepCacheKeyTest {
+
+    @Test
+    public void testOf_normalizedQueryString() throws Exception {
+        QueryStepCacheKey first = QueryStepCacheKey.of("engine", "Haus", Language.GERMAN, Language.ENGLISH, false);
+        QueryStepCacheKey second = QueryStepCacheKey.of("engine", " haus ", Language.GERMAN, Language.ENGLISH, false);
+        QueryStepCacheKey third = QueryStepCacheKey.of("engine", "HAUS", Language.GERMAN, Language.ENGLISH, false);
+
+        assertEquals(first, second);
+        assertEquals(first, third);
+        assertEquals(first.hashCode(), third.hashCode());
+        assertEquals("haus", first.getQueryString());
+    }
+
+    @Test
+    public void testOf_differentDirection() throws Exception {
+        QueryStepCacheKey first = QueryStepCacheKey.of("engine", "Haus", Language.GERMAN, Language.ENGLISH, false);
+        QueryStepCacheKey second = QueryStepCacheKey.of("engine", "Haus", Language.ENGLISH, Language.GERMAN, false);
+
+        assertNotEquals(first, second);
+    }
+
+    @Test
+    public void testFromQueryStep_ignoresEngineInstance() throws Exception {
+        QueryStep queryStep = new QueryStep()
+                .setInputLanguage(Language.GERMAN)
+                .setOutputLanguage(Language.ENGLISH)
+                .setSearchEngineName("engine")
+                .setQueryString("Haus  am See");
+
+        assertEquals(QueryStepCacheKey.of("engine", "haus am see", Language.GERMAN, Language.ENGLISH, false), QueryStepCacheKey.fromQueryStep(queryStep));
+    }
+}
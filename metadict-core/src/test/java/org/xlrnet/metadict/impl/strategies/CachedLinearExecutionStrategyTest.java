@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
+import org.xlrnet.metadict.impl.query.QueryPlan;
+import org.xlrnet.metadict.impl.query.QueryStep;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link CachedLinearExecutionStrategy} without CDI.
+ */
+public class CachedLinearExecutionStrategyTest {
+
+    private static final int CONCURRENT_REQUESTS = 8;
+
+    @Test
+    public void testExecuteQueryPlan_concurrentMissesShareExecution() throws Exception {
+        SearchEngine engine = Mockito.mock(SearchEngine.class);
+        when(engine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return new EngineQueryResultBuilder().build();
+        });
+        QueryPlan queryPlan = new QueryPlan().addQueryStep(new QueryStep()
+                .setQueryString("singleflight")
+                .setInputLanguage(Language.GERMAN)
+                .setOutputLanguage(Language.ENGLISH)
+                .setSearchEngineName(engine.getClass().getCanonicalName())
+                .setSearchEngine(engine));
+
+        CachedLinearExecutionStrategy strategy = new CachedLinearExecutionStrategy();
+        strategy.queryStepCache = new QueryStepCache();
+        strategy.queryStepCache.initialize();
+        ExecutorService executorService = Executors.newFixedThreadPool(CONCURRENT_REQUESTS);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int i = 0; i < CONCURRENT_REQUESTS; i++) {
+            futures.add(executorService.submit(() -> {
+                startLatch.await();
+                return strategy.executeQueryPlan(queryPlan);
+            }));
+        }
+        startLatch.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        verify(engine, times(1)).executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean());
+    }
+}
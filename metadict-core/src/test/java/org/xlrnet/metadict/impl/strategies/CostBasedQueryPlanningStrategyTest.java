@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.language.Dictionary;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.impl.core.EngineRegistry;
+import org.xlrnet.metadict.impl.core.EngineStatistics;
+import org.xlrnet.metadict.impl.query.QueryPlan;
+import org.xlrnet.metadict.impl.query.QueryRequest;
+import org.xlrnet.metadict.impl.query.QueryStep;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link CostBasedQueryPlanningStrategy} without CDI.
+ */
+public class CostBasedQueryPlanningStrategyTest {
+
+    private static final Dictionary GERMAN_ENGLISH = Dictionary.fromLanguages(Language.GERMAN, Language.ENGLISH, false);
+
+    private static final Dictionary GERMAN_NORWEGIAN = Dictionary.fromLanguages(Language.GERMAN, Language.NORWEGIAN_NYNORSK, false);
+
+    private CostBasedQueryPlanningStrategy strategy;
+
+    private EngineRegistry engineRegistry;
+
+    private EngineStatistics fastStatistics;
+
+    private EngineStatistics slowStatistics;
+
+    @Before
+    public void setUp() throws Exception {
+        strategy = new CostBasedQueryPlanningStrategy();
+        engineRegistry = Mockito.mock(EngineRegistry.class);
+        fastStatistics = new EngineStatistics(256, 60000);
+        slowStatistics = new EngineStatistics(256, 60000);
+
+        when(engineRegistry.getSearchEngineNamesByDictionary(GERMAN_ENGLISH)).thenReturn(Lists.newArrayList("slow", "fast"));
+        when(engineRegistry.getSearchEngineNamesByDictionary(GERMAN_NORWEGIAN)).thenReturn(Lists.newArrayList("slow"));
+        when(engineRegistry.getEngineStatisticsByName("fast")).thenReturn(fastStatistics);
+        when(engineRegistry.getEngineStatisticsByName("slow")).thenReturn(slowStatistics);
+        when(engineRegistry.getEngineByName("fast")).thenReturn(Mockito.mock(SearchEngine.class));
+        when(engineRegistry.getEngineByName("slow")).thenReturn(Mockito.mock(SearchEngine.class));
+    }
+
+    @Test
+    public void testCalculateQueryPlan_noStatistics() throws Exception {
+        QueryPlan queryPlan = strategy.calculateQueryPlan(createQueryRequest(GERMAN_ENGLISH), engineRegistry);
+
+        assertEquals(2, queryPlan.getQueryStepList().size());
+    }
+
+    @Test
+    public void testCalculateQueryPlan_skipDegradedEngine() throws Exception {
+        recordSamples(fastStatistics, 100, false);
+        recordSamples(slowStatistics, 10000, false);
+
+        List<QueryStep> queryStepList = strategy.calculateQueryPlan(createQueryRequest(GERMAN_ENGLISH), engineRegistry).getQueryStepList();
+
+        assertEquals(1, queryStepList.size());
+        assertEquals("fast", queryStepList.get(0).getSearchEngineName());
+    }
+
+    @Test
+    public void testCalculateQueryPlan_skipFailingEngine() throws Exception {
+        recordSamples(fastStatistics, 100, true);
+        recordSamples(slowStatistics, 100, false);
+
+        List<QueryStep> queryStepList = strategy.calculateQueryPlan(createQueryRequest(GERMAN_ENGLISH), engineRegistry).getQueryStepList();
+
+        assertEquals(1, queryStepList.size());
+        assertEquals("slow", queryStepList.get(0).getSearchEngineName());
+    }
+
+    @Test
+    public void testCalculateQueryPlan_keepDegradedEngineWithoutAlternative() throws Exception {
+        recordSamples(fastStatistics, 100, false);
+        recordSamples(slowStatistics, 10000, false);
+
+        List<QueryStep> queryStepList = strategy.calculateQueryPlan(createQueryRequest(GERMAN_ENGLISH, GERMAN_NORWEGIAN), engineRegistry).getQueryStepList();
+
+        assertEquals(2, queryStepList.size());
+        // Slowest step should be scheduled first
+        assertEquals("slow", queryStepList.get(0).getSearchEngineName());
+        assertEquals(Language.NORWEGIAN_NYNORSK, queryStepList.get(0).getOutputLanguage());
+        assertEquals("fast", queryStepList.get(1).getSearchEngineName());
+    }
+
+    private QueryRequest createQueryRequest(Dictionary... dictionaries) {
+        QueryRequest queryRequest = Mockito.mock(QueryRequest.class);
+        when(queryRequest.getQueryString()).thenReturn("Haus");
+        when(queryRequest.getQueryDictionaries()).thenReturn(Lists.newArrayList(dictionaries));
+        return queryRequest;
+    }
+
+    private void recordSamples(EngineStatistics engineStatistics, long latency, boolean failed) {
+        for (int i = 0; i < 50; i++) {
+            engineStatistics.record(latency, failed);
+        }
+    }
+}
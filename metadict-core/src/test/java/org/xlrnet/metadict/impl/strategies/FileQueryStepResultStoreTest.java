@@ -0,0 +1,182 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xlrnet.metadict.api.language.GrammaticalGender;
+import org.xlrnet.metadict.api.language.GrammaticalNumber;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.*;
+import org.xlrnet.metadict.impl.query.QueryStepCacheKey;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link FileQueryStepResultStore} and {@link EngineQueryResultCodec}.
+ */
+public class FileQueryStepResultStoreTest {
+
+    private static final QueryStepCacheKey CACHE_KEY = QueryStepCacheKey.of("engine", "Haus", Language.GERMAN, Language.ENGLISH, true);
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndGet_afterReopen() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("cache.dat");
+        EngineQueryResult result = new EngineQueryResultBuilder()
+                .addEntry(new DictionaryEntryBuilder()
+                        .setEntryType(EntryType.NOUN)
+                        .setInputObject(new DictionaryObjectBuilder()
+                                .setLanguage(Language.GERMAN)
+                                .setGeneralForm("Haus")
+                                .setGrammaticalGender(GrammaticalGender.NEUTER)
+                                .setAdditionalForm(GrammaticalNumber.PLURAL, "Häuser")
+                                .build())
+                        .setOutputObject(new DictionaryObjectBuilder()
+                                .setLanguage(Language.ENGLISH)
+                                .setGeneralForm("house")
+                                .setDomain("archit.")
+                                .build())
+                        .build())
+                .addExternalContent(new ExternalContentBuilder()
+                        .setTitle("Haus")
+                        .setLink(new URL("http://example.com/haus"))
+                        .build())
+                .addSimilarRecommendation(new DictionaryObjectBuilder().setLanguage(Language.GERMAN).setGeneralForm("Maus").build())
+                .build();
+
+        try (FileQueryStepResultStore store = new FileQueryStepResultStore(file, 1024 * 1024, 0)) {
+            store.put(CACHE_KEY, result);
+        }
+
+        EngineQueryResult restored;
+        try (FileQueryStepResultStore store = new FileQueryStepResultStore(file, 1024 * 1024, 0)) {
+            restored = store.get(QueryStepCacheKey.of("engine", "haus", Language.GERMAN, Language.ENGLISH, true));
+        }
+
+        assertNotNull(restored);
+        DictionaryEntry entry = restored.getEntries().get(0);
+        assertEquals(EntryType.NOUN, entry.getEntryType());
+        assertEquals("Haus", entry.getInput().getGeneralForm());
+        assertEquals(GrammaticalGender.NEUTER, entry.getInput().getGrammaticalGender());
+        assertEquals("Häuser", entry.getInput().getAdditionalForms().get(GrammaticalNumber.PLURAL));
+        assertEquals(Language.ENGLISH, entry.getOutput().getLanguage());
+        assertEquals("archit.", entry.getOutput().getDomain());
+        assertEquals(new URL("http://example.com/haus"), restored.getExternalContents().get(0).getLink());
+        assertEquals("Maus", restored.getSimilarRecommendations().get(0).getGeneralForm());
+    }
+
+    @Test
+    public void testOpen_discardsTruncatedRecord() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("cache.dat");
+        EngineQueryResult result = new EngineQueryResultBuilder()
+                .addSimilarRecommendation(new DictionaryObjectBuilder().setLanguage(Language.GERMAN).setGeneralForm("Maus").build())
+                .build();
+
+        try (FileQueryStepResultStore store = new FileQueryStepResultStore(file, 1024 * 1024, 0)) {
+            store.put(CACHE_KEY, result);
+            store.put(QueryStepCacheKey.of("engine", "Maus", Language.GERMAN, Language.ENGLISH, true), result);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        try (FileQueryStepResultStore store = new FileQueryStepResultStore(file, 1024 * 1024, 0)) {
+            assertEquals(1, store.count());
+            assertNotNull(store.get(CACHE_KEY));
+        }
+    }
+
+    @Test
+    public void testOpen_skipsCorruptedRecordInTheMiddle() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("cache.dat");
+        EngineQueryResult result = new EngineQueryResultBuilder()
+                .addSimilarRecommendation(new DictionaryObjectBuilder().setLanguage(Language.GERMAN).setGeneralForm("Maus").build())
+                .build();
+        QueryStepCacheKey secondKey = QueryStepCacheKey.of("engine", "Maus", Language.GERMAN, Language.ENGLISH, true);
+        QueryStepCacheKey thirdKey = QueryStepCacheKey.of("engine", "Laus", Language.GERMAN, Language.ENGLISH, true);
+
+        long firstRecordSize;
+        try (FileQueryStepResultStore store = new FileQueryStepResultStore(file, 1024 * 1024, 0)) {
+            store.put(CACHE_KEY, result);
+            firstRecordSize = Files.size(file);
+            store.put(secondKey, result);
+            store.put(thirdKey, result);
+        }
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[(int) firstRecordSize + 20] ^= 0xFF;      // Flip a payload byte of the second record
+        Files.write(file, bytes);
+
+        try (FileQueryStepResultStore store = new FileQueryStepResultStore(file, 1024 * 1024, 0)) {
+            assertEquals(2, store.count());
+            assertNotNull(store.get(CACHE_KEY));
+            assertNull(store.get(secondKey));
+            assertNotNull(store.get(thirdKey));
+        }
+        assertEquals(bytes.length, Files.size(file));
+    }
+
+    @Test
+    public void testLookup_keepsOriginalTimestamp() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("cache.dat");
+        long timestamp = System.currentTimeMillis() - 5000;
+
+        try (FileQueryStepResultStore store = new FileQueryStepResultStore(file, 1024 * 1024, 60000)) {
+            store.put(CACHE_KEY, EngineQueryResultBuilder.EMPTY_QUERY_RESULT, timestamp);
+            store.put(QueryStepCacheKey.of("engine", "Maus", Language.GERMAN, Language.ENGLISH, true), EngineQueryResultBuilder.EMPTY_QUERY_RESULT, timestamp - 60000);
+
+            StoredEngineQueryResult storedResult = store.lookup(CACHE_KEY);
+            assertNotNull(storedResult);
+            assertEquals(timestamp, storedResult.getTimestamp());
+            assertEquals(1, store.count());
+        }
+    }
+
+    @Test
+    public void testPut_compactsToMaximumSize() throws Exception {
+        Path file = temporaryFolder.getRoot().toPath().resolve("cache.dat");
+        EngineQueryResult result = new EngineQueryResultBuilder()
+                .addSimilarRecommendation(new DictionaryObjectBuilder().setLanguage(Language.GERMAN).setGeneralForm("Maus").build())
+                .build();
+
+        try (FileQueryStepResultStore store = new FileQueryStepResultStore(file, 4096, 0, MoreExecutors.directExecutor())) {
+            for (int i = 0; i < 200; i++) {
+                store.put(QueryStepCacheKey.of("engine", "word" + i, Language.GERMAN, Language.ENGLISH, true), result);
+            }
+
+            assertTrue(Files.size(file) <= 4096);
+            assertNotNull(store.get(QueryStepCacheKey.of("engine", "word199", Language.GERMAN, Language.ENGLISH, true)));
+            assertNull(store.get(QueryStepCacheKey.of("engine", "word0", Language.GERMAN, Language.ENGLISH, true)));
+        }
+    }
+}
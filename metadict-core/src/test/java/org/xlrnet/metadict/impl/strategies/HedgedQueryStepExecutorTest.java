@@ -0,0 +1,169 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
+import org.xlrnet.metadict.impl.query.QueryStep;
+import org.xlrnet.metadict.impl.query.QueryStepResult;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link HedgedQueryStepExecutor}.
+ */
+public class HedgedQueryStepExecutorTest {
+
+    private static final long SLOW_DELAY = 2000;
+
+    private static final long HEDGE_DELAY = 50;
+
+    private ExecutorService executorService;
+
+    private ScheduledExecutorService scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        executorService = Executors.newFixedThreadPool(4);
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executorService.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testExecute_hedgeWins() throws Exception {
+        EngineQueryResult result = new EngineQueryResultBuilder().build();
+        AtomicInteger calls = new AtomicInteger();
+        SearchEngine engine = createSlowFirstCallEngine(result, calls);
+        HedgeBudget hedgeBudget = new HedgeBudget(1.0, 1);
+        HedgedQueryStepExecutor executor = new HedgedQueryStepExecutor(executorService, scheduler, hedgeBudget, step -> HEDGE_DELAY);
+
+        long startTime = System.currentTimeMillis();
+        QueryStepResult queryStepResult = executor.execute(createQueryStep(engine)).get(SLOW_DELAY / 2, TimeUnit.MILLISECONDS);
+
+        assertTrue("Hedge should return before the slow request", System.currentTimeMillis() - startTime < SLOW_DELAY);
+        assertFalse(queryStepResult.isFailedStep());
+        assertSame(result, queryStepResult.getEngineQueryResult());
+        assertEquals(2, calls.get());
+        assertEquals(1, hedgeBudget.getHedgeCount());
+    }
+
+    @Test
+    public void testExecute_budgetExhausted() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        SearchEngine engine = createSlowFirstCallEngine(new EngineQueryResultBuilder().build(), calls);
+        HedgeBudget hedgeBudget = new HedgeBudget(0.0, 1);
+        HedgedQueryStepExecutor executor = new HedgedQueryStepExecutor(executorService, scheduler, hedgeBudget, step -> HEDGE_DELAY);
+
+        QueryStepResult queryStepResult = executor.execute(createQueryStep(engine)).get();
+
+        assertFalse(queryStepResult.isFailedStep());
+        assertEquals("No hedge may be sent without budget", 1, calls.get());
+        assertEquals(0, hedgeBudget.getHedgeCount());
+    }
+
+    @Test
+    public void testExecute_hedgeDelayFailure() throws Exception {
+        EngineQueryResult result = new EngineQueryResultBuilder().build();
+        AtomicInteger calls = new AtomicInteger();
+        SearchEngine engine = createSlowFirstCallEngine(result, calls);
+        HedgedQueryStepExecutor executor = new HedgedQueryStepExecutor(executorService, scheduler, new HedgeBudget(1.0, 1), step -> {
+            throw new IllegalArgumentException("Illegal percentile");
+        });
+
+        QueryStepResult queryStepResult = executor.execute(createQueryStep(engine)).get();
+
+        assertFalse("Step should be executed without hedging", queryStepResult.isFailedStep());
+        assertSame(result, queryStepResult.getEngineQueryResult());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testExecute_losingRequestIsNotInterrupted() throws Exception {
+        EngineQueryResult result = new EngineQueryResultBuilder().build();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CountDownLatch slowCallFinished = new CountDownLatch(1);
+        SearchEngine engine = Mockito.mock(SearchEngine.class);
+        when(engine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(HEDGE_DELAY * 4);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                } finally {
+                    slowCallFinished.countDown();
+                }
+            }
+            return result;
+        });
+        HedgedQueryStepExecutor executor = new HedgedQueryStepExecutor(executorService, scheduler, new HedgeBudget(1.0, 1), step -> HEDGE_DELAY);
+
+        executor.execute(createQueryStep(engine)).get();
+
+        assertTrue(slowCallFinished.await(SLOW_DELAY, TimeUnit.MILLISECONDS));
+        assertEquals(2, calls.get());
+        assertFalse("The losing request must not be interrupted", interrupted.get());
+    }
+
+    private SearchEngine createSlowFirstCallEngine(EngineQueryResult result, AtomicInteger calls) throws Exception {
+        SearchEngine engine = Mockito.mock(SearchEngine.class);
+        when(engine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1)
+                Thread.sleep(SLOW_DELAY);
+            return result;
+        });
+        return engine;
+    }
+
+    private QueryStep createQueryStep(SearchEngine engine) {
+        return new QueryStep()
+                .setQueryString("foo")
+                .setInputLanguage(Language.GERMAN)
+                .setOutputLanguage(Language.ENGLISH)
+                .setSearchEngineName(engine.getClass().getCanonicalName())
+                .setSearchEngine(engine);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.junit.Test;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.DictionaryEntryBuilder;
+import org.xlrnet.metadict.api.query.DictionaryObjectBuilder;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
+import org.xlrnet.metadict.impl.query.QueryStepCacheKey;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link OffHeapQueryStepResultStore}.
+ */
+public class OffHeapQueryStepResultStoreTest {
+
+    private static final EngineQueryResult RESULT = new EngineQueryResultBuilder()
+            .addEntry(new DictionaryEntryBuilder()
+                    .setInputObject(new DictionaryObjectBuilder().setLanguage(Language.GERMAN).setGeneralForm("Haus").build())
+                    .setOutputObject(new DictionaryObjectBuilder().setLanguage(Language.ENGLISH).setGeneralForm("house").build())
+                    .build())
+            .build();
+
+    @Test
+    public void testPutAndGet_compressed() throws Exception {
+        OffHeapQueryStepResultStore store = new OffHeapQueryStepResultStore(64 * 1024, 16 * 1024, true, 0);
+
+        store.put(createKey("Haus"), RESULT);
+        EngineQueryResult restored = store.get(createKey("haus"));
+
+        assertNotNull(restored);
+        assertEquals("house", restored.getEntries().get(0).getOutput().getGeneralForm());
+    }
+
+    @Test
+    public void testPut_reusesOldestSlab() throws Exception {
+        OffHeapQueryStepResultStore store = new OffHeapQueryStepResultStore(2 * 1024, 1024, false, 0);
+
+        for (int i = 0; i < 100; i++) {
+            store.put(createKey("word" + i), RESULT);
+        }
+
+        assertTrue(store.getUsedBytes() <= 2 * 1024);
+        assertNull(store.get(createKey("word0")));
+        assertNotNull(store.get(createKey("word99")));
+    }
+
+    private QueryStepCacheKey createKey(String queryString) {
+        return QueryStepCacheKey.of("engine", queryString, Language.GERMAN, Language.ENGLISH, false);
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.engine.AsyncSearchEngine;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.DictionaryObjectBuilder;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
+import org.xlrnet.metadict.impl.query.QueryPlan;
+import org.xlrnet.metadict.impl.query.QueryStep;
+import org.xlrnet.metadict.impl.query.QueryStepResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for {@link ParallelExecutionStrategy} without CDI.
+ */
+public class ParallelExecutionStrategyTest {
+
+    private static final long ENGINE_DELAY = 300;
+
+    private ParallelExecutionStrategy strategy;
+
+    @Before
+    public void setUp() throws Exception {
+        strategy = new ParallelExecutionStrategy();
+        strategy.initialize();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        strategy.shutdown();
+    }
+
+    @Test
+    public void testExecuteQueryPlan_concurrent() throws Exception {
+        EngineQueryResult firstResult = new EngineQueryResultBuilder().build();
+        EngineQueryResult secondResult = new EngineQueryResultBuilder().build();
+        EngineQueryResult thirdResult = new EngineQueryResultBuilder().build();
+
+        QueryPlan queryPlan = new QueryPlan()
+                .addQueryStep(createQueryStep(createDelayedEngineMock(firstResult)))
+                .addQueryStep(createQueryStep(createDelayedEngineMock(secondResult)))
+                .addQueryStep(createQueryStep(createDelayedEngineMock(thirdResult)));
+
+        long startTime = System.currentTimeMillis();
+        List<QueryStepResult> results = Lists.newArrayList(strategy.executeQueryPlan(queryPlan));
+        long duration = System.currentTimeMillis() - startTime;
+
+        assertTrue("Steps were not executed concurrently", duration < 3 * ENGINE_DELAY);
+        assertEquals(3, results.size());
+        assertSame(firstResult, results.get(0).getEngineQueryResult());
+        assertSame(secondResult, results.get(1).getEngineQueryResult());
+        assertSame(thirdResult, results.get(2).getEngineQueryResult());
+    }
+
+    @Test
+    public void testExecuteQueryPlan_firstStepOnCallingThread() throws Exception {
+        List<Thread> executingThreads = new CopyOnWriteArrayList<>();
+        SearchEngine engine = Mockito.mock(SearchEngine.class);
+        when(engine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenAnswer(invocation -> {
+            executingThreads.add(Thread.currentThread());
+            return new EngineQueryResultBuilder().build();
+        });
+
+        strategy.executeQueryPlan(new QueryPlan().addQueryStep(createQueryStep(engine)));
+        assertEquals(Lists.newArrayList(Thread.currentThread()), executingThreads);
+
+        executingThreads.clear();
+        strategy.executeQueryPlan(new QueryPlan().addQueryStep(createQueryStep(engine)).addQueryStep(createQueryStep(engine)));
+        assertEquals(2, executingThreads.size());
+        assertTrue(executingThreads.contains(Thread.currentThread()));
+        assertEquals("Further steps should be executed on the pool", 2, Sets.newHashSet(executingThreads).size());
+    }
+
+    @Test
+    public void testExecuteQueryPlan_failedStep() throws Exception {
+        SearchEngine failingEngine = Mockito.mock(SearchEngine.class);
+        when(failingEngine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenThrow(new RuntimeException("failed"));
+        EngineQueryResult result = new EngineQueryResultBuilder().build();
+
+        QueryPlan queryPlan = new QueryPlan()
+                .addQueryStep(createQueryStep(createDelayedEngineMock(result)))
+                .addQueryStep(createQueryStep(failingEngine));
+
+        List<QueryStepResult> results = Lists.newArrayList(strategy.executeQueryPlan(queryPlan));
+
+        assertFalse(results.get(0).isFailedStep());
+        assertTrue(results.get(1).isFailedStep());
+        assertEquals("failed", results.get(1).getErrorMessage());
+    }
+
+    @Test
+    public void testExecuteQueryPlan_asyncEngine() throws Exception {
+        EngineQueryResult result = new EngineQueryResultBuilder().build();
+        CompletableFuture<EngineQueryResult> pendingResult = new CompletableFuture<>();
+        CompletableFuture<EngineQueryResult> failedResult = new CompletableFuture<>();
+        failedResult.completeExceptionally(new IllegalStateException("failed"));
+
+        AsyncSearchEngine asyncEngine = Mockito.mock(AsyncSearchEngine.class);
+        when(asyncEngine.executeSearchQueryAsync(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenReturn(pendingResult);
+        AsyncSearchEngine failingEngine = Mockito.mock(AsyncSearchEngine.class);
+        when(failingEngine.executeSearchQueryAsync(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenReturn(failedResult);
+
+        QueryPlan queryPlan = new QueryPlan()
+                .addQueryStep(createQueryStep(asyncEngine))
+                .addQueryStep(createQueryStep(failingEngine));
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.schedule(() -> pendingResult.complete(result), ENGINE_DELAY, TimeUnit.MILLISECONDS);
+        List<QueryStepResult> results = Lists.newArrayList(strategy.executeQueryPlan(queryPlan));
+        scheduler.shutdown();
+
+        assertSame(result, results.get(0).getEngineQueryResult());
+        assertTrue(results.get(1).isFailedStep());
+        assertEquals("failed", results.get(1).getErrorMessage());
+        Mockito.verify(asyncEngine, Mockito.never()).executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean());
+    }
+
+    @Test
+    public void testExecuteQueryPlan_usesQueryStepCache() throws Exception {
+        EngineQueryResult result = new EngineQueryResultBuilder()
+                .addSimilarRecommendation(new DictionaryObjectBuilder().setLanguage(Language.GERMAN).setGeneralForm("Maus").build())
+                .build();
+        SearchEngine engine = createDelayedEngineMock(result);
+        strategy.queryStepCache = new QueryStepCache();
+        strategy.queryStepCache.initialize();
+
+        strategy.executeQueryPlan(new QueryPlan().addQueryStep(createQueryStep(engine)));
+        List<QueryStepResult> results = Lists.newArrayList(strategy.executeQueryPlan(new QueryPlan()
+                .addQueryStep(createQueryStep(engine))
+                .addQueryStep(createQueryStep(engine).setQueryString("bar"))));
+
+        assertSame(result, results.get(0).getEngineQueryResult());
+        assertSame(result, results.get(1).getEngineQueryResult());
+        Mockito.verify(engine, Mockito.times(1)).executeSearchQuery(eq("foo"), any(Language.class), any(Language.class), anyBoolean());
+        Mockito.verify(engine, Mockito.times(1)).executeSearchQuery(eq("bar"), any(Language.class), any(Language.class), anyBoolean());
+    }
+
+    @Test
+    public void testIsValidHedgingConfiguration() throws Exception {
+        assertTrue(ParallelExecutionStrategy.isValidHedgingConfiguration(0.95, 0.05));
+        assertTrue(ParallelExecutionStrategy.isValidHedgingConfiguration(1.0, 0.0));
+        assertFalse(ParallelExecutionStrategy.isValidHedgingConfiguration(0.0, 0.05));
+        assertFalse(ParallelExecutionStrategy.isValidHedgingConfiguration(95, 0.05));
+        assertFalse(ParallelExecutionStrategy.isValidHedgingConfiguration(0.95, 1.5));
+        assertFalse(ParallelExecutionStrategy.isValidHedgingConfiguration(0.95, -0.1));
+    }
+
+    private SearchEngine createDelayedEngineMock(EngineQueryResult result) throws Exception {
+        SearchEngine engine = Mockito.mock(SearchEngine.class);
+        when(engine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenAnswer(invocation -> {
+            Thread.sleep(ENGINE_DELAY);
+            return result;
+        });
+        return engine;
+    }
+
+    private QueryStep createQueryStep(SearchEngine engine) {
+        return new QueryStep()
+                .setQueryString("foo")
+                .setInputLanguage(Language.GERMAN)
+                .setOutputLanguage(Language.ENGLISH)
+                .setSearchEngineName(engine.getClass().getCanonicalName())
+                .setSearchEngine(engine);
+    }
+}
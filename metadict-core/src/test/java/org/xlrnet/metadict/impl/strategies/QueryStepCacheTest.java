@@ -0,0 +1,328 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.DictionaryObjectBuilder;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.api.query.EngineQueryResultBuilder;
+import org.xlrnet.metadict.impl.core.EngineRegistry;
+import org.xlrnet.metadict.impl.query.QueryStep;
+import org.xlrnet.metadict.impl.query.QueryStepCacheKey;
+import org.xlrnet.metadict.impl.query.QueryStepResult;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link QueryStepCache} without CDI.
+ */
+public class QueryStepCacheTest {
+
+    private static final String ENGINE_NAME = "engine";
+
+    private static final EngineQueryResult RESULT = new EngineQueryResultBuilder()
+            .addSimilarRecommendation(new DictionaryObjectBuilder().setLanguage(Language.GERMAN).setGeneralForm("Maus").build())
+            .build();
+
+    private static final EngineQueryResult REFRESHED_RESULT = new EngineQueryResultBuilder()
+            .addSimilarRecommendation(new DictionaryObjectBuilder().setLanguage(Language.GERMAN).setGeneralForm("Laus").build())
+            .build();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicLong clockOffset = new AtomicLong();
+
+    private SearchEngine engine;
+
+    private QueryStepCache queryStepCache;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = Mockito.mock(SearchEngine.class);
+        when(engine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenReturn(RESULT);
+
+        queryStepCache = new QueryStepCache();
+        queryStepCache.setMaximumWeight(0);
+        queryStepCache.setExpireAfterWrite(60);
+        queryStepCache.setRefreshAfterWrite(0);
+        queryStepCache.setOffHeapCacheEnabled(false);
+        queryStepCache.setFileCacheEnabled(false);
+        queryStepCache.setSnapshotEnabled(false);
+        queryStepCache.clock = () -> System.currentTimeMillis() + clockOffset.get();
+    }
+
+    @Test
+    public void testGet_failedStepIsNotCached() throws Exception {
+        when(engine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean()))
+                .thenThrow(new IOException("timeout"))
+                .thenReturn(RESULT);
+        queryStepCache.initialize();
+
+        assertTrue(queryStepCache.get(createQueryStep("Haus")).isFailedStep());
+        QueryStepResult queryStepResult = queryStepCache.get(createQueryStep("Haus"));
+
+        assertFalse("Failed result must not be served from the cache", queryStepResult.isFailedStep());
+        assertSame(RESULT, queryStepResult.getEngineQueryResult());
+        assertEquals(1, queryStepCache.getStatistics().getSize());
+        assertEquals(0, queryStepCache.getStatistics().getNegativeSize());
+        verify(engine, times(2)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+    }
+
+    @Test
+    public void testGet_entryExpiresAfterWrite() throws Exception {
+        queryStepCache.initialize();
+
+        queryStepCache.get(createQueryStep("Haus"));
+        clockOffset.set(TimeUnit.SECONDS.toMillis(59));
+        queryStepCache.get(createQueryStep("Haus"));
+        verify(engine, times(1)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+
+        clockOffset.set(TimeUnit.SECONDS.toMillis(61));
+        assertSame(RESULT, queryStepCache.get(createQueryStep("Haus")).getEngineQueryResult());
+        verify(engine, times(2)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+    }
+
+    @Test
+    public void testGet_promotedEntryExpiresAfterOriginalWrite() throws Exception {
+        queryStepCache.setMaximumSize(1);
+        queryStepCache.setOffHeapCacheEnabled(true);
+        queryStepCache.setOffHeapCacheSize(64 * 1024);
+        queryStepCache.setOffHeapCacheSlabSize(16 * 1024);
+        queryStepCache.initialize();
+
+        queryStepCache.get(createQueryStep("Haus"));
+        queryStepCache.get(createQueryStep("Maus"));     // Demotes "Haus" to the off-heap tier
+        queryStepCache.get(createQueryStep("Haus"));     // Promotes "Haus" back to the heap
+        verify(engine, times(1)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+        assertEquals(1, queryStepCache.getStatistics().offHeapSize);
+
+        clockOffset.set(TimeUnit.SECONDS.toMillis(61));
+        assertFalse(queryStepCache.get(createQueryStep("Haus")).isFailedStep());
+
+        verify(engine, times(2)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+    }
+
+    @Test
+    public void testGet_servesStaleResultWhileRefreshing() throws Exception {
+        CountDownLatch refreshLatch = new CountDownLatch(1);
+        when(engine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean()))
+                .thenReturn(RESULT)
+                .thenAnswer(invocation -> {
+                    refreshLatch.await();
+                    return REFRESHED_RESULT;
+                });
+        queryStepCache.setRefreshAfterWrite(10);
+        queryStepCache.initialize();
+
+        queryStepCache.get(createQueryStep("Haus"));
+        clockOffset.set(TimeUnit.SECONDS.toMillis(11));
+        assertSame(RESULT, queryStepCache.get(createQueryStep("Haus")).getEngineQueryResult());
+        assertSame(RESULT, queryStepCache.get(createQueryStep("Haus")).getEngineQueryResult());
+
+        clockOffset.set(0);     // Otherwise the refreshed result would be stale as well
+        refreshLatch.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queryStepCache.get(createQueryStep("Haus")).getEngineQueryResult() != REFRESHED_RESULT) {
+            assertTrue("Stale result has not been replaced", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+        verify(engine, times(2)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+    }
+
+    @Test
+    public void testGet_rejectedRefreshDoesNotExtendLifetime() throws Exception {
+        queryStepCache.setRefreshAfterWrite(10);
+        queryStepCache.initialize();
+        queryStepCache.refreshExecutorService.shutdown();
+
+        queryStepCache.get(createQueryStep("Haus"));
+        clockOffset.set(TimeUnit.SECONDS.toMillis(11));
+        assertSame(RESULT, queryStepCache.get(createQueryStep("Haus")).getEngineQueryResult());
+        verify(engine, times(1)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+
+        clockOffset.set(TimeUnit.SECONDS.toMillis(61));
+        queryStepCache.get(createQueryStep("Haus"));
+        verify(engine, times(2)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+    }
+
+    @Test
+    public void testGet_uncacheableRefreshKeepsStaleResult() throws Exception {
+        when(engine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean()))
+                .thenReturn(RESULT)
+                .thenReturn(EngineQueryResultBuilder.EMPTY_QUERY_RESULT);
+        queryStepCache.setRefreshAfterWrite(10);
+        queryStepCache.setRefreshAsync(false);
+        queryStepCache.initialize();
+
+        QueryStepResult originalResult = queryStepCache.get(createQueryStep("Haus"));
+        clockOffset.set(TimeUnit.SECONDS.toMillis(11));
+        QueryStepResult staleResult = queryStepCache.get(createQueryStep("Haus"));
+
+        assertSame(originalResult, staleResult);
+        verify(engine, times(2)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+
+        clockOffset.set(TimeUnit.SECONDS.toMillis(61));
+        queryStepCache.get(createQueryStep("Haus"));
+        verify(engine, times(3)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+    }
+
+    @Test
+    public void testGetStatistics() throws Exception {
+        SearchEngine emptyEngine = Mockito.mock(SearchEngine.class);
+        when(emptyEngine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenReturn(EngineQueryResultBuilder.EMPTY_QUERY_RESULT);
+        queryStepCache.initialize();
+
+        queryStepCache.get(createQueryStep("Haus"));
+        queryStepCache.get(createQueryStep("Haus"));
+        queryStepCache.get(createQueryStep("Maus"));
+        queryStepCache.get(createQueryStep("Laus").setSearchEngineName("empty").setSearchEngine(emptyEngine));
+        queryStepCache.get(createQueryStep("Laus").setSearchEngineName("empty").setSearchEngine(emptyEngine));
+
+        QueryStepCacheStatistics statistics = queryStepCache.getStatistics();
+        assertEquals(1, statistics.getHitCount());
+        assertEquals(1, statistics.getNegativeHitCount());
+        assertEquals(3, statistics.getMissCount());
+        assertEquals(2, statistics.getSize());
+        assertEquals(1, statistics.getNegativeSize());
+        assertEquals(2, statistics.getEngines().get(ENGINE_NAME).getSize());
+        assertEquals(1, statistics.getEngines().get(ENGINE_NAME).getHitCount());
+        assertEquals(1, statistics.getEngines().get("empty").getNegativeHitCount());
+    }
+
+    @Test
+    public void testInvalidateEngine() throws Exception {
+        queryStepCache.initialize();
+        queryStepCache.get(createQueryStep("Haus"));
+        queryStepCache.get(createQueryStep("Haus").setSearchEngineName("other"));
+
+        assertEquals(1, queryStepCache.invalidateEngine(ENGINE_NAME));
+        assertEquals(1, queryStepCache.getStatistics().getSize());
+
+        queryStepCache.get(createQueryStep("Haus"));
+        verify(engine, times(3)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+    }
+
+    @Test
+    public void testInvalidateQuery() throws Exception {
+        queryStepCache.initialize();
+        queryStepCache.get(createQueryStep("Haus"));
+        queryStepCache.get(createQueryStep("Haus").setSearchEngineName("other"));
+        queryStepCache.get(createQueryStep("Maus"));
+
+        assertEquals(2, queryStepCache.invalidateQuery(" HAUS "));
+        assertEquals(1, queryStepCache.getStatistics().getSize());
+    }
+
+    @Test
+    public void testInvalidateAll() throws Exception {
+        when(engine.executeSearchQuery(eq("Laus"), any(Language.class), any(Language.class), anyBoolean())).thenReturn(EngineQueryResultBuilder.EMPTY_QUERY_RESULT);
+        queryStepCache.initialize();
+        queryStepCache.get(createQueryStep("Haus"));
+        queryStepCache.get(createQueryStep("Laus"));
+
+        assertEquals(2, queryStepCache.invalidateAll());
+        assertEquals(0, queryStepCache.getStatistics().getSize());
+        assertEquals(0, queryStepCache.getStatistics().getNegativeSize());
+    }
+
+    @Test
+    public void testGetEstimatedWeight_tracksInsertionsAndRemovals() throws Exception {
+        QueryStepResultWeigher weigher = new QueryStepResultWeigher();
+        queryStepCache.setMaximumWeight(64 * 1024 * 1024);
+        queryStepCache.setRefreshAfterWrite(10);
+        queryStepCache.setRefreshAsync(false);
+        queryStepCache.initialize();
+
+        QueryStepResult firstResult = queryStepCache.get(createQueryStep("Haus"));
+        QueryStepResult secondResult = queryStepCache.get(createQueryStep("Maus"));
+        assertEquals(weigher.weigh(QueryStepCacheKey.fromQueryStep(firstResult.getQueryStep()), firstResult)
+                + weigher.weigh(QueryStepCacheKey.fromQueryStep(secondResult.getQueryStep()), secondResult), queryStepCache.getEstimatedWeight());
+
+        when(engine.executeSearchQuery(anyString(), any(Language.class), any(Language.class), anyBoolean())).thenReturn(REFRESHED_RESULT);
+        clockOffset.set(TimeUnit.SECONDS.toMillis(11));
+        QueryStepResult refreshedResult = queryStepCache.get(createQueryStep("Haus"));
+        assertSame(REFRESHED_RESULT, refreshedResult.getEngineQueryResult());
+        assertEquals(weigher.weigh(QueryStepCacheKey.fromQueryStep(refreshedResult.getQueryStep()), refreshedResult)
+                + weigher.weigh(QueryStepCacheKey.fromQueryStep(secondResult.getQueryStep()), secondResult), queryStepCache.getEstimatedWeight());
+
+        queryStepCache.invalidateAll();
+        assertEquals(0, queryStepCache.getEstimatedWeight());
+    }
+
+    @Test
+    public void testWriteSnapshot_restoresHottestEntries() throws Exception {
+        String snapshotFile = temporaryFolder.getRoot().toPath().resolve("cache.snapshot").toString();
+        queryStepCache.setSnapshotEnabled(true);
+        queryStepCache.setSnapshotFile(snapshotFile);
+        queryStepCache.setSnapshotSize(1);
+        queryStepCache.initialize();
+
+        QueryStepResult originalResult = queryStepCache.get(createQueryStep("Haus"));
+        queryStepCache.get(createQueryStep("Haus"));
+        queryStepCache.get(createQueryStep("Maus"));
+        assertEquals(1, queryStepCache.writeSnapshot());
+
+        QueryStepCache restoredCache = new QueryStepCache();
+        restoredCache.setMaximumWeight(0);
+        restoredCache.setSnapshotEnabled(true);
+        restoredCache.setSnapshotFile(snapshotFile);
+        restoredCache.engineRegistry = Mockito.mock(EngineRegistry.class);
+        when(restoredCache.engineRegistry.getEngineByName(ENGINE_NAME)).thenReturn(engine);
+        restoredCache.initialize();
+
+        assertEquals(1, restoredCache.restoreSnapshot());
+        QueryStepResult restoredResult = restoredCache.get(createQueryStep("Haus"));
+        assertEquals("Maus", restoredResult.getEngineQueryResult().getSimilarRecommendations().get(0).getGeneralForm());
+        assertEquals(originalResult.getTimestamp(), restoredResult.getTimestamp());
+        verify(engine, times(1)).executeSearchQuery(eq("Haus"), any(Language.class), any(Language.class), anyBoolean());
+
+        // The less requested entry was not part of the snapshot
+        restoredCache.get(createQueryStep("Maus"));
+        verify(engine, times(2)).executeSearchQuery(eq("Maus"), any(Language.class), any(Language.class), anyBoolean());
+    }
+
+    private QueryStep createQueryStep(String queryString) {
+        return new QueryStep()
+                .setQueryString(queryString)
+                .setInputLanguage(Language.GERMAN)
+                .setOutputLanguage(Language.ENGLISH)
+                .setSearchEngineName(ENGINE_NAME)
+                .setSearchEngine(engine);
+    }
+}
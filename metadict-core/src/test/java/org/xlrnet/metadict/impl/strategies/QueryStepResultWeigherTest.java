@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import org.junit.Test;
+import org.xlrnet.metadict.api.language.GrammaticalNumber;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.*;
+import org.xlrnet.metadict.impl.query.QueryStep;
+import org.xlrnet.metadict.impl.query.QueryStepCacheKey;
+import org.xlrnet.metadict.impl.query.QueryStepResult;
+import org.xlrnet.metadict.impl.query.QueryStepResultBuilder;
+
+import java.net.URL;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link QueryStepResultWeigher}.
+ */
+public class QueryStepResultWeigherTest {
+
+    private static final QueryStepCacheKey CACHE_KEY = QueryStepCacheKey.of("engine", "Haus", Language.GERMAN, Language.ENGLISH, true);
+
+    private final QueryStepResultWeigher weigher = new QueryStepResultWeigher();
+
+    @Test
+    public void testWeigh_growsWithContent() throws Exception {
+        int emptyWeight = weigher.weigh(CACHE_KEY, createQueryStepResult(EngineQueryResultBuilder.EMPTY_QUERY_RESULT));
+        int singleEntryWeight = weigher.weigh(CACHE_KEY, createQueryStepResult(new EngineQueryResultBuilder()
+                .addEntry(createEntry("house"))
+                .build()));
+        int twoEntriesWeight = weigher.weigh(CACHE_KEY, createQueryStepResult(new EngineQueryResultBuilder()
+                .addEntry(createEntry("house"))
+                .addEntry(createEntry("house"))
+                .build()));
+
+        assertTrue(emptyWeight > 0);
+        assertTrue(singleEntryWeight > emptyWeight);
+        assertEquals(singleEntryWeight - emptyWeight, twoEntriesWeight - singleEntryWeight);
+    }
+
+    @Test
+    public void testEstimateSize_countsStringsAndAdditionalContent() throws Exception {
+        long shortSize = QueryStepResultWeigher.estimateSize(new EngineQueryResultBuilder().addEntry(createEntry("a")).build());
+        long longSize = QueryStepResultWeigher.estimateSize(new EngineQueryResultBuilder().addEntry(createEntry("abcdefghijk")).build());
+        long withExternalContent = QueryStepResultWeigher.estimateSize(new EngineQueryResultBuilder()
+                .addEntry(createEntry("a"))
+                .addExternalContent(new ExternalContentBuilder().setTitle("Haus").setLink(new URL("http://example.com/haus")).build())
+                .build());
+
+        assertEquals(20, longSize - shortSize);     // Two bytes per additional character
+        assertTrue(withExternalContent > shortSize);
+    }
+
+    private DictionaryEntry createEntry(String output) {
+        return new DictionaryEntryBuilder()
+                .setInputObject(new DictionaryObjectBuilder()
+                        .setLanguage(Language.GERMAN)
+                        .setGeneralForm("Haus")
+                        .setAdditionalForm(GrammaticalNumber.PLURAL, "Häuser")
+                        .build())
+                .setOutputObject(new DictionaryObjectBuilder().setLanguage(Language.ENGLISH).setGeneralForm(output).build())
+                .build();
+    }
+
+    private QueryStepResult createQueryStepResult(EngineQueryResult engineQueryResult) {
+        return new QueryStepResultBuilder()
+                .setQueryStep(new QueryStep())
+                .setEngineQueryResult(engineQueryResult)
+                .build();
+    }
+}
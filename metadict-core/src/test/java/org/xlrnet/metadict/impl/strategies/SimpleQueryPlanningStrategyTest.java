@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.impl.strategies;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.xlrnet.metadict.api.engine.SearchEngine;
+import org.xlrnet.metadict.api.language.Dictionary;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.impl.core.EngineRegistry;
+import org.xlrnet.metadict.impl.query.QueryPlan;
+import org.xlrnet.metadict.impl.query.QueryRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for {@link SimpleQueryPlanningStrategy} without CDI.
+ */
+public class SimpleQueryPlanningStrategyTest {
+
+    private static final Dictionary GERMAN_ENGLISH = Dictionary.fromLanguages(Language.GERMAN, Language.ENGLISH, false);
+
+    private SimpleQueryPlanningStrategy strategy;
+
+    private EngineRegistry engineRegistry;
+
+    @Before
+    public void setUp() throws Exception {
+        strategy = new SimpleQueryPlanningStrategy();
+        engineRegistry = Mockito.mock(EngineRegistry.class);
+
+        when(engineRegistry.getRegistryVersion()).thenReturn(1L);
+        when(engineRegistry.getSearchEngineNamesByDictionary(GERMAN_ENGLISH)).thenReturn(Lists.newArrayList("first"));
+        when(engineRegistry.getEngineByName("first")).thenReturn(Mockito.mock(SearchEngine.class));
+        when(engineRegistry.getEngineByName("second")).thenReturn(Mockito.mock(SearchEngine.class));
+    }
+
+    @Test
+    public void testCalculateQueryPlan_reusesTemplate() throws Exception {
+        QueryPlan firstPlan = strategy.calculateQueryPlan(createQueryRequest("Haus"), engineRegistry);
+        QueryPlan secondPlan = strategy.calculateQueryPlan(createQueryRequest("Maus"), engineRegistry);
+
+        verify(engineRegistry, times(1)).getSearchEngineNamesByDictionary(GERMAN_ENGLISH);
+        assertEquals(1, firstPlan.getQueryStepList().size());
+        assertEquals("Haus", firstPlan.getQueryStepList().get(0).getQueryString());
+        assertEquals(1, secondPlan.getQueryStepList().size());
+        assertEquals("Maus", secondPlan.getQueryStepList().get(0).getQueryString());
+        assertEquals("first", secondPlan.getQueryStepList().get(0).getSearchEngineName());
+    }
+
+    @Test
+    public void testCalculateQueryPlan_rebuildsTemplateOnRegistryChange() throws Exception {
+        strategy.calculateQueryPlan(createQueryRequest("Haus"), engineRegistry);
+
+        when(engineRegistry.getRegistryVersion()).thenReturn(2L);
+        when(engineRegistry.getSearchEngineNamesByDictionary(GERMAN_ENGLISH)).thenReturn(Lists.newArrayList("first", "second"));
+        QueryPlan queryPlan = strategy.calculateQueryPlan(createQueryRequest("Haus"), engineRegistry);
+
+        assertEquals(2, queryPlan.getQueryStepList().size());
+        assertEquals("second", queryPlan.getQueryStepList().get(1).getSearchEngineName());
+        assertEquals("Haus", queryPlan.getQueryStepList().get(1).getQueryString());
+    }
+
+    private QueryRequest createQueryRequest(String queryString) {
+        QueryRequest queryRequest = Mockito.mock(QueryRequest.class);
+        when(queryRequest.getQueryString()).thenReturn(queryString);
+        when(queryRequest.getQueryDictionaries()).thenReturn(Lists.newArrayList(GERMAN_ENGLISH));
+        return queryRequest;
+    }
+}
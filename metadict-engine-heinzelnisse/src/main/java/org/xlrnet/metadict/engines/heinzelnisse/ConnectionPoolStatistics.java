@@ -0,0 +1,129 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.engines.heinzelnisse;
+
+import com.google.common.base.MoreObjects;
+
+/**
+ * Immutable snapshot of the statistics of the connection pool used by {@link HeinzelnisseEngine}.
+ */
+public final class ConnectionPoolStatistics {
+
+    private final int maxConnections;
+
+    private final int leasedConnections;
+
+    private final int pendingRequests;
+
+    private final long totalRequests;
+
+    private final long failedRequests;
+
+    private final long rejectedRequests;
+
+    ConnectionPoolStatistics(int maxConnections, int leasedConnections, int pendingRequests, long totalRequests, long failedRequests, long rejectedRequests) {
+        this.maxConnections = maxConnections;
+        this.leasedConnections = leasedConnections;
+        this.pendingRequests = pendingRequests;
+        this.totalRequests = totalRequests;
+        this.failedRequests = failedRequests;
+        this.rejectedRequests = rejectedRequests;
+    }
+
+    /**
+     * Returns the maximum number of concurrent connections.
+     *
+     * @return the maximum number of concurrent connections.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Returns the number of connections that are currently in use.
+     *
+     * @return the number of connections that are currently in use.
+     */
+    public int getLeasedConnections() {
+        return leasedConnections;
+    }
+
+    /**
+     * Returns the number of connections that can currently be leased without waiting.
+     *
+     * @return the number of connections that can currently be leased without waiting.
+     */
+    public int getAvailableConnections() {
+        return maxConnections - leasedConnections;
+    }
+
+    /**
+     * Returns the (estimated) number of requests that are currently waiting for a free connection.
+     *
+     * @return the number of requests that are currently waiting for a free connection.
+     */
+    public int getPendingRequests() {
+        return pendingRequests;
+    }
+
+    /**
+     * Returns the total number of requests that have been sent since startup.
+     *
+     * @return the total number of requests that have been sent since startup.
+     */
+    public long getTotalRequests() {
+        return totalRequests;
+    }
+
+    /**
+     * Returns the number of requests that failed with an I/O or HTTP error.
+     *
+     * @return the number of requests that failed with an I/O or HTTP error.
+     */
+    public long getFailedRequests() {
+        return failedRequests;
+    }
+
+    /**
+     * Returns the number of requests that were rejected because no connection became available in time.
+     *
+     * @return the number of requests that were rejected because no connection became available in time.
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("maxConnections", maxConnections)
+                .add("leasedConnections", leasedConnections)
+                .add("pendingRequests", pendingRequests)
+                .add("totalRequests", totalRequests)
+                .add("failedRequests", failedRequests)
+                .add("rejectedRequests", rejectedRequests)
+                .toString();
+    }
+}
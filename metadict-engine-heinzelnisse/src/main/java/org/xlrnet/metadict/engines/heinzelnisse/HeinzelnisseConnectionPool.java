@@ -0,0 +1,145 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.engines.heinzelnisse;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.metadict.engines.util.HttpFetcher;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared pool of persistent HTTP connections for all {@link HeinzelnisseEngine} instances.
+ * <p>
+ * Every response is read completely and closed by {@link HttpFetcher}, so that the JVM can put the underlying
+ * connection back into its keep-alive cache and reuse it for the next query. The number of concurrently leased
+ * connections is limited to avoid exhausting sockets under load: requests that can't lease a connection within the
+ * acquire timeout fail fast instead of opening yet another socket. The following system properties can be used for configuration:
+ * <ul>
+ * <li>{@code metadict.engine.heinzelnisse.maxConnections}: maximum number of concurrent connections (default 8)</li>
+ * <li>{@code metadict.engine.heinzelnisse.acquireTimeout}: maximum time in milliseconds to wait for a free
+ * connection (default 5000)</li>
+ * <li>{@code metadict.engine.heinzelnisse.connectTimeout}: connect timeout in milliseconds (default 5000)</li>
+ * <li>{@code metadict.engine.heinzelnisse.readTimeout}: read timeout in milliseconds (default 5000)</li>
+ * </ul>
+ * Idle connections are evicted by the JVM's keep-alive cache as soon as the server's keep-alive timeout expires. The
+ * number of idle connections that are kept is controlled by the standard JVM property {@code http.maxConnections}.
+ */
+class HeinzelnisseConnectionPool {
+
+    private static final int MAX_CONNECTIONS = Integer.getInteger("metadict.engine.heinzelnisse.maxConnections", 8);
+
+    private static final int ACQUIRE_TIMEOUT = Integer.getInteger("metadict.engine.heinzelnisse.acquireTimeout", 5000);
+
+    private static final int CONNECT_TIMEOUT = Integer.getInteger("metadict.engine.heinzelnisse.connectTimeout", 5000);
+
+    private static final int READ_TIMEOUT = Integer.getInteger("metadict.engine.heinzelnisse.readTimeout", 5000);
+
+    private static final HeinzelnisseConnectionPool INSTANCE = new HeinzelnisseConnectionPool(MAX_CONNECTIONS, ACQUIRE_TIMEOUT, CONNECT_TIMEOUT, READ_TIMEOUT);
+
+    private final int maxConnections;
+
+    private final int acquireTimeout;
+
+    private final int connectTimeout;
+
+    private final int readTimeout;
+
+    private final Semaphore connectionPermits;
+
+    private final AtomicLong totalRequests = new AtomicLong();
+
+    private final AtomicLong failedRequests = new AtomicLong();
+
+    private final AtomicLong rejectedRequests = new AtomicLong();
+
+    HeinzelnisseConnectionPool(int maxConnections, int acquireTimeout, int connectTimeout, int readTimeout) {
+        this.maxConnections = maxConnections;
+        this.acquireTimeout = acquireTimeout;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.connectionPermits = new Semaphore(maxConnections, true);
+    }
+
+    @NotNull
+    static HeinzelnisseConnectionPool getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Lease a connection, send a GET request to the given URL and parse the response body with the given parser. The
+     * connection will be released as soon as the response has been read completely.
+     *
+     * @param url
+     *         The URL to request.
+     * @param requestProperties
+     *         Additional request headers.
+     * @param responseParser
+     *         The parser for the response body.
+     * @return the parsed response.
+     * @throws IOException
+     *         if no connection became available in time, the request failed or the response couldn't be parsed.
+     */
+    @NotNull
+    <T> T execute(@NotNull URL url, @NotNull Map<String, String> requestProperties, @NotNull HttpFetcher.ResponseParser<T, IOException> responseParser) throws IOException {
+        acquireConnection(url);
+        try {
+            totalRequests.incrementAndGet();
+            return HttpFetcher.fetch(url, requestProperties, connectTimeout, readTimeout, responseParser);
+        } catch (IOException e) {
+            failedRequests.incrementAndGet();
+            throw e;
+        } finally {
+            connectionPermits.release();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the current pool statistics.
+     *
+     * @return a snapshot of the current pool statistics.
+     */
+    @NotNull
+    ConnectionPoolStatistics getStatistics() {
+        return new ConnectionPoolStatistics(maxConnections, maxConnections - connectionPermits.availablePermits(),
+                connectionPermits.getQueueLength(), totalRequests.get(), failedRequests.get(), rejectedRequests.get());
+    }
+
+    private void acquireConnection(@NotNull URL url) throws IOException {
+        try {
+            if (!connectionPermits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                rejectedRequests.incrementAndGet();
+                throw new IOException("No connection available for " + url + " after " + acquireTimeout + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a connection", e);
+        }
+    }
+}
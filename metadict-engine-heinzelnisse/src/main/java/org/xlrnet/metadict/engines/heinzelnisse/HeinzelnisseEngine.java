@@ -24,33 +24,33 @@
 
 package org.xlrnet.metadict.engines.heinzelnisse;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.collect.ImmutableMap;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.engine.EngineStatusProvider;
 import org.xlrnet.metadict.api.engine.SearchEngine;
 import org.xlrnet.metadict.api.language.*;
 import org.xlrnet.metadict.api.metadata.FeatureSet;
 import org.xlrnet.metadict.api.query.*;
-import org.xlrnet.metadict.engines.heinzelnisse.entities.HeinzelResponse;
-import org.xlrnet.metadict.engines.heinzelnisse.entities.TranslationEntry;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLConnection;
 import java.net.URLEncoder;
-import java.util.List;
 import java.util.Map;
 
 /**
  * Engine for Heinzelnisse backend.
  */
-public class HeinzelnisseEngine implements SearchEngine {
+public class HeinzelnisseEngine implements SearchEngine, EngineStatusProvider {
 
     private static final Map<String, EntryType> ENTRY_TYPE_MAP = ImmutableMap.<String, EntryType>builder()
             .put("m", EntryType.NOUN)
@@ -78,7 +78,17 @@ public class HeinzelnisseEngine implements SearchEngine {
 
     private static final String WIKI_BASE_URL = "http://www.heinzelnisse.info/wiki/";
 
-    private final ObjectReader heinzelReader = new ObjectMapper().reader(HeinzelResponse.class);
+    private static final Map<String, String> REQUEST_PROPERTIES = ImmutableMap.<String, String>builder()
+            .put("User-Agent", "Mozilla/5.0 (Linux; Android 4.2.1; en-us; Nexus 4 Build/JOP40D) AppleWebKit/535.19 (KHTML, like Gecko) Chrome/18.0.1025.166 Mobile Safari/535.19")
+            .put("Content-Type", "application/json")
+            .put("X-Requested-With", "XMLHttpRequest")
+            .put("Referrer", "http://www.heinzelnisse.info/app")
+            .build();
+
+    /** The response stream is owned by the connection pool, which has to read it completely for keep-alive. */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+
+    private final HeinzelnisseConnectionPool connectionPool = HeinzelnisseConnectionPool.getInstance();
 
     /**
      * The main method for querying a {@link SearchEngine}. This method will be called by the metadict core on incoming
@@ -139,6 +149,27 @@ public class HeinzelnisseEngine implements SearchEngine {
         return runQuery(queryInput, queryGerman, queryNorwegian);
     }
 
+    /**
+     * Returns a snapshot of the statistics of the connection pool that is shared by all Heinzelnisse engines.
+     *
+     * @return a snapshot of the connection pool statistics.
+     */
+    @NotNull
+    public ConnectionPoolStatistics getConnectionPoolStatistics() {
+        return connectionPool.getStatistics();
+    }
+
+    /**
+     * Returns the statistics of the shared connection pool (see {@link #getConnectionPoolStatistics()}).
+     *
+     * @return a snapshot of the connection pool statistics.
+     */
+    @NotNull
+    @Override
+    public Object getEngineStatus() {
+        return getConnectionPoolStatistics();
+    }
+
     /**
      * Extracts information from the "other"-fields of the response. This field may contain information about plural
      * forms or irregular verb forms.
@@ -184,29 +215,6 @@ public class HeinzelnisseEngine implements SearchEngine {
         }
     }
 
-    private void buildDictionaryObjects(@NotNull TranslationEntry entry, @NotNull DictionaryEntryBuilder entryBuilder, boolean isGermanToNorwegian) {
-        DictionaryObjectBuilder inBuilder = new DictionaryObjectBuilder();
-        DictionaryObjectBuilder outBuilder = new DictionaryObjectBuilder();
-
-        setBuilderLanguages(isGermanToNorwegian, inBuilder, outBuilder);
-
-        // Extract non-translated word:
-        inBuilder.setGeneralForm(entry.getWord());
-
-        // Extract translated  word:
-        outBuilder.setGeneralForm(entry.getTranslatedWord());
-
-        extractArticleInformation(entry.getArticle(), inBuilder);               // Extract grammatical gender for input lang
-        extractArticleInformation(entry.getTranslatedArticle(), outBuilder);    // Extract grammatical gender for output lang
-
-        extractOtherInformation(entry.getOtherInformation(), inBuilder);            // Extract "other" information for input lang
-        extractOtherInformation(entry.getTranslatedOtherInformation(), outBuilder); // Extract "other" information for output lang
-
-        entryBuilder
-                .setInputObject(inBuilder.build())
-                .setOutputObject(outBuilder.build());
-    }
-
     @NotNull
     private String buildTargetUrl(@NotNull String searchRequest, boolean onlyExactResults, boolean queryGerman, boolean queryNorwegian) throws UnsupportedEncodingException {
         StringBuilder targetUrlBuilder = new StringBuilder("http://www.heinzelnisse.info/searchResults?searchItem=")
@@ -233,18 +241,6 @@ public class HeinzelnisseEngine implements SearchEngine {
         return targetUrlBuilder.toString();
     }
 
-    @NotNull
-    private URLConnection buildUrlConnection(@NotNull URL url) throws IOException {
-        URLConnection connection = url.openConnection();
-        connection.setRequestProperty("User-Agent", "Mozilla/5.0 (Linux; Android 4.2.1; en-us; Nexus 4 Build/JOP40D) AppleWebKit/535.19 (KHTML, like Gecko) Chrome/18.0.1025.166 Mobile Safari/535.19");
-        connection.setRequestProperty("Content-Type", "application/json");
-        connection.setRequestProperty("X-Requested-With", "XMLHttpRequest");
-        connection.setRequestProperty("Referrer", "http://www.heinzelnisse.info/app");
-        connection.setConnectTimeout(5000);
-        connection.setReadTimeout(5000);
-        return connection;
-    }
-
     private void extractAdjectiveForms(@NotNull String otherInformation, @NotNull DictionaryObjectBuilder builder) {
         for (String s : StringUtils.split(otherInformation, ',')) {
             String flectedForm = StringUtils.strip(StringUtils.substringAfter(s, ":"));
@@ -310,8 +306,14 @@ public class HeinzelnisseEngine implements SearchEngine {
         }
     }
 
-    private void extractWikiLinks(@NotNull List<String> wikiPageNames, @NotNull EngineQueryResultBuilder resultBuilder) {
-        for (String wikiPage : wikiPageNames) {
+    private void extractWikiLinks(@NotNull JsonParser parser, @NotNull EngineQueryResultBuilder resultBuilder) throws IOException {
+        if (!startArray(parser))
+            return;
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            String wikiPage = parser.getValueAsString();
+            if (StringUtils.isEmpty(wikiPage))
+                continue;
             try {
                 resultBuilder.addExternalContent(new ExternalContentBuilder()
                         .setTitle(wikiPage)
@@ -324,8 +326,9 @@ public class HeinzelnisseEngine implements SearchEngine {
     }
 
     /**
-     * Runs a query with the specified request and exactmode against the Heinzelnisse backend. This method returns a
-     * completely parsed {@see HeinzelResponse} object.
+     * Runs a query with the specified request and exactmode against the Heinzelnisse backend. The response will be
+     * parsed while it is being read (see {@link #processResponse(InputStream)}) on a connection from the shared {@link
+     * HeinzelnisseConnectionPool}.
      *
      * @param searchRequest
      *         The request string that should be sent to the backend
@@ -335,72 +338,139 @@ public class HeinzelnisseEngine implements SearchEngine {
      *         True, if German -> Norwegian shall be searched.
      * @param queryNorwegian
      *         True, if Norwegian -> German shall be searched.
-     * @return the parsed result as an {@link HeinzelResponse}.
+     * @return the results from the response.
      * @throws IOException
      */
-    private HeinzelResponse fetchResponse(@NotNull String searchRequest, boolean onlyExactResults, boolean queryGerman, boolean queryNorwegian) throws IOException {
+    private EngineQueryResult fetchResponse(@NotNull String searchRequest, boolean onlyExactResults, boolean queryGerman, boolean queryNorwegian) throws IOException {
         String targetUrl = buildTargetUrl(searchRequest, onlyExactResults, queryGerman, queryNorwegian);
-        URL url = new URL(targetUrl);
-        URLConnection connection = buildUrlConnection(url);
-        return heinzelReader.readValue(connection.getInputStream());
+        return connectionPool.execute(new URL(targetUrl), REQUEST_PROPERTIES, this::processResponse);
     }
 
-    private void processResponse(@NotNull HeinzelResponse heinzelResponse, @NotNull EngineQueryResultBuilder resultBuilder, boolean queryGerman, boolean queryNorwegian) {
-        // Extract german -> norwegian translations
-        for (TranslationEntry entry : heinzelResponse.getGermanTranslations()) {
-            processTranslationEntry(entry, resultBuilder, true);
-        }
-        // Extract norwegian -> german translations
-        for (TranslationEntry entry : heinzelResponse.getNorwegianTranslations()) {
-            processTranslationEntry(entry, resultBuilder, false);
-        }
+    /**
+     * Parse a JSON response from Heinzelnisse in a single pass with a streaming {@link JsonParser}. Translations,
+     * similar recommendations and wiki links will be written directly into the result while reading. All other
+     * sections (e.g. forum questions) will be skipped without being parsed into objects.
+     *
+     * @param inputStream
+     *         The response body.
+     * @return the results from the response.
+     * @throws IOException
+     *         if the response couldn't be read or is not valid JSON.
+     */
+    @NotNull
+    EngineQueryResult processResponse(@NotNull InputStream inputStream) throws IOException {
+        EngineQueryResultBuilder resultBuilder = new EngineQueryResultBuilder();
 
-        // Extract similar recommendations by language:
-        processSimilarRecomendations(heinzelResponse.getBookmaalWords(), Language.NORWEGIAN_BOKMÅL, resultBuilder);
-        processSimilarRecomendations(heinzelResponse.getNynorskWords(), Language.NORWEGIAN_NYNORSK, resultBuilder);
-        processSimilarRecomendations(heinzelResponse.getNorwegianPhonetics(), Language.NORWEGIAN_BOKMÅL, resultBuilder);
-        processSimilarRecomendations(heinzelResponse.getGermanPhonetics(), Language.GERMAN, resultBuilder);
+        try (JsonParser parser = JSON_FACTORY.createParser(inputStream)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT)
+                throw new JsonParseException("Expected JSON object as response", parser.getCurrentLocation());
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+                switch (fieldName) {
+                    case "deTrans":         // german -> norwegian translations
+                        processTranslationEntries(parser, resultBuilder, true);
+                        break;
+                    case "noTrans":         // norwegian -> german translations
+                        processTranslationEntries(parser, resultBuilder, false);
+                        break;
+                    case "bookmaalWords":
+                        processSimilarRecommendations(parser, Language.NORWEGIAN_BOKMÅL, resultBuilder);
+                        break;
+                    case "nynorskWords":
+                        processSimilarRecommendations(parser, Language.NORWEGIAN_NYNORSK, resultBuilder);
+                        break;
+                    case "noPhonetics":
+                        processSimilarRecommendations(parser, Language.NORWEGIAN_BOKMÅL, resultBuilder);
+                        break;
+                    case "dePhonetics":
+                        processSimilarRecommendations(parser, Language.GERMAN, resultBuilder);
+                        break;
+                    case "wikiPageNames":
+                        extractWikiLinks(parser, resultBuilder);
+                        break;
+                    default:                // forumQuestions, searchItem, ...
+                        parser.skipChildren();
+                }
+            }
+        }
 
-        // Extract wiki links:
-        extractWikiLinks(heinzelResponse.getWikiPageNames(), resultBuilder);
+        return resultBuilder.build();
     }
 
-    private void processSimilarRecomendations(List<String> wordList, Language similarityLanguage, EngineQueryResultBuilder resultBuilder) {
-        for (String word : wordList) {
+    private void processSimilarRecommendations(@NotNull JsonParser parser, @NotNull Language similarityLanguage, @NotNull EngineQueryResultBuilder resultBuilder) throws IOException {
+        if (!startArray(parser))
+            return;
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
             resultBuilder.addSimilarRecommendation(
                     new DictionaryObjectBuilder()
                             .setLanguage(similarityLanguage)
-                            .setGeneralForm(word)
+                            .setGeneralForm(parser.getValueAsString())
                             .build()
             );
         }
     }
 
-    private void processTranslationEntry(@NotNull TranslationEntry entry, @NotNull EngineQueryResultBuilder resultBuilder, boolean isGermanToNorwegian) {
-        DictionaryEntryBuilder entryBuilder = new DictionaryEntryBuilder();
-        // Resolve entry type
-        EntryType entryType = resolveEntryType(entry);
-        entryBuilder.setEntryType(entryType);
-        // Build dictionary objects for the entry
-        buildDictionaryObjects(entry, entryBuilder, isGermanToNorwegian);
-        // Save in result builder
-        resultBuilder.addEntry(entryBuilder.build());
-    }
+    private void processTranslationEntries(@NotNull JsonParser parser, @NotNull EngineQueryResultBuilder resultBuilder, boolean isGermanToNorwegian) throws IOException {
+        if (!startArray(parser))
+            return;
 
-    @NotNull
-    private EntryType resolveEntryType(@NotNull TranslationEntry entry) {
-        return ENTRY_TYPE_MAP.getOrDefault(entry.getArticle(), EntryType.UNKNOWN);
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            processTranslationEntry(parser, resultBuilder, isGermanToNorwegian);
+        }
     }
 
-    private EngineQueryResult runQuery(String queryInput, boolean queryGerman, boolean queryNorwegian) throws IOException {
-        EngineQueryResultBuilder resultBuilder = new EngineQueryResultBuilder();
+    private void processTranslationEntry(@NotNull JsonParser parser, @NotNull EngineQueryResultBuilder resultBuilder, boolean isGermanToNorwegian) throws IOException {
+        DictionaryEntryBuilder entryBuilder = new DictionaryEntryBuilder().setEntryType(EntryType.UNKNOWN);
+        DictionaryObjectBuilder inBuilder = new DictionaryObjectBuilder();
+        DictionaryObjectBuilder outBuilder = new DictionaryObjectBuilder();
 
-        HeinzelResponse fullResponse = fetchResponse(queryInput, false, queryGerman, queryNorwegian);
-        //HeinzelResponse exactResponse = fetchResponse(queryInput, false, queryGerman, queryNorwegian);
+        setBuilderLanguages(isGermanToNorwegian, inBuilder, outBuilder);
 
-        processResponse(fullResponse, resultBuilder, queryGerman, queryNorwegian);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            parser.nextToken();
+            switch (fieldName) {
+                case "word":            // Extract non-translated word
+                    inBuilder.setGeneralForm(parser.getValueAsString());
+                    break;
+                case "t_word":          // Extract translated word
+                    outBuilder.setGeneralForm(parser.getValueAsString());
+                    break;
+                case "article":         // Resolve entry type and grammatical gender for input lang
+                    String article = StringUtils.defaultString(parser.getValueAsString());
+                    entryBuilder.setEntryType(resolveEntryType(article));
+                    extractArticleInformation(article, inBuilder);
+                    break;
+                case "t_article":       // Extract grammatical gender for output lang
+                    extractArticleInformation(StringUtils.defaultString(parser.getValueAsString()), outBuilder);
+                    break;
+                case "other":           // Extract "other" information for input lang
+                    extractOtherInformation(StringUtils.defaultString(parser.getValueAsString()), inBuilder);
+                    break;
+                case "t_other":         // Extract "other" information for output lang
+                    extractOtherInformation(StringUtils.defaultString(parser.getValueAsString()), outBuilder);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
 
-        return resultBuilder.build();
+        resultBuilder.addEntry(entryBuilder
+                .setInputObject(inBuilder.build())
+                .setOutputObject(outBuilder.build())
+                .build());
+    }
+
+    @NotNull
+    private EntryType resolveEntryType(@NotNull String article) {
+        return ENTRY_TYPE_MAP.getOrDefault(article, EntryType.UNKNOWN);
+    }
+
+    private EngineQueryResult runQuery(String queryInput, boolean queryGerman, boolean queryNorwegian) throws IOException {
+        return fetchResponse(queryInput, false, queryGerman, queryNorwegian);
     }
 
     private void setBuilderLanguages(boolean isGermanToNorwegian, DictionaryObjectBuilder inBuilder, DictionaryObjectBuilder outBuilder) {
@@ -412,4 +482,19 @@ public class HeinzelnisseEngine implements SearchEngine {
             outBuilder.setLanguage(Language.GERMAN);
         }
     }
+
+    /**
+     * Check if the parser's current token starts an array. Any other value (e.g. null) will be skipped.
+     *
+     * @param parser
+     *         The parser positioned at a field value.
+     * @return true, if the current token starts an array.
+     * @throws IOException
+     */
+    private boolean startArray(@NotNull JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.START_ARRAY)
+            return true;
+        parser.skipChildren();
+        return false;
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.engines.heinzelnisse;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xlrnet.metadict.engines.util.HttpFetcher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link HeinzelnisseConnectionPool} against a local HTTP server.
+ */
+public class HeinzelnisseConnectionPoolTest {
+
+    private static final HttpFetcher.ResponseParser<String, IOException> STRING_PARSER = inputStream -> new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8);
+
+    private final CountDownLatch responseLatch = new CountDownLatch(1);
+
+    private HttpServer httpServer;
+
+    private ExecutorService serverExecutorService;
+
+    private ExecutorService executorService;
+
+    private HeinzelnisseConnectionPool connectionPool;
+
+    @Before
+    public void setUp() throws Exception {
+        httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        httpServer.createContext("/ok", exchange -> respond(exchange, 200, "ok"));
+        httpServer.createContext("/slow", exchange -> {
+            try {
+                responseLatch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "slow");
+        });
+        httpServer.createContext("/error", exchange -> respond(exchange, 500, "error"));
+        serverExecutorService = Executors.newCachedThreadPool();
+        httpServer.setExecutor(serverExecutorService);
+        httpServer.start();
+
+        executorService = Executors.newSingleThreadExecutor();
+        connectionPool = new HeinzelnisseConnectionPool(1, 100, 1000, 5000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        responseLatch.countDown();
+        executorService.shutdownNow();
+        httpServer.stop(0);
+        serverExecutorService.shutdownNow();
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        assertEquals("ok", connectionPool.execute(createUrl("/ok"), ImmutableMap.of(), STRING_PARSER));
+
+        ConnectionPoolStatistics statistics = connectionPool.getStatistics();
+        assertEquals(1, statistics.getTotalRequests());
+        assertEquals(0, statistics.getFailedRequests());
+        assertEquals(0, statistics.getLeasedConnections());
+    }
+
+    @Test
+    public void testExecute_rejectedAfterAcquireTimeout() throws Exception {
+        Future<String> slowResponse = executorService.submit(() -> connectionPool.execute(createUrl("/slow"), ImmutableMap.of(), STRING_PARSER));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (connectionPool.getStatistics().getLeasedConnections() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, connectionPool.getStatistics().getLeasedConnections());
+
+        long startTime = System.currentTimeMillis();
+        try {
+            connectionPool.execute(createUrl("/ok"), ImmutableMap.of(), STRING_PARSER);
+            fail("Expected the request to be rejected");
+        } catch (IOException e) {
+            assertTrue("Rejected after " + (System.currentTimeMillis() - startTime) + " ms", System.currentTimeMillis() - startTime >= 90);
+        }
+        assertEquals(1, connectionPool.getStatistics().getRejectedRequests());
+
+        responseLatch.countDown();
+        assertEquals("slow", slowResponse.get(5, TimeUnit.SECONDS));
+
+        ConnectionPoolStatistics statistics = connectionPool.getStatistics();
+        assertEquals(1, statistics.getTotalRequests());
+        assertEquals(0, statistics.getFailedRequests());
+        assertEquals(1, statistics.getRejectedRequests());
+        assertEquals(0, statistics.getLeasedConnections());
+    }
+
+    @Test
+    public void testExecute_httpErrorIsCountedAsFailure() throws Exception {
+        try {
+            connectionPool.execute(createUrl("/error"), ImmutableMap.of(), STRING_PARSER);
+            fail("Expected the request to fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("500"));
+        }
+
+        ConnectionPoolStatistics statistics = connectionPool.getStatistics();
+        assertEquals(1, statistics.getFailedRequests());
+        assertEquals(0, statistics.getRejectedRequests());
+        assertEquals(0, statistics.getLeasedConnections());
+    }
+
+    private URL createUrl(String path) throws Exception {
+        return new URL("http", httpServer.getAddress().getHostString(), httpServer.getAddress().getPort(), path);
+    }
+
+    private static void respond(HttpExchange exchange, int statusCode, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -28,8 +28,15 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.xlrnet.metadict.api.language.*;
+import org.xlrnet.metadict.api.query.DictionaryEntry;
 import org.xlrnet.metadict.api.query.DictionaryObjectBuilder;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.api.query.EntryType;
 
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.verify;
 
 /**
@@ -55,6 +62,13 @@ public class HeinzelnisseEngineTest {
 
     private static final String ANSWER_TEST_FLERTALL = "mødre";
 
+    private static final String TEST_RESPONSE = "{\"forumQuestions\":[{\"id\":1,\"answers\":[{\"text\":\"ignored\"}]}]," +
+            "\"searchItem\":\"Mutter\"," +
+            "\"deTrans\":[{\"id\":42,\"word\":\"Mutter\",\"article\":\"f\",\"other\":\"Plural: Mütter\"," +
+            "\"t_word\":\"mor\",\"t_article\":\"m/f\",\"t_other\":\"fl.: mødre\",\"lang\":{\"x\":[1]}}]," +
+            "\"noTrans\":null,\"bookmaalWords\":[\"moder\"],\"nynorskWords\":[],\"noPhonetics\":[\"mer\"]," +
+            "\"dePhonetics\":[\"Mutti\"],\"wikiPageNames\":[\"Mutter\"]}";
+
     private HeinzelnisseEngine engine = new HeinzelnisseEngine();
 
     private DictionaryObjectBuilder dictionaryObjectBuilder;
@@ -111,4 +125,23 @@ public class HeinzelnisseEngineTest {
         verify(dictionaryObjectBuilder).setAdditionalForm(GrammaticalTense.PAST_TENSE, "kom");
         verify(dictionaryObjectBuilder).setAdditionalForm(GrammaticalTense.PERFECT_PARTICIPLE, "kommet");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testProcessResponse() throws Exception {
+        EngineQueryResult result = engine.processResponse(new ByteArrayInputStream(TEST_RESPONSE.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, result.getEntries().size());
+        assertEquals(3, result.getSimilarRecommendations().size());
+        assertEquals(1, result.getExternalContents().size());
+
+        DictionaryEntry entry = result.getEntries().get(0);
+        assertEquals(EntryType.NOUN, entry.getEntryType());
+        assertEquals("Mutter", entry.getInput().getGeneralForm());
+        assertEquals(Language.GERMAN, entry.getInput().getLanguage());
+        assertEquals(GrammaticalGender.FEMININE, entry.getInput().getGrammaticalGender());
+        assertEquals(ANSWER_TEST_PLURAL, entry.getInput().getAdditionalForms().get(GrammaticalNumber.PLURAL));
+        assertEquals("mor", entry.getOutput().getGeneralForm());
+        assertEquals(Language.NORWEGIAN_BOKMÅL, entry.getOutput().getLanguage());
+        assertEquals(ANSWER_TEST_FLERTALL, entry.getOutput().getAdditionalForms().get(GrammaticalNumber.PLURAL));
+    }
+}
@@ -28,28 +28,33 @@ import com.google.common.collect.ImmutableMap;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import org.jsoup.Connection;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xlrnet.metadict.api.engine.AsyncSearchEngine;
 import org.xlrnet.metadict.api.engine.SearchEngine;
 import org.xlrnet.metadict.api.language.GrammaticalTense;
 import org.xlrnet.metadict.api.language.Language;
 import org.xlrnet.metadict.api.metadata.FeatureSet;
 import org.xlrnet.metadict.api.query.*;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.InputStream;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 
 /**
  * This is the implementation for the leo.org search engine for Metadict. It uses the internal REST-endpoint from
  * leo.org that is used for their AJAX-calls.
  */
-public class LeoEngine implements SearchEngine {
+public class LeoEngine implements AsyncSearchEngine {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(SearchEngine.class);
 
@@ -78,11 +83,24 @@ public class LeoEngine implements SearchEngine {
 
     private static final String SECTION_NAME_ATTRIBUTE = "sctName";
 
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newFactory();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, true);
+    }
+
     /**
      * The main method for querying a {@link SearchEngine}. This method will be called by the metadict core on incoming
      * search queries. The core will always try to parallelize the query as much as possible according to the specified
      * supported dictionaries of this engine.
      * <p>
+     * The request itself is a blocking HTTP call that is offloaded to the thread pool of the shared {@link
+     * LeoTransport}, i.e. it doesn't block the caller but still occupies one of the transport's threads. Cancelling the
+     * returned stage won't abort a running request: it runs until it completes or its read timeout expires and its
+     * result will be discarded.
+     * <p>
      * Upon calling, the core will make sure that the language parameters of this method correspond exactly to a
      * supported {@link Dictionary} as described in the engine's {@link
      * FeatureSet}. However, an engine may also return results from a different
@@ -106,35 +124,30 @@ public class LeoEngine implements SearchEngine {
      *         True, if the engine may search in both directions. I.e. the queryInput can also be seen as the
      *         outputLanguage. The core will set this flag only if the engine declared a dictionary with matching input
      *         and output language. Otherwise the will be called for each direction separately.
-     * @return The results from the search query. You can use an instance of {@link EngineQueryResultBuilder}
-     * to build this result list.
+     * @return a stage that will be completed with the results from the search query.
      */
     @Override
-    public EngineQueryResult executeSearchQuery(String queryInput, Language inputLanguage, Language outputLanguage, boolean allowBothWay) throws Exception {
-        Connection targetConnection = buildTargetConnection(queryInput, inputLanguage, outputLanguage);
-        Document doc = targetConnection.get();
+    public CompletionStage<EngineQueryResult> executeSearchQueryAsync(String queryInput, Language inputLanguage, Language outputLanguage, boolean allowBothWay) {
+        String targetDictionary = resolveTargetDictionary(inputLanguage, outputLanguage);
 
-        LOGGER.debug(doc.html());
+        Map<String, String> queryData = new LinkedHashMap<>(DEFAULT_QUERY_DATA);
+        queryData.put("lp", targetDictionary);
+        queryData.put("search", queryInput);
+        queryData.put("t", ZonedDateTime.now(ZoneOffset.UTC).toString());
 
-        EngineQueryResultBuilder builder = processDocument(doc);
-
-        return builder.build();
+        return LeoTransport.getInstance()
+                .fetch("https://dict.leo.org/dictQuery/m-vocab/" + targetDictionary + "/query.xml", queryData, this::processResponse);
     }
 
-    private Connection buildTargetConnection(String searchString, Language inputLanguage, Language outputLanguage) {
+    @NotNull
+    private String resolveTargetDictionary(Language inputLanguage, Language outputLanguage) {
         String targetDictionary = resolveDictionaryConfig(inputLanguage, outputLanguage);
         if (targetDictionary == null) {
             targetDictionary = resolveDictionaryConfig(outputLanguage, inputLanguage);
             if (targetDictionary == null)
                 throw new IllegalArgumentException("No suitable dictionary configuration found - this might be an internal metadict error");
         }
-
-        return Jsoup.connect("https://dict.leo.org/dictQuery/m-vocab/" + targetDictionary + "/query.xml")
-                .userAgent("Mozilla/5.0 (Windows NT 6.1) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/41.0.2228.0 Safari/537.36")
-                .data(DEFAULT_QUERY_DATA)
-                .data("lp", targetDictionary)
-                .data("search", searchString)
-                .data("t", ZonedDateTime.now(ZoneOffset.UTC).toString());
+        return targetDictionary;
     }
 
     /**
@@ -188,88 +201,140 @@ public class LeoEngine implements SearchEngine {
         }
     }
 
-    private EngineQueryResultBuilder processDocument(Document doc) {
+    /**
+     * Parse a query.xml response from leo.org in a single pass with a StAX pull parser. Each entry will be converted
+     * directly to a {@link DictionaryEntry} without building a DOM of the whole response.
+     *
+     * @param inputStream
+     *         The response body.
+     * @return the results from the response.
+     * @throws XMLStreamException
+     *         if the response is not well-formed.
+     */
+    @NotNull
+    EngineQueryResult processResponse(@NotNull InputStream inputStream) throws XMLStreamException {
         EngineQueryResultBuilder resultBuilder = new EngineQueryResultBuilder();
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(inputStream);
+        EntryType sectionEntryType = null;
+        boolean foundSimilarities = false;
+
+        try {
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT && "section".equals(reader.getLocalName())) {
+                    sectionEntryType = null;
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "section":
+                            sectionEntryType = resolveSectionType(reader.getAttributeValue(null, SECTION_NAME_ATTRIBUTE));
+                            break;
+                        case "entry":
+                            if (sectionEntryType != null)
+                                processEntry(reader, resultBuilder, sectionEntryType);
+                            break;
+                        case "similar":
+                            foundSimilarities = true;
+                            processSimilarities(reader, resultBuilder);
+                            break;
+                    }
+                }
+            }
+        } finally {
+            reader.close();
+        }
 
-        // Find sections:
-        Elements sections = doc.getElementsByTag("section");
-
-        // Process sections:
-        sections.stream().parallel().forEach(s -> processSection(s, resultBuilder));
-
-        // Find similarities:
-        Element similarityNode = doc.getElementsByTag("similar").get(0);
-
-        // Process similarities:
-        processSimilarities(similarityNode, resultBuilder);
-
-        // Find external contents:
-
-
-        // Process external contents:
-
+        if (!foundSimilarities)
+            LOGGER.warn("Couldn't find similarity node");
 
-        return resultBuilder;
+        return resultBuilder.build();
     }
 
     /**
-     * Process the content contents of a single entry node. The entry node is the root-node for a single dictionary
-     * entry.
-     *
-     * @param entryNode
-     * @param resultBuilder
-     * @param fallbackEntryType
+     * Process the contents of a single entry element. The entry element is the root element for a single dictionary
+     * entry. The reader has to be positioned on the start of the entry and will be positioned on its end afterwards.
      */
-    private void processEntryNode(@NotNull Element entryNode, @NotNull EngineQueryResultBuilder resultBuilder, @NotNull EntryType fallbackEntryType) {
-        // Try to determine the entry type again
+    private void processEntry(@NotNull XMLStreamReader reader, @NotNull EngineQueryResultBuilder resultBuilder, @NotNull EntryType fallbackEntryType) throws XMLStreamException {
         EntryType entryType = fallbackEntryType;
-        Element category = entryNode.getElementsByTag("category").first();
-        if (category != null) {
-            entryType = resolveSectionType(category.attr("type"));
-            if (entryType == EntryType.UNKNOWN)
-                entryType = fallbackEntryType;
+        boolean foundCategory = false;
+        List<SideContent> sides = new ArrayList<>(2);
+
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("side".equals(reader.getLocalName())) {
+                    sides.add(processSide(reader));
+                } else {
+                    if ("category".equals(reader.getLocalName()) && !foundCategory) {
+                        // Try to determine the entry type again
+                        foundCategory = true;
+                        EntryType categoryType = resolveSectionType(reader.getAttributeValue(null, "type"));
+                        if (categoryType != EntryType.UNKNOWN)
+                            entryType = categoryType;
+                    }
+                    depth++;
+                }
+            }
         }
 
-        // Process each side separately
-        Elements sideNodes = entryNode.getElementsByTag("side");
-
-        Element leftSide = sideNodes.get(0);
-        Element rightSide = sideNodes.get(1);
-
-        DictionaryObject leftObject = processSideNode(leftSide, entryType);
-        DictionaryObject rightObject = processSideNode(rightSide, entryType);
+        if (sides.size() < 2) {
+            LOGGER.warn("Skipping entry with {} instead of 2 sides", sides.size());
+            return;
+        }
 
         // Build the final DictionaryEntry
         resultBuilder.addEntry(new DictionaryEntryBuilder()
                 .setEntryType(entryType)
-                .setInputObject(leftObject)
-                .setOutputObject(rightObject).build());
+                .setInputObject(buildSideObject(sides.get(0), entryType))
+                .setOutputObject(buildSideObject(sides.get(1), entryType))
+                .build());
     }
 
-    private void processSection(Element sectionNode, EngineQueryResultBuilder resultBuilder) {
-        String sectionType = sectionNode.attr(SECTION_NAME_ATTRIBUTE);
-        EntryType fallbackEntryType = resolveSectionType(sectionType);
-
-        for (Element entryNode : sectionNode.getElementsByTag("entry")) {
-            processEntryNode(entryNode, resultBuilder, fallbackEntryType);
+    /**
+     * Read the language, general form and representation of a side element. The reader has to be positioned on the
+     * start of the side and will be positioned on its end afterwards.
+     */
+    @NotNull
+    private SideContent processSide(@NotNull XMLStreamReader reader) throws XMLStreamException {
+        SideContent side = new SideContent();
+        side.language = resolveLanguage(reader.getAttributeValue(null, "lang"));
+        StringBuilder representation = new StringBuilder();
+
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                String localName = reader.getLocalName();
+                if ("repr".equals(localName)) {
+                    if (representation.length() > 0)
+                        representation.append(' ');
+                    representation.append(readElementText(reader));
+                } else if ("word".equals(localName)) {
+                    String word = readElementText(reader);
+                    if (side.generalForm == null)
+                        side.generalForm = word;
+                } else {
+                    depth++;
+                }
+            }
         }
+
+        if (side.generalForm == null)
+            side.generalForm = "";
+        side.representation = representation.toString();
+        return side;
     }
 
-    private DictionaryObject processSideNode(Element side, EntryType entryType) {
+    @NotNull
+    private DictionaryObject buildSideObject(@NotNull SideContent side, @NotNull EntryType entryType) {
         DictionaryObjectBuilder dictionaryObjectBuilder = new DictionaryObjectBuilder();
+        String representation = side.representation;
 
-        // Extract general form:
-        String generalForm = side.getElementsByTag("word").first().text();
-
-        // Extract language:
-        String languageIdentifier = side.attr("lang");
-        if ("ch".equals(languageIdentifier))
-            languageIdentifier = "cn";
-        Language language = Language.getExistingLanguageById(languageIdentifier);
-
-        // Extract representation value:
-        String representation = side.getElementsByTag("repr").text();
-        if (!StringUtils.equals(generalForm, representation))
+        if (!StringUtils.equals(side.generalForm, representation))
             dictionaryObjectBuilder.setDescription(representation);
 
         // Test for domain specific content:
@@ -283,36 +348,97 @@ public class LeoEngine implements SearchEngine {
             dictionaryObjectBuilder.setAbbreviation(abbreviation);
 
         // Process additional forms (e.g. verb tenses):
-        processAdditionalForms(entryType, dictionaryObjectBuilder, language, representation);
+        processAdditionalForms(entryType, dictionaryObjectBuilder, side.language, representation);
 
         return dictionaryObjectBuilder
-                .setGeneralForm(generalForm)
-                .setLanguage(language)
+                .setGeneralForm(side.generalForm)
+                .setLanguage(side.language)
                 .build();
     }
 
-    private void processSimilarities(@Nullable Element similarityNode, @NotNull EngineQueryResultBuilder engineQueryResultBuilder) {
-        if (similarityNode == null) {
-            LOGGER.warn("Couldn't find similarity node");
-            return;
+    /**
+     * Process all similar words inside the similar element. The reader has to be positioned on the start of the
+     * element and will be positioned on its end afterwards.
+     */
+    private void processSimilarities(@NotNull XMLStreamReader reader, @NotNull EngineQueryResultBuilder engineQueryResultBuilder) throws XMLStreamException {
+        Language sideLanguage = null;
+
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.START_ELEMENT) {
+                if ("word".equals(reader.getLocalName())) {
+                    engineQueryResultBuilder.addSimilarRecommendation(
+                            new DictionaryObjectBuilder()
+                                    .setLanguage(sideLanguage)
+                                    .setGeneralForm(readElementText(reader))
+                                    .build()
+                    );
+                } else {
+                    if ("side".equals(reader.getLocalName()))
+                        sideLanguage = resolveLanguage(reader.getAttributeValue(null, "lang"));
+                    depth++;
+                }
+            }
         }
+    }
 
-        Elements sides = similarityNode.getElementsByTag("side");
+    /**
+     * Read the whitespace-normalized text of the current element including all of its children. The reader has to be
+     * positioned on the start of the element and will be positioned on its end afterwards.
+     */
+    @NotNull
+    private String readElementText(@NotNull XMLStreamReader reader) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+
+        int depth = 1;
+        while (depth > 0 && reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA || event == XMLStreamConstants.SPACE) {
+                text.append(reader.getText());
+            }
+        }
 
-        for (Element side : sides) {
-            Language sideLanguage = Language.getExistingLanguageById(side.attr("lang"));
+        return normalizeWhitespace(text);
+    }
 
-            for (Element word : side.getElementsByTag("word")) {
-                String wordText = word.text();
-                engineQueryResultBuilder.addSimilarRecommendation(
-                        new DictionaryObjectBuilder()
-                                .setLanguage(sideLanguage)
-                                .setGeneralForm(wordText)
-                                .build()
-                );
+    /**
+     * Collapse each run of whitespace to a single space and strip leading and trailing whitespace. Non-breaking spaces
+     * will be kept.
+     */
+    @NotNull
+    private String normalizeWhitespace(@NotNull CharSequence text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        boolean lastWasWhitespace = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+                if (!lastWasWhitespace)
+                    normalized.append(' ');
+                lastWasWhitespace = true;
+            } else {
+                normalized.append(c);
+                lastWasWhitespace = false;
             }
-
         }
+        if (normalized.length() > 0 && lastWasWhitespace)
+            normalized.setLength(normalized.length() - 1);
+        return normalized.toString();
+    }
+
+    @Nullable
+    private Language resolveLanguage(@Nullable String languageIdentifier) {
+        if (languageIdentifier == null)
+            return null;
+        if ("ch".equals(languageIdentifier))
+            languageIdentifier = "cn";
+        return Language.getExistingLanguageById(languageIdentifier);
     }
 
     /**
@@ -392,4 +518,16 @@ public class LeoEngine implements SearchEngine {
     private EntryType resolveSectionType(String sectionType) {
         return ENTRY_TYPE_MAP.getOrDefault(sectionType, EntryType.UNKNOWN);
     }
+
+    /**
+     * Raw content of a single side inside an entry.
+     */
+    private static class SideContent {
+
+        private Language language;
+
+        private String generalForm;
+
+        private String representation;
+    }
 }
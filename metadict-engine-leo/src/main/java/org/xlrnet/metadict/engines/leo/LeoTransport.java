@@ -0,0 +1,124 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.engines.leo;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.metadict.engines.util.HttpFetcher;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shared HTTP transport for all {@link LeoEngine} instances.
+ * <p>
+ * The transport uses persistent HTTP connections (see {@link HttpFetcher}), so that the connection and its TLS session
+ * can be reused for the next query. Requests are blocking calls that are executed on a dedicated thread pool whose size
+ * limits the number of concurrent connections to leo.org. Since Java 8 has no non-blocking HTTP client, a running
+ * request can't be aborted: cancelling its future has no effect on the connection. The following system properties can
+ * be used for configuration:
+ * <ul>
+ * <li>{@code metadict.engine.leo.maxConnections}: maximum number of concurrent connections (default 16)</li>
+ * <li>{@code metadict.engine.leo.connectTimeout}: connect timeout in milliseconds (default 5000)</li>
+ * <li>{@code metadict.engine.leo.readTimeout}: read timeout in milliseconds (default 10000)</li>
+ * </ul>
+ * The number of idle connections that are kept alive is controlled by the standard JVM property {@code
+ * http.maxConnections}.
+ */
+class LeoTransport {
+
+    private static final int MAX_CONNECTIONS = Integer.getInteger("metadict.engine.leo.maxConnections", 16);
+
+    private static final int CONNECT_TIMEOUT = Integer.getInteger("metadict.engine.leo.connectTimeout", 5000);
+
+    private static final int READ_TIMEOUT = Integer.getInteger("metadict.engine.leo.readTimeout", 10000);
+
+    private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 6.1) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/41.0.2228.0 Safari/537.36";
+
+    private static final Map<String, String> REQUEST_PROPERTIES = ImmutableMap.of("User-Agent", USER_AGENT);
+
+    private static final LeoTransport INSTANCE = new LeoTransport();
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(MAX_CONNECTIONS, new ThreadFactoryBuilder()
+            .setNameFormat("metadict-leo-%d")
+            .setDaemon(true)
+            .build());
+
+    private LeoTransport() {
+    }
+
+    @NotNull
+    static LeoTransport getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Fetch the resource at the given URL on the transport's thread pool and parse its body with the given parser.
+     * Cancelling the returned future won't abort a request that is already running.
+     *
+     * @param url
+     *         The base URL without query string.
+     * @param queryData
+     *         The query parameters that will be appended to the URL.
+     * @param responseParser
+     *         The parser for the response body.
+     * @return a future with the parsed response.
+     */
+    @NotNull
+    <T> CompletableFuture<T> fetch(@NotNull String url, @NotNull Map<String, String> queryData, @NotNull HttpFetcher.ResponseParser<T, ?> responseParser) {
+        String requestUrl = url + "?" + encodeQueryData(queryData);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return HttpFetcher.fetch(new URL(requestUrl), REQUEST_PROPERTIES, CONNECT_TIMEOUT, READ_TIMEOUT, responseParser);
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }, executorService);
+    }
+
+    @NotNull
+    private String encodeQueryData(@NotNull Map<String, String> queryData) {
+        StringBuilder builder = new StringBuilder();
+        try {
+            for (Map.Entry<String, String> entry : queryData.entrySet()) {
+                if (builder.length() > 0)
+                    builder.append('&');
+                builder.append(URLEncoder.encode(entry.getKey(), "UTF-8"))
+                        .append('=')
+                        .append(URLEncoder.encode(entry.getValue(), "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.engines.leo;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xlrnet.metadict.api.language.GrammaticalTense;
+import org.xlrnet.metadict.api.language.Language;
+import org.xlrnet.metadict.api.query.DictionaryEntry;
+import org.xlrnet.metadict.api.query.EngineQueryResult;
+import org.xlrnet.metadict.api.query.EntryType;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test cases for the Leo engine.
+ */
+public class LeoEngineTest {
+
+    private static final String SAMPLE_RESPONSE = "/leo-sample.xml";
+
+    private LeoEngine engine;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new LeoEngine();
+    }
+
+    @Test
+    public void testProcessResponse_sample() throws Exception {
+        EngineQueryResult result;
+        try (InputStream inputStream = getClass().getResourceAsStream(SAMPLE_RESPONSE)) {
+            result = engine.processResponse(inputStream);
+        }
+
+        assertEquals(68, result.getEntries().size());
+        assertEquals(10, result.getSimilarRecommendations().size());
+
+        DictionaryEntry firstEntry = result.getEntries().get(0);
+        assertEquals(EntryType.NOUN, firstEntry.getEntryType());
+        assertEquals("world", firstEntry.getInput().getGeneralForm());
+        assertEquals(Language.ENGLISH, firstEntry.getInput().getLanguage());
+        assertEquals("die Welt", firstEntry.getOutput().getGeneralForm());
+        assertEquals("die Welt \u00A0 Pl.: die Welten", firstEntry.getOutput().getDescription());
+        assertEquals(Language.GERMAN, firstEntry.getOutput().getLanguage());
+    }
+
+    @Test
+    public void testProcessResponse_verbTenses() throws Exception {
+        EngineQueryResult result;
+        try (InputStream inputStream = getClass().getResourceAsStream(SAMPLE_RESPONSE)) {
+            result = engine.processResponse(inputStream);
+        }
+
+        DictionaryEntry verbEntry = result.getEntries().stream()
+                .filter(e -> "to abandon the world".equals(e.getInput().getGeneralForm()))
+                .findFirst().get();
+
+        assertEquals(EntryType.VERB, verbEntry.getEntryType());
+        assertEquals("abandoned", verbEntry.getInput().getAdditionalForms().get(GrammaticalTense.PAST_TENSE));
+        assertEquals("abandoned", verbEntry.getInput().getAdditionalForms().get(GrammaticalTense.PAST_PERFECT));
+    }
+
+    @Test
+    public void testProcessResponse_empty() throws Exception {
+        String response = "<xml><sectionlist></sectionlist><similar></similar></xml>";
+
+        EngineQueryResult result = engine.processResponse(new ByteArrayInputStream(response.getBytes(StandardCharsets.UTF_8)));
+
+        assertTrue(result.getEntries().isEmpty());
+        assertTrue(result.getSimilarRecommendations().isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package org.xlrnet.metadict.engines.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Helper for engines that fetch their results with HTTP GET requests over persistent connections.
+ * <p>
+ * Every response is read completely and closed, so that the JVM can put the underlying connection (including its TLS
+ * session) back into its keep-alive cache and reuse it for the next request. Responses are requested gzip-compressed
+ * and decompressed transparently. The number of idle connections that are kept alive is controlled by the standard JVM
+ * property {@code http.maxConnections}.
+ * <p>
+ * This class is an implementation helper of the bundled engines and not part of the engine API, i.e. it may change
+ * without notice.
+ */
+public final class HttpFetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HttpFetcher.class);
+
+    private HttpFetcher() {
+    }
+
+    /**
+     * Send a GET request to the given URL and parse the body of the response with the given parser. Any remaining bytes
+     * of the response will be discarded after parsing.
+     *
+     * @param url
+     *         The URL to request.
+     * @param requestProperties
+     *         Additional request headers.
+     * @param connectTimeout
+     *         Connect timeout in milliseconds.
+     * @param readTimeout
+     *         Read timeout in milliseconds.
+     * @param responseParser
+     *         The parser for the response body.
+     * @return the parsed response.
+     * @throws IOException
+     *         if the request failed or the server didn't respond with HTTP 200.
+     * @throws E
+     *         if the parser failed.
+     */
+    @NotNull
+    public static <T, E extends Exception> T fetch(@NotNull URL url, @NotNull Map<String, String> requestProperties, int connectTimeout, int readTimeout, @NotNull ResponseParser<T, E> responseParser) throws IOException, E {
+        LOGGER.debug("Requesting {}", url);
+
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(connectTimeout);
+        connection.setReadTimeout(readTimeout);
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        for (Map.Entry<String, String> property : requestProperties.entrySet()) {
+            connection.setRequestProperty(property.getKey(), property.getValue());
+        }
+
+        int responseCode = connection.getResponseCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            // Consume the error stream to keep the connection alive
+            try (InputStream errorStream = connection.getErrorStream()) {
+                drain(errorStream);
+            }
+            throw new IOException("HTTP error " + responseCode + " while fetching " + url);
+        }
+
+        try (InputStream inputStream = openResponseStream(connection)) {
+            T response = responseParser.parse(inputStream);
+            drain(inputStream);
+            return response;
+        }
+    }
+
+    @NotNull
+    private static InputStream openResponseStream(@NotNull HttpURLConnection connection) throws IOException {
+        InputStream inputStream = connection.getInputStream();
+        if ("gzip".equalsIgnoreCase(connection.getContentEncoding()))
+            return new GZIPInputStream(inputStream);
+        return inputStream;
+    }
+
+    private static void drain(InputStream inputStream) throws IOException {
+        if (inputStream == null)
+            return;
+        byte[] buffer = new byte[4096];
+        while (inputStream.read(buffer) >= 0) {
+            // Discard remaining bytes
+        }
+    }
+
+    /**
+     * Parser for the body of a successful response.
+     *
+     * @param <T>
+     *         Type of the parsed response.
+     * @param <E>
+     *         Type of the exception that the parser may throw in addition to {@link IOException}.
+     */
+    @FunctionalInterface
+    public interface ResponseParser<T, E extends Exception> {
+
+        T parse(@NotNull InputStream inputStream) throws IOException, E;
+    }
+}
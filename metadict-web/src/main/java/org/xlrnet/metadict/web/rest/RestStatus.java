@@ -27,16 +27,27 @@ package org.xlrnet.metadict.web.rest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xlrnet.metadict.impl.core.MetadictCore;
+import org.xlrnet.metadict.web.api.ResponseContainer;
 
 import javax.inject.Inject;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 /**
  * REST service for querying the current system status.
+ * <p>
+ * The statistics of the query step cache can be queried with /api/status/cache. Cached results can be invalidated by
+ * sending a DELETE request to /api/status/cache (all results), /api/status/cache/engine/{ENGINE} (all results of the
+ * engine with the canonical class name ENGINE) or /api/status/cache/query/{QUERY} (all results for the query QUERY).
+ * Invalidation also removes the affected responses from the response cache.
+ * <p>
+ * Engine-specific status information (e.g. the statistics of connection pools) can be queried with
+ * /api/status/engines. The responses of the cache and engine endpoints are wrapped in a {@link ResponseContainer}.
  */
 @Path("/status")
 public class RestStatus {
@@ -52,4 +63,45 @@ public class RestStatus {
         return Response.ok(metadictCore.getSystemStatus()).build();
     }
 
+    @GET
+    @Path("/engines")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getEngineStatus() {
+        return Response.ok(ResponseContainer.fromSuccessful(metadictCore.getEngineRegistry().getEngineStatus())).build();
+    }
+
+    @GET
+    @Path("/cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getCacheStatistics() {
+        return Response.ok(ResponseContainer.fromSuccessful(metadictCore.getCacheManager().getStatistics())).build();
+    }
+
+    @DELETE
+    @Path("/cache")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response invalidateCache() {
+        int invalidatedEntries = metadictCore.getCacheManager().invalidateAll();
+        LOGGER.info("Invalidated {} cached results", invalidatedEntries);
+        return Response.ok(ResponseContainer.fromSuccessful(invalidatedEntries)).build();
+    }
+
+    @DELETE
+    @Path("/cache/engine/{engineName}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response invalidateCacheByEngine(@PathParam("engineName") String engineName) {
+        int invalidatedEntries = metadictCore.getCacheManager().invalidateEngine(engineName);
+        LOGGER.info("Invalidated {} cached results of engine {}", invalidatedEntries, engineName);
+        return Response.ok(ResponseContainer.fromSuccessful(invalidatedEntries)).build();
+    }
+
+    @DELETE
+    @Path("/cache/query/{query}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response invalidateCacheByQuery(@PathParam("query") String query) {
+        int invalidatedEntries = metadictCore.getCacheManager().invalidateQuery(query);
+        LOGGER.info("Invalidated {} cached results of query {}", invalidatedEntries, query);
+        return Response.ok(ResponseContainer.fromSuccessful(invalidatedEntries)).build();
+    }
+
 }